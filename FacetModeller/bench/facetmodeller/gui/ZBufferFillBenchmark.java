@@ -0,0 +1,93 @@
+package facetmodeller.gui;
+
+import geometry.MyPoint2D;
+import geometry.MyPoint3D;
+import geometry.ZBary;
+import java.awt.Color;
+import java.util.Random;
+
+/** Micro-benchmark for the triangle fill rate of the ZBuffer3D class.
+ * Random triangles of a few sizes are filled into a frame cleared to a far depth so that the depth test rejects
+ * every write and only the rasterisation is timed. The span rasteriser (ZBuffer3D.putTri) is compared with the
+ * previous per-pixel loop, which tested every pixel in the bounding box with a new MyPoint2D and a ZBary object.
+ * Run with the FacetModeller classes and libraries on the classpath:
+ * java facetmodeller.gui.ZBufferFillBenchmark [repetitions]
+ * @author Peter Lelievre
+ */
+public final class ZBufferFillBenchmark {
+
+    // -------------------- Properties -------------------
+
+    private static final int WIDTH = 800; // HARDWIRE: frame size
+    private static final int HEIGHT = 600;
+    private static final double FAR = 1.0E9; // HARDWIRE: frame depth (further than every triangle)
+    private static final double[] SIZES = {8.0, 40.0, 400.0}; // HARDWIRE: triangle bounding box sizes in pixels
+    private static final double PIXELS = 1.0E6; // HARDWIRE: approximate number of pixels filled for each size
+    private static final long SEED = 2; // HARDWIRE: random seed
+
+    // -------------------- Main -------------------
+
+    public static void main(String[] args) {
+        int repetitions = 5;
+        if (args.length>0) { repetitions = Integer.parseInt(args[0]); }
+        Random random = new Random(SEED);
+        ZBuffer3D zbuf = new ZBuffer3D(WIDTH,HEIGHT,FAR,Color.BLACK);
+        System.out.println("Triangle fill rate (best of " + repetitions + ", depth test rejects every write):");
+        for (double size : SIZES) {
+            // Create random triangles covering about the same total area for each size:
+            double area = size*size/4.0; // expected area of a random triangle in the bounding box
+            int n = (int)Math.ceil( PIXELS / area );
+            MyPoint3D[][] tris = new MyPoint3D[n][];
+            for (int k=0 ; k<n ; k++ ) {
+                double x = random.nextDouble()*(WIDTH-size);
+                double y = random.nextDouble()*(HEIGHT-size);
+                tris[k] = new MyPoint3D[]{
+                    new MyPoint3D( x , y , random.nextDouble() ),
+                    new MyPoint3D( x + size*random.nextDouble() , y + size , random.nextDouble() ),
+                    new MyPoint3D( x + size , y + size*random.nextDouble() , random.nextDouble() ) };
+            }
+            // Time both methods in alternation:
+            double mpix = n*area/1.0E6;
+            double bestSpan = Double.MAX_VALUE;
+            double bestPixel = Double.MAX_VALUE;
+            for (int r=0 ; r<repetitions ; r++ ) {
+                long t = System.nanoTime();
+                for (MyPoint3D[] tri : tris) { zbuf.putTri(tri,Color.RED); }
+                bestSpan = Math.min( bestSpan , (System.nanoTime()-t)/1.0E6/mpix );
+                t = System.nanoTime();
+                for (MyPoint3D[] tri : tris) { putTriPerPixel(zbuf,tri,Color.RED); }
+                bestPixel = Math.min( bestPixel , (System.nanoTime()-t)/1.0E6/mpix );
+            }
+            System.out.printf("  triangles of ~%.0f pixels: span %.1f ms/Mpixel, per-pixel %.1f ms/Mpixel%n",area,bestSpan,bestPixel);
+        }
+    }
+
+    // -------------------- Private Methods -------------------
+
+    /** The previous ZBuffer3D triangle loop, kept here for comparison. */
+    private static void putTriPerPixel(ZBuffer3D zbuf, MyPoint3D[] facet, Color col) {
+        ZBary bar = new ZBary(facet[0],facet[1],facet[2]);
+        if (!bar.check()) { return; }
+        // Get the bounding box:
+        int i1 = WIDTH - 1;
+        int j1 = HEIGHT - 1;
+        int i2 = 0;
+        int j2 = 0;
+        for (MyPoint3D p : facet) {
+            i1 = Math.min( i1 , (int)Math.ceil(p.getX()) );
+            i2 = Math.max( i2 , (int)Math.floor(p.getX()) );
+            j1 = Math.min( j1 , (int)Math.ceil(p.getY()) );
+            j2 = Math.max( j2 , (int)Math.floor(p.getY()) );
+        }
+        // Loop over each pixel in the bounding box:
+        for (int i=Math.max(i1,0) ; i<=Math.min(i2,WIDTH-1) ; i++) {
+            for (int j=Math.max(j1,0) ; j<=Math.min(j2,HEIGHT-1) ; j++) {
+                MyPoint2D p = new MyPoint2D(i,j);
+                bar.calculate(p);
+                if (!bar.inOrOn()) { continue; }
+                zbuf.setPixel(i,j,bar.interpolate(),col);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,244 @@
+package facetmodeller.panels;
+
+import facetmodeller.groups.Group;
+import facetmodeller.gui.FrameBuffer;
+import facetmodeller.gui.Projector3D;
+import facetmodeller.gui.ZBuffer3D;
+import facetmodeller.plc.Facet;
+import facetmodeller.plc.Node;
+import facetmodeller.plc.NodeOffSection;
+import facetmodeller.plc.NodeVector;
+import geometry.Matrix3D;
+import geometry.MyPoint3D;
+import java.awt.Color;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/** Allocation benchmark for the z-buffer painting loop of the View3DPanel class.
+ * A grid model is painted for a number of frames while the view rotates, as during continuous interaction,
+ * first with the previous loop (a new z-buffer, projected point objects and facet arrays for every frame)
+ * and then with the current loop (pooled frame buffer, primitive projection arrays and facet arrays).
+ * The bytes allocated by the painting thread are measured with com.sun.management.ThreadMXBean.
+ * The loops replay the node projection and facet/node painting in View3DPanel.paintComponent
+ * without the Swing panel and controller (the overlays painted with Java2D are not included).
+ * Run with the FacetModeller classes and libraries on the classpath:
+ * java facetmodeller.panels.View3DAllocationBenchmark [grid size ...]
+ * @author Peter Lelievre
+ */
+public final class View3DAllocationBenchmark {
+
+    // -------------------- Properties -------------------
+
+    private static final int WIDTH = 1200; // HARDWIRE: panel size
+    private static final int HEIGHT = 900;
+    private static final int WARMUP = 5; // HARDWIRE: frames painted before measuring
+    private static final int FRAMES = 10; // HARDWIRE: frames measured
+    private static final int NODE_WIDTH = 6; // HARDWIRE: node painting width
+    private static final int SHADED_COLORS = 4096; // as in View3DPanel
+
+    private final Node[] nodes;
+    private final Facet[] facets;
+    private final Projector3D projector = new Projector3D(true);
+
+    // The pooled objects, as in View3DPanel:
+    private FrameBuffer frameBuffer = null;
+    private double[] projectedCoords = new double[0];
+    private boolean[] projected = new boolean[0];
+    private MyPoint3D[] projectedPoints = new MyPoint3D[0];
+    private MyPoint3D[][] facetPoints = new MyPoint3D[0][];
+    private final float[] hsb = new float[3];
+    private final Color[] shadedColors = new Color[SHADED_COLORS];
+
+    // -------------------- Constructor -------------------
+
+    /** Creates a wavy grid surface of g x g off-section nodes and 2(g-1)^2 triangular facets. */
+    private View3DAllocationBenchmark(int g) {
+        Group group = new Group("grid",Color.GREEN);
+        nodes = new Node[g*g];
+        for (int i=0 ; i<g ; i++ ) {
+            for (int j=0 ; j<g ; j++ ) {
+                double z = 30.0*( Math.sin(0.1*i) + Math.cos(0.13*j) );
+                nodes[i*g+j] = new NodeOffSection( 10.0*i , 10.0*j , z );
+            }
+        }
+        facets = new Facet[2*(g-1)*(g-1)];
+        int k = 0;
+        for (int i=0 ; i<g-1 ; i++ ) {
+            for (int j=0 ; j<g-1 ; j++ ) {
+                facets[k++] = triangle( group , nodes[i*g+j] , nodes[(i+1)*g+j] , nodes[i*g+j+1] );
+                facets[k++] = triangle( group , nodes[(i+1)*g+j] , nodes[(i+1)*g+j+1] , nodes[i*g+j+1] );
+            }
+        }
+        projector.setSpaceOrigin(new MyPoint3D( 5.0*g , 5.0*g , 0.0 ));
+        projector.setImageOrigin(new MyPoint3D( WIDTH/2.0 , HEIGHT/2.0 , 0.0 ));
+        projector.setSceneAndZoomScaling( 1.0/(10.0*g) );
+        projector.setImageSizeScaling( 0.9*HEIGHT );
+    }
+
+    private static Facet triangle(Group group, Node n1, Node n2, Node n3) {
+        Facet facet = new Facet(group);
+        facet.addNode(n1);
+        facet.addNode(n2);
+        facet.addNode(n3);
+        return facet;
+    }
+
+    // -------------------- Main -------------------
+
+    public static void main(String[] args) {
+        int[] sizes = {30, 300}; // HARDWIRE: default grid sizes (900 and 90000 nodes)
+        if (args.length>0) {
+            sizes = new int[args.length];
+            for (int i=0 ; i<args.length ; i++ ) { sizes[i] = Integer.parseInt(args[i]); }
+        }
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        for (int g : sizes) {
+            View3DAllocationBenchmark bench = new View3DAllocationBenchmark(g);
+            for (int f=0 ; f<WARMUP ; f++ ) {
+                bench.rotate(f);
+                bench.paintPrevious();
+                bench.paintPooled();
+            }
+            long b0 = mx.getThreadAllocatedBytes(tid);
+            long t0 = System.nanoTime();
+            for (int f=0 ; f<FRAMES ; f++ ) {
+                bench.rotate(f);
+                bench.paintPrevious();
+            }
+            long b1 = mx.getThreadAllocatedBytes(tid);
+            long t1 = System.nanoTime();
+            for (int f=0 ; f<FRAMES ; f++ ) {
+                bench.rotate(f);
+                bench.paintPooled();
+            }
+            long b2 = mx.getThreadAllocatedBytes(tid);
+            long t2 = System.nanoTime();
+            System.out.printf("%d nodes, %d facets: previous %.2f MB/frame (%.1f ms), pooled %.3f MB/frame (%.1f ms)%n",
+                    bench.nodes.length, bench.facets.length,
+                    (b1-b0)/1.0E6/FRAMES, (t1-t0)/1.0E6/FRAMES, (b2-b1)/1.0E6/FRAMES, (t2-t1)/1.0E6/FRAMES);
+        }
+    }
+
+    // -------------------- Private Methods -------------------
+
+    /** Rotates the view a little for each frame. */
+    private void rotate(int frame) {
+        projector.setRotationMatrix(Matrix3D.rotX( -0.6 - 0.01*frame ));
+    }
+
+    /** The previous painting loop: a new z-buffer and projected point objects for every frame. */
+    private void paintPrevious() {
+        ZBuffer3D zbuf = new ZBuffer3D( WIDTH , HEIGHT , -Double.MAX_VALUE , Color.WHITE );
+        int n = nodes.length;
+        MyPoint3D[] points = new MyPoint3D[n];
+        for (int i=0 ; i<n ; i++ ) {
+            Node node = nodes[i];
+            node.setID(i);
+            MyPoint3D p = node.getPoint3D();
+            points[i] = ( p==null ? null : projector.spaceToImage(p) );
+        }
+        for (Facet facet : facets) {
+            int m = facet.size();
+            MyPoint3D[] pts = new MyPoint3D[m];
+            boolean ok = true;
+            for (int k=0 ; k<m ; k++ ) {
+                pts[k] = points[facet.getNode(k).getID()];
+                if (pts[k]==null) { ok=false; break; }
+            }
+            if (!ok) { continue; }
+            MyPoint3D v = facet.getNormal();
+            if (v==null) { continue; }
+            v = v.deepCopy();
+            v.rotate(projector.getRotationMatrix());
+            double d = 1.0 - ( 1.0 - Math.abs(v.getZ()) )*0.8;
+            Color col = facet.getColor();
+            float[] c = Color.RGBtoHSB(col.getRed(),col.getGreen(),col.getBlue(),null);
+            col = Color.getHSBColor( c[0] , c[1] , c[2]*(float)d );
+            zbuf.putFacet(pts,col,Color.BLACK,false);
+        }
+        for (int i=0 ; i<n ; i++ ) {
+            if (points[i]!=null) { zbuf.putNode(points[i],Color.RED,NODE_WIDTH); }
+        }
+        zbuf.getImage();
+    }
+
+    /** The current painting loop, as in View3DPanel.paintComponent for the single z-buffer. */
+    private void paintPooled() {
+        if ( frameBuffer==null || frameBuffer.getWidth()!=WIDTH || frameBuffer.getHeight()!=HEIGHT ) {
+            frameBuffer = new FrameBuffer(WIDTH,HEIGHT);
+        }
+        ZBuffer3D zbuf = new ZBuffer3D( frameBuffer , -Double.MAX_VALUE , Color.WHITE );
+        int n = nodes.length;
+        ensureProjectionCapacity(n);
+        for (int i=0 ; i<n ; i++ ) {
+            Node node = nodes[i];
+            node.setID(i);
+            int k = 3*i;
+            boolean ok = ( node.getSpatialCoordinates(projectedCoords,k) && projector.spaceToImage(projectedCoords,k) );
+            projected[i] = ok;
+            if (ok) {
+                MyPoint3D p = projectedPoints[i];
+                p.setX(projectedCoords[k]);
+                p.setY(projectedCoords[k+1]);
+                p.setZ(projectedCoords[k+2]);
+            }
+        }
+        for (Facet facet : facets) {
+            NodeVector facetNodes = facet.getNodes();
+            boolean ok = true;
+            for (int k=0 ; k<facetNodes.size() ; k++ ) {
+                if (!projected[facetNodes.get(k).getID()]) { ok=false; break; }
+            }
+            if (!ok) { continue; }
+            int m = facet.size();
+            MyPoint3D[] pts = getFacetPoints(m);
+            for (int k=0 ; k<m ; k++ ) {
+                pts[k] = projectedPoints[facet.getNode(k).getID()];
+            }
+            MyPoint3D v = facet.getNormal();
+            if (v==null) { continue; }
+            Matrix3D r = projector.getRotationMatrix();
+            double d = r.get(2,0)*v.getX() + r.get(2,1)*v.getY() + r.get(2,2)*v.getZ();
+            d = 1.0 - ( 1.0 - Math.abs(d) )*0.8;
+            Color col = facet.getColor();
+            Color.RGBtoHSB(col.getRed(),col.getGreen(),col.getBlue(),hsb);
+            hsb[2] *= (float)d;
+            col = getShadedColor( Color.HSBtoRGB(hsb[0],hsb[1],hsb[2]) );
+            zbuf.putFacet(pts,col,Color.BLACK,false);
+        }
+        for (int i=0 ; i<n ; i++ ) {
+            if (projected[i]) { zbuf.putNode(projectedPoints[i],Color.RED,NODE_WIDTH); }
+        }
+        zbuf.getImage();
+    }
+
+    private void ensureProjectionCapacity(int n) {
+        int n0 = projected.length;
+        if (n<=n0) { return; }
+        int n1 = Math.max( n , n0 + n0/2 );
+        projectedCoords = new double[3*n1];
+        projected = new boolean[n1];
+        projectedPoints = Arrays.copyOf(projectedPoints,n1);
+        for (int i=n0 ; i<n1 ; i++ ) {
+            projectedPoints[i] = new MyPoint3D(0,0,0);
+        }
+    }
+
+    private MyPoint3D[] getFacetPoints(int n) {
+        if (n>=facetPoints.length) { facetPoints = Arrays.copyOf(facetPoints,n+1); }
+        if (facetPoints[n]==null) { facetPoints[n] = new MyPoint3D[n]; }
+        return facetPoints[n];
+    }
+
+    private Color getShadedColor(int rgb) {
+        int k = ( rgb ^ (rgb>>>12) ) & (SHADED_COLORS-1);
+        Color col = shadedColors[k];
+        if ( col==null || col.getRGB()!=rgb ) {
+            col = new Color(rgb);
+            shadedColors[k] = col;
+        }
+        return col;
+    }
+
+}
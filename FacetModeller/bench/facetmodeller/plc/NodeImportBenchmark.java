@@ -0,0 +1,90 @@
+package facetmodeller.plc;
+
+import facetmodeller.ModelManager;
+import facetmodeller.groups.Group;
+import java.awt.Color;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/** Benchmark showing that importing and merging large node lists scales linearly with the number of nodes.
+ * For each size a .node file is written to a temporary file and then
+ * 1) read into an indexed NodeVector, as in the LoadNodesAndFacetsMenuTask class,
+ * 2) added to a new PLC and group with a PLCBuilder, and
+ * 3) merged into a list that already holds half of the nodes (duplicates are skipped on adding),
+ *    after which the index of every node is looked up.
+ * The time per node should stay about the same as the size doubles.
+ * Run with the FacetModeller classes and libraries on the classpath:
+ * java facetmodeller.plc.NodeImportBenchmark [number of nodes ...]
+ * @author Peter Lelievre
+ */
+public final class NodeImportBenchmark {
+
+    // -------------------- Main -------------------
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = {100000, 200000, 400000}; // HARDWIRE: default numbers of nodes
+        if (args.length>0) {
+            sizes = new int[args.length];
+            for (int i=0 ; i<args.length ; i++ ) { sizes[i] = Integer.parseInt(args[i]); }
+        }
+        run(sizes[0],false); // warm up
+        System.out.println("Time per node in microseconds (read, build, merge):");
+        for (int n : sizes) { run(n,true); }
+    }
+
+    // -------------------- Private Methods -------------------
+
+    /** Reads, builds and merges n nodes, optionally reporting the times. */
+    private static void run(int n, boolean report) throws IOException {
+        File file = writeNodeFile(n);
+        try {
+            // Read the node file:
+            long t0 = System.nanoTime();
+            NodeVector nodes = new NodeVector(true);
+            NodeVector.ReadNodesReturnObject obj = nodes.readNodes(file,3);
+            if (obj.getErrmsg()!=null) { throw new IOException(obj.getErrmsg()); }
+            long t1 = System.nanoTime();
+            // Add the nodes to a new PLC and group:
+            Group group = new Group("imported",Color.RED);
+            for (int i=0 ; i<nodes.size() ; i++ ) { nodes.get(i).setGroup(group); }
+            long t2 = System.nanoTime();
+            PLCBuilder builder = new ModelManager(3).newPLCBuilder(nodes.size(),0,false);
+            for (int i=0 ; i<nodes.size() ; i++ ) { builder.addNode(nodes.get(i)); }
+            builder.finish();
+            long t3 = System.nanoTime();
+            // Merge with a list holding every second node and look up every node:
+            NodeVector merged = new NodeVector(true);
+            for (int i=0 ; i<nodes.size() ; i+=2 ) { merged.add(nodes.get(i)); }
+            merged.addAll(group.getNodes());
+            for (int i=0 ; i<nodes.size() ; i++ ) {
+                if (merged.indexOf(nodes.get(i))<0) { throw new IllegalStateException("Node missing after merge."); }
+            }
+            long t4 = System.nanoTime();
+            if (merged.size()!=n) { throw new IllegalStateException("Duplicate nodes after merge."); }
+            if (!report) { return; }
+            System.out.printf("  %d nodes: %.2f, %.2f, %.2f (total %.0f ms)%n", n,
+                    (t1-t0)/1.0E3/n, (t3-t2)/1.0E3/n, (t4-t3)/1.0E3/n, (t1-t0+t4-t2)/1.0E6 );
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** Writes a .node file with random coordinates. */
+    private static File writeNodeFile(int n) throws IOException {
+        File file = File.createTempFile("bench",".node");
+        Random random = new Random(n);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write(n + " 3 0 0");
+            writer.newLine();
+            for (int i=0 ; i<n ; i++ ) {
+                writer.write( (i+1) + " " + random.nextDouble() + " " + random.nextDouble() + " " + random.nextDouble() );
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+}
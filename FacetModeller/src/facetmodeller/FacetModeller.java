@@ -36,13 +36,16 @@ public final class FacetModeller extends JFrameExit {
     
     // ------------------ Properties -------------------
     
+    private static final int UNDO_MAX_COMMANDS = 1000; // HARDWIRE: maximum number of commands held for undoing
+    private static final long UNDO_MEMORY_FRACTION = 4; // HARDWIRE: the undo information can use 1/4 of the maximum heap size by default
+    
     // Objects that manage various components of the application:
     private FileIOManager fileIOManager = new FileIOManager(this); // manages reading and writing tasks
     private ModelManager modelManager; // the model components (plc, sections, groups)
     private ViewManager viewManager; // the GUI components
     private InteractionManager interactionManager; // manages user interaction with the GUI
     private Synthesizer synthesizer; // generates the temporary overlay objects
-    private UndoVector undoVector = new UndoVector(32); // holds the undo information
+    private UndoVector undoVector = new UndoVector(UNDO_MAX_COMMANDS,Runtime.getRuntime().maxMemory()/UNDO_MEMORY_FRACTION); // holds the undo information
 
     // Working objects:
     private Section calibrationSection = null; // the section to calibrate
@@ -165,7 +168,10 @@ public final class FacetModeller extends JFrameExit {
 
     public void mouseDrag(MyPoint2D p) { interactionManager.mouseDrag(p); }
     public void mouseClick(MyPoint2D p) { interactionManager.mouseClick(p); }
+    public void mousePress(MyPoint2D p) { interactionManager.mousePress(p); }
     public void mouseMove(MyPoint2D p) { interactionManager.mouseMove(p); }
+    public void mouseRelease(MyPoint2D p) { interactionManager.mouseRelease(p); }
+    public void finishDrag() { interactionManager.finishDrag(); }
 
     public void groupSelectionChanged(boolean doRedraw) {
         // Set the current facet to null just in case we are in the middle of creating a facet:
@@ -337,8 +343,11 @@ public final class FacetModeller extends JFrameExit {
     public MyPoint3D[] getVOICorners() { return modelManager.getVOICorners(); }
     public NodeVector findUnusedNodes() { return modelManager.findUnusedNodes(); }
     public DuplicateNodeInfo findDuplicateNodes() { return modelManager.findDuplicateNodes(); }
+    public DuplicateNodeInfo findDuplicateNodes(double tol) { return modelManager.findDuplicateNodes(tol); }
     public FacetVector findBadFacets() { return modelManager.findBadFacets(numberOfDimensions()); }
+    public FacetVector findIntersectingFacets() { return modelManager.findIntersectingFacets(); }
     public FacetVector findHoles() { return modelManager.findHoles(); }
+    public FacetVector getEdgeFacets(Node n1, Node n2) { return modelManager.getEdgeFacets(n1,n2); }
     public NodeVector removeNodesCalibrationRange() { return modelManager.removeNodesCalibrationRange(); }
     public void clearPLC() { modelManager.clearPLC(); }
     public void resetIDs() { modelManager.resetIDs(); }
@@ -394,6 +403,7 @@ public final class FacetModeller extends JFrameExit {
     public void toggleScroller() { viewManager.toggleScroller(); }
     public void redraw() { viewManager.redraw(); }
     public void redraw2D() { viewManager.redraw2D(); }
+    public void redrawNode2D(Node node) { viewManager.redrawNode2D(node); }
     public void redraw3D() { viewManager.redraw3D(); }
     //private void updateSectionBar() {
     //    viewManager.updateSectionBar(numberOfDimensions(),numberOfSections(),
@@ -600,5 +610,16 @@ public final class FacetModeller extends JFrameExit {
     public void undoVectorAdd(Command com) { undoVector.add(com); }
     public void undoVectorRemove() { undoVector.remove(); }
     public void undoVectorClear() { undoVector.clear(); }
+    public void undoVectorUndone() { undoVector.undone(); }
+    public boolean getRedoIsEmpty() { return undoVector.isRedoEmpty(); }
+    public Command redoVectorGet() { return undoVector.getRedo(); }
+    public void undoVectorRedone() { undoVector.redone(); }
+    public int undoVectorSize() { return undoVector.size(); }
+    public long undoVectorEstimatedSize() { return undoVector.getEstimatedSize(); }
+    public int undoVectorRedoSize() { return undoVector.redoSize(); }
+    public long undoVectorRedoEstimatedSize() { return undoVector.getRedoEstimatedSize(); }
+    public long undoVectorJournalSize() { return undoVector.getJournalSize(); }
+    public long getUndoMemoryLimit() { return undoVector.getMaxBytes(); }
+    public void setUndoMemoryLimit(long b) { undoVector.setMaxBytes(b); }
 
 }
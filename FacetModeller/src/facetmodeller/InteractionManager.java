@@ -24,6 +24,9 @@ public class InteractionManager implements SessionIO {
     public void mouseMove(MyPoint2D p) { mouseManager.mouseMove(p); }
     public void mouseDrag(MyPoint2D p) { mouseManager.mouseDrag(p); }
     public void mouseClick(MyPoint2D p) { mouseManager.mouseClick(p); }
+    public void mousePress(MyPoint2D p) { mouseManager.mousePress(p); }
+    public void mouseRelease(MyPoint2D p) { mouseManager.mouseRelease(p); }
+    public void finishDrag() { mouseManager.finishDrag(); }
     public ClickTask getClickTask(int mode) { return mouseManager.getClickTask(mode); }
     
     // Wrappers for the InteractionOptions class:
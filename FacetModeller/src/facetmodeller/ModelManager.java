@@ -8,11 +8,13 @@ import facetmodeller.groups.GroupVector;
 import facetmodeller.gui.SceneInfo;
 import facetmodeller.plc.Facet;
 import facetmodeller.plc.FacetVector;
+import facetmodeller.plc.IndexedVector;
 import facetmodeller.plc.Node;
 import facetmodeller.plc.NodeOffSection;
 import facetmodeller.plc.NodeOnSection;
 import facetmodeller.plc.NodeVector;
 import facetmodeller.plc.PLC;
+import facetmodeller.plc.PLCBuilder;
 import facetmodeller.plc.Region;
 import facetmodeller.plc.RegionVector;
 import facetmodeller.sections.ImageCrossSection;
@@ -32,6 +34,7 @@ import java.awt.Component;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.util.Set;
 
 /** The FacetModeller Model component of the MVC architecture.
 /** Contains all the model information: PCL, groups, sections.
@@ -142,12 +145,22 @@ public class ModelManager implements SessionIO {
     public void removeNode(Node n) { plc.removeNode(n); }
     public void addFacet(Facet f) { plc.addFacet(f); }
     public void removeFacet(Facet f) { plc.removeFacet(f); }
+    public IndexedVector.Removal<Node> removeNodes(Set<Node> set) { return plc.removeNodes(set); }
+    public void restoreNodes(IndexedVector.Removal<Node> removal) { plc.restoreNodes(removal); }
+    public IndexedVector.Removal<Facet> removeFacets(Set<Facet> set) { return plc.removeFacets(set); }
+    public void restoreFacets(IndexedVector.Removal<Facet> removal) { plc.restoreFacets(removal); }
+    public PLCBuilder newPLCBuilder(int numNodes, int numFacets, boolean linkFacets) { return new PLCBuilder(plc,numNodes,numFacets,linkFacets); }
+    public void facetEdgesChanging(Facet f) { plc.facetEdgesChanging(f); }
+    public void facetEdgesChanged(Facet f) { plc.facetEdgesChanged(f); }
+    public FacetVector getEdgeFacets(Node n1, Node n2) { return plc.getEdgeFacets(n1,n2); }
     public void addRegion(Region r) { plc.addRegion(r); }
     public void removeRegion(Region r) { plc.removeRegion(r); }
     public Node findClosestNode(Node n) { return plc.findClosestNode(n); }
     public NodeVector findUnusedNodes() { return plc.findUnusedNodes(); }
     public DuplicateNodeInfo findDuplicateNodes() { return plc.findDuplicateNodes(); }
+    public DuplicateNodeInfo findDuplicateNodes(double tol) { return plc.findDuplicateNodes(tol); }
     public FacetVector findBadFacets(int ndim) { return plc.findBadFacets(ndim); }
+    public FacetVector findIntersectingFacets() { return plc.findIntersectingFacets(); }
     public FacetVector findHoles() { return plc.findHoles(); }
     public CommandVector snapToVOI(double snappingDistance, GroupVector groups, boolean doH, boolean doV) {
         return plc.snapToVOI(voi,snappingDistance,groups,doH,doV);
@@ -522,6 +535,12 @@ public class ModelManager implements SessionIO {
         // Check ndim:
         if (ndim!=numberOfDimensions()) { return "Incorrect number of dimensions."; }
 
+        // The nodes and facets are added to the new PLC in bulk once they are linked to their sections and groups
+        // (the file holds each object once so the duplicate checks can be skipped):
+        PLCBuilder builder = new PLCBuilder(plc2,nnodes,nfacets,true);
+        Node[] nodes2 = new Node[nnodes];
+        Facet[] facets2 = new Facet[nfacets];
+
         // ---------- IN THE FIRST PASS I READ ALL INFORMATION OTHER THAN ID'S AND CREATE NEW OBJECTS ----------
 
         // Skip the commented start of node definitions:
@@ -560,13 +579,13 @@ public class ModelManager implements SessionIO {
             // Read the additional information for the node (depends on the node type):
             String msg = node.readSessionInformation(reader,merge);
             if (msg!=null) { return "Reading information for node " + i + "." + System.lineSeparator() + msg.trim(); }
-            plc2.addNode(node);
+            nodes2[i] = node; // added to the plc later
         }
 
         // Loop over each facet:
         for (int i=0 ; i<nfacets ; i++ ) {
-            // Add a new empty facet to the plc (these facets are filled later):
-            plc2.addFacet( new Facet() );
+            // Create a new empty facet (these facets are filled and added to the plc later):
+            facets2[i] = new Facet();
         }
 
         // Skip the commented start of region definitions:
@@ -649,8 +668,8 @@ public class ModelManager implements SessionIO {
 
         // Loop over each node:
         for (int i=0 ; i<nnodes ; i++ ) {
-            Node node = plc2.getNode(i);
-            // The node gets linked to the facets in the loop over each facet below.
+            Node node = nodes2[i];
+            // The node gets linked to the facets when the plc is finished below.
             // Read the section id and group id:
             textLine = FileUtils.readLine(reader);
             if (textLine==null) { return "Reading node section and group IDs line."; }
@@ -662,12 +681,10 @@ public class ModelManager implements SessionIO {
                 sid = Integer.parseInt(ss[0].trim()); // converts to integer
                 gid = Integer.parseInt(ss[1].trim()); // converts to integer
             } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) { return "Parsing node section and group IDs."; }
-            // Cross-link the node and section:
+            // Set the node section and group then add the node to the plc, section and group:
             node.setSection( sections2.get(sid) );
-            sections2.get(sid).addNode(node);
-            // Cross-link the node and group:
             node.setGroup( groups2.get(gid) );
-            groups2.get(gid).addNode(node);
+            builder.addNode(node);
         }
 
         // Skip the commented start of facet linkages:
@@ -676,8 +693,8 @@ public class ModelManager implements SessionIO {
 
         // Loop over each facet:
         for (int i=0 ; i<nfacets ; i++ ) {
-            Facet facet = plc2.getFacet(i);
-            // Read the node id's and link those nodes to the facet:
+            Facet facet = facets2[i];
+            // Read the node id's and add those nodes to the facet:
             textLine = FileUtils.readLine(reader);
             if (textLine==null) { return "Reading facet node IDs line."; }
             textLine = textLine.trim();
@@ -693,9 +710,8 @@ public class ModelManager implements SessionIO {
                 try {
                     id = Integer.parseInt(ss[j+1].trim()); // converts to integer
                 } catch (NumberFormatException e) { return "Parsing facet node ID."; }
-                // Cross-link the facet and node:
-                facet.addNode( plc2.getNode(id) );
-                plc2.getNode(id).addFacet( facet );
+                // Add the node to the facet (the facet is added to the node when the plc is finished):
+                facet.addNode( nodes2[id] );
             }
             // Read the section id's:
             textLine = FileUtils.readLine(reader);
@@ -732,10 +748,13 @@ public class ModelManager implements SessionIO {
             } catch (NumberFormatException e) { return "Parsing facet group ID and boundary marker line."; }
             // Set the facet boundary marker:
             facet.setBoundaryMarker(bmarker);
-            // Cross-link the facet and group:
+            // Set the facet group then add the facet to the plc and group:
             facet.setGroup( groups2.get(id) );
-            groups2.get(id).addFacet(facet);
+            builder.addFacet(facet);
         }
+        
+        // Link the nodes to the facets that contain them:
+        builder.finish();
 
         // Skip the commented start of region linkages:
         textLine = FileUtils.readLine(reader);
@@ -136,6 +136,13 @@ public final class MouseInteractionManager {
         if (task!=null) { task.mouseClick(p); }
     }
     
+    public void mousePress(MyPoint2D p) {
+        // Get the ClickTask object corresponding to the current click mode:
+        ClickTask task = getClickTask( controller.getClickMode() );
+        // Execute the task:
+        if (task!=null) { task.mousePress(p); }
+    }
+    
     public void mouseDrag(MyPoint2D p) {
         // Get the ClickTask object corresponding to the current click mode:
         ClickTask task = getClickTask( controller.getClickMode() );
@@ -145,6 +152,21 @@ public final class MouseInteractionManager {
         controller.updateCursorBar(p);
     }
 
+    public void mouseRelease(MyPoint2D p) {
+        // Get the ClickTask object corresponding to the current click mode:
+        ClickTask task = getClickTask( controller.getClickMode() );
+        // Execute the task:
+        if (task!=null) { task.mouseRelease(p); }
+    }
+
+    /** Finishes any drag in progress for the current click mode (call before the click mode changes). */
+    public void finishDrag() {
+        // Get the ClickTask object corresponding to the current click mode:
+        ClickTask task = getClickTask( controller.getClickMode() );
+        // Execute the task:
+        if (task!=null) { task.finishDrag(); }
+    }
+
     public void mouseMove(MyPoint2D p) {
         // Get the ClickTask object corresponding to the current click mode:
         ClickTask task = getClickTask( controller.getClickMode() );
@@ -180,6 +180,9 @@ public final class ViewManager implements SessionIO {
         viewsPanel.redraw2D();
         updateCursorBar(null); // clears the cursor location bar
     }
+    public void redrawNode2D(Node node) {
+        viewsPanel.redrawNode2D(node); // (doesn't clear the cursor location bar)
+    }
     public void redraw3D() {
         if ( controller.is3D() && controller.getShowView3DPanel() ) { viewsPanel.redraw3D(); }
     }
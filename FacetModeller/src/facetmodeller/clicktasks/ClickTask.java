@@ -13,7 +13,10 @@ public interface ClickTask {
     public String title(); // title for dialogs
     public boolean check(); // return true if all the required information is available
     public void mouseClick(MyPoint2D p); // execute whatever task is required when the mouse is clicked
+    public void mousePress(MyPoint2D p); // execute whatever task is required when the mouse button is pressed (e.g. at the start of a drag)
     public void mouseDrag(MyPoint2D p); // execute whatever task is required when the mouse is dragged
     public void mouseMove(MyPoint2D p); // execute whatever task is required when the mouse is moved
+    public void mouseRelease(MyPoint2D p); // execute whatever task is required when the mouse button is released (e.g. at the end of a drag)
+    public void finishDrag(); // finish any drag in progress without a mouse release (e.g. when the click mode changes)
     
 }
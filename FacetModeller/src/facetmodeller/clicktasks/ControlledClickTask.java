@@ -16,7 +16,9 @@ public abstract class ControlledClickTask implements ClickTask {
         controller = con;
     }
     
-    // Implement default drag and move execution methods:
+    // Implement default press, drag, move and release execution methods:
+    @Override
+    public void mousePress(MyPoint2D p) {}
     @Override
     public void mouseDrag(MyPoint2D p) {
         // Clear temporary overlays:
@@ -31,5 +33,9 @@ public abstract class ControlledClickTask implements ClickTask {
         // Update the cursor bar:
         controller.updateCursorBar(p);
     }
+    @Override
+    public void mouseRelease(MyPoint2D p) {}
+    @Override
+    public void finishDrag() {}
     
 }
@@ -5,7 +5,6 @@ import facetmodeller.FacetModeller;
 import facetmodeller.commands.AddNodeCommand;
 import facetmodeller.groups.Group;
 import facetmodeller.gui.ClickModeManager;
-import facetmodeller.plc.Facet;
 import facetmodeller.plc.FacetVector;
 import facetmodeller.plc.Node;
 import facetmodeller.plc.NodeOffSection;
@@ -68,13 +67,10 @@ public final class DefineNodeOnEdgeClickTask extends ControlledClickTask {
             
             // Check if the two nodes define an edge:
             boolean ok = false;
-            FacetVector facets1 = node1.getFacets(); // the facets for the first node
-            for (int i1=0 ; i1<facets1.size() ; i1++ ) { // loop over each facet for the first node
-                Facet f1 = facets1.get(i1);
-                // Skip non-triangular facets:
-                if ( f1.size() != 3 ) { continue; }
-                // Check if the facet contains the second node:
-                if ( f1.containsNode(node2) ) {
+            FacetVector edgeFacets = controller.getEdgeFacets(node1,node2); // the facets containing both nodes on an edge
+            for (int i1=0 ; i1<edgeFacets.size() ; i1++ ) {
+                // Check for a triangular facet:
+                if ( edgeFacets.get(i1).size() == 3 ) {
                     ok = true;
                     break;
                 }
@@ -59,16 +59,13 @@ public final class FlipEdgeClickTask extends ControlledClickTask {
             NodeVector nodes = new NodeVector(); // will hold the 4 nodes
             nodes.add(currentNode);
             nodes.add(node2);
-            FacetVector facets1 = currentNode.getFacets(); // the facets for the first node
-            for (int i1=0 ; i1<facets1.size() ; i1++ ) { // loop over each facet for the first node
+            FacetVector facets1 = controller.getEdgeFacets(currentNode,node2); // the facets containing both nodes on an edge
+            for (int i1=0 ; i1<facets1.size() ; i1++ ) {
                 Facet f1 = facets1.get(i1);
                 // Skip non-triangular facets:
                 if ( f1.size() != 3 ) { continue; }
-                // Check if the facet contains the second node:
-                if ( f1.containsNode(node2) ) {
-                    // Add the facet to the list:
-                    edgeFacets.add(f1);
-                }
+                // Add the facet to the list:
+                edgeFacets.add(f1);
             }
             
             // Nullify the temporary object before any dialogs can launch:
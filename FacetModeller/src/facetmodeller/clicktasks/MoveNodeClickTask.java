@@ -8,8 +8,21 @@ import facetmodeller.sections.Section;
 import geometry.MyPoint2D;
 import geometry.MyPoint3D;
 
+/** Moves nodes either by clicking on the node and then on the new location, or by dragging the node.
+ * The node dragged is the one closest to where the mouse button was pressed
+ * (the panel only reports a drag once the cursor has moved a few pixels, so a jittered click is still a click).
+ * A drag is recorded as a single move command from the starting position to the final position.
+ * While dragging only the region of the 2D panel around the node is repainted.
+ * @author Peter
+ */
 public final class MoveNodeClickTask extends ControlledClickTask {
     
+    // Working objects for dragging:
+    private MyPoint2D pressPoint = null; // where the mouse button was pressed
+    private Node dragNode = null; // the node being dragged
+    private MyPoint2D dragStart2 = null; // starting position of an on-section node
+    private MyPoint3D dragStart3 = null; // starting position of an off-section node
+    
     public MoveNodeClickTask(FacetModeller con) { super(con); }
     
     @Override
@@ -71,22 +84,8 @@ public final class MoveNodeClickTask extends ControlledClickTask {
             MoveNodeCommand com;
             if (isOff) {
                 // Move the off-section node laterally ...
-                // Get the 3D coordinates of the point:
-                MyPoint3D point3 = currentNode.getPoint3D().deepCopy();
+                MyPoint3D point3 = offSectionTarget(currentNode,currentSection,p);
                 if (point3==null) { return; }
-                // Project onto current section:
-                MyPoint2D p2 = currentSection.projectOnto(point3); // image pixel coordinates
-                if (p2==null) { return; }
-                // Convert points from image pixel coordinates to spatial coordinates:
-                MyPoint3D p0 = currentSection.imageToSpace(p); // clicked point
-                if (p0==null) { return; }
-                MyPoint3D p3 = currentSection.imageToSpace(p2); // projected node
-                if (p3==null) { return; }
-                // Calculate the 3D spatial vector between the two points on the image:
-                // (the vector will lie in the plane of the section, e.g. laterally to the current 2D view)
-                MyPoint3D v = MyPoint3D.minus(p0,p3);
-                // Move the off-section node by that vector:
-                point3.plus(v);
                 com = new MoveNodeCommand(currentNode,null,point3);
             } else {
                 // Move the on-section node to the click point:
@@ -103,8 +102,101 @@ public final class MoveNodeClickTask extends ControlledClickTask {
         
     }
     
+    @Override
+    public void mousePress(MyPoint2D p) {
+        // Finish any drag whose mouse release was missed:
+        finishDrag();
+        pressPoint = p;
+    }
+    
+    @Override
+    public void mouseDrag(MyPoint2D p) {
+        
+        // Update the cursor bar (temporary overlays are kept while dragging so the node stays highlighted):
+        if (dragNode==null) {
+            super.mouseDrag(p);
+        } else {
+            controller.updateCursorBar(p);
+        }
+        
+        // Check for the required information:
+        if (!check()) { return; }
+        if (p==null) { return; }
+        
+        // Get the current section:
+        Section currentSection = controller.getSelectedCurrentSection();
+        
+        // Check if a drag has started:
+        if (dragNode==null) {
+            // Only start one drag for each mouse press:
+            if (pressPoint==null) { return; }
+            MyPoint2D p0 = pressPoint;
+            pressPoint = null;
+            // Calculate the closest node to the point where the mouse button was pressed:
+            if (!controller.calculateClosestNode(p0)) { return; }
+            Node node = controller.getClosestNode();
+            if (node==null) { return; }
+            // If the node is on-section then make sure the node is on the current section:
+            if ( !node.isOff() && !node.getSection().equals(currentSection) ) { return; }
+            // Save the starting position:
+            if (node.isOff()) {
+                MyPoint3D p3 = node.getPoint3D();
+                if (p3==null) { return; }
+                dragStart3 = p3.deepCopy();
+            } else {
+                MyPoint2D p2 = node.getPoint2D();
+                if (p2==null) { return; }
+                dragStart2 = p2.deepCopy();
+            }
+            dragNode = node;
+            // Forget any node chosen by clicking:
+            controller.clearCurrentNode();
+        }
+        
+        // Move the node without creating a command (the command is created when the drag finishes):
+        if (dragNode.isOff()) {
+            MyPoint3D point3 = offSectionTarget(dragNode,currentSection,p);
+            if (point3==null) { return; }
+            dragNode.setPoint3D(point3);
+        } else {
+            dragNode.setPoint2D(p);
+        }
+        
+        // Repaint only the region around the node:
+        controller.redrawNode2D(dragNode);
+        
+    }
+    
+    @Override
+    public void mouseRelease(MyPoint2D p) {
+        finishDrag();
+    }
+    
+    /** Records a drag in progress as a single command (the node has already been moved).
+     * Called when the mouse button is released, and when the click mode changes or the mouse button is
+     * pressed again or moved without a release being seen, so a drag is never left off the undo list. */
+    @Override
+    public void finishDrag() {
+        pressPoint = null;
+        // Check if a drag was in progress:
+        if (dragNode==null) { return; }
+        // Create a single command for the whole drag (the node has already been moved):
+        MoveNodeCommand com = MoveNodeCommand.moved(dragNode,dragStart2,dragStart3);
+        controller.undoVectorAdd(com);
+        // Reset the drag:
+        dragNode = null;
+        dragStart2 = null;
+        dragStart3 = null;
+        // Enable or disable menu items:
+        controller.checkItemsEnabled();
+        // Repaint everything (e.g. the 3D view) now that the drag has finished:
+        controller.redraw();
+    }
+    
     @Override
     public void mouseMove(MyPoint2D p) {
+        // Finish any drag whose mouse release was missed:
+        finishDrag();
         // Check for the required information:
         if (!check()) { return; }
         if (p==null) { return; }
@@ -122,4 +214,30 @@ public final class MoveNodeClickTask extends ControlledClickTask {
         }
     }
     
+    /** Calculates the new position of an off-section node moved laterally (in the plane of the current section) to a point.
+     * @param node
+     * @param currentSection
+     * @param p The point in image pixel coordinates.
+     * @return null if the position can't be calculated. */
+    private MyPoint3D offSectionTarget(Node node, Section currentSection, MyPoint2D p) {
+        // Get the 3D coordinates of the point:
+        MyPoint3D point3 = node.getPoint3D();
+        if (point3==null) { return null; }
+        point3 = point3.deepCopy();
+        // Project onto current section:
+        MyPoint2D p2 = currentSection.projectOnto(point3); // image pixel coordinates
+        if (p2==null) { return null; }
+        // Convert points from image pixel coordinates to spatial coordinates:
+        MyPoint3D p0 = currentSection.imageToSpace(p); // clicked point
+        if (p0==null) { return null; }
+        MyPoint3D p3 = currentSection.imageToSpace(p2); // projected node
+        if (p3==null) { return null; }
+        // Calculate the 3D spatial vector between the two points on the image:
+        // (the vector will lie in the plane of the section, e.g. laterally to the current 2D view)
+        MyPoint3D v = MyPoint3D.minus(p0,p3);
+        // Move the off-section node by that vector:
+        point3.plus(v);
+        return point3;
+    }
+    
 }
@@ -1,10 +1,20 @@
 package facetmodeller.commands;
 
-/** An executable and undoable command with a name.
+/** An executable, undoable and redoable command with a name.
  * @author Peter
  */
 public abstract class Command {
     
+    // Rough sizes (bytes) used when estimating the memory held by commands
+    // (HARDWIRE: these assume a 64-bit JVM with compressed references):
+    protected static final long OBJECT_BYTES = 16; // object header
+    protected static final long REFERENCE_BYTES = 4;
+    protected static final long INT_BYTES = 4;
+    protected static final long POINT_BYTES = OBJECT_BYTES + 3*8; // a MyPoint2D or MyPoint3D object
+    protected static final long LIST_BYTES = 2*OBJECT_BYTES + 16; // an empty list object and its backing array
+    protected static final long NODE_BYTES = 128; // a node object (including its facet list) that only the command refers to
+    protected static final long FACET_BYTES = 96; // a facet object (excluding its node references) that only the command refers to
+    
     private String name;
     
     public Command(String n) {
@@ -18,6 +28,32 @@ public abstract class Command {
     
     public abstract void undo();
     
-//    public abstract void redo();
+    /** Repeats the command after it has been undone.
+     * The default executes the command again, which is suitable when executing only applies changes recorded in the command
+     * (undo methods must therefore leave the information in the command intact).
+     * Commands whose execute methods perform expensive calculations or interact with the user should override this
+     * to apply the changes recorded when first executed.
+     */
+    public void redo() {
+        execute();
+    }
+    
+    /** Moves the undo information held by the command into a journal on disk to reduce memory use.
+     * The information is read back from the journal when the command is undone or redone.
+     * The default does nothing; commands that can hold large amounts of undo information should override this.
+     * @param journal
+     * @return True if any information was moved (the estimated size will have changed).
+     */
+    public boolean spill(UndoJournal journal) {
+        return false;
+    }
+    
+    /** Returns a rough estimate of the memory (bytes) held by the command for undoing it.
+     * The default is suitable for commands that hold only a few references to objects that are also held by the model.
+     * Commands that hold copies, lists or removed objects should override this.
+     * @return  */
+    public long estimatedSize() {
+        return OBJECT_BYTES + 4*REFERENCE_BYTES;
+    }
     
 }
@@ -52,4 +52,22 @@ public class CommandVector extends Command {
         }
     }
     
+    @Override
+    public boolean spill(UndoJournal journal) {
+        boolean spilled = false;
+        for (int i=0 ; i<vector.size() ; i++ ) {
+            if (vector.get(i).spill(journal)) { spilled = true; }
+        }
+        return spilled;
+    }
+    
+    @Override
+    public long estimatedSize() {
+        long n = OBJECT_BYTES + LIST_BYTES + vector.size()*REFERENCE_BYTES;
+        for (int i=0 ; i<vector.size() ; i++ ) {
+            n += vector.get(i).estimatedSize();
+        }
+        return n;
+    }
+    
 }
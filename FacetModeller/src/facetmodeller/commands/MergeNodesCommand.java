@@ -8,13 +8,14 @@ import facetmodeller.plc.NodeVector;
 
 /** Command to replace a node with another and delete the former.
  * If the new node is not in the PLC then it is added to the PLC.
+ * Only the node lists of the changed facets are recorded for undoing the command.
  * @author Peter
  */
 public final class MergeNodesCommand extends ModelCommand {
     
-    private Node node1; // the node removed
-    private Node node2; // the node that replaces the one removed
-    private FacetVector oldFacets1; // a deep copy of the facets belonging to node1 before merging
+    private final Node node1; // the node removed
+    private final Node node2; // the node that replaces the one removed
+    private Node[][] oldFacetNodes1 = null; // the node lists of the facets belonging to node1 before merging
     private AddNodeCommand com = null;
     
     public MergeNodesCommand(ModelManager mod, Node n1, Node n2, String t) {
@@ -26,19 +27,31 @@ public final class MergeNodesCommand extends ModelCommand {
     @Override
     public void execute() {
         // Check if we have to add the new node to the PLC:
+        com = null;
         if (!model.containsNode(node2)) {
             com = new AddNodeCommand(model,node2,""); com.execute();
         }
-        // Make a deep copy of the facets that contain the first node:
+        // Record the node lists of the facets that contain the first node (these are all that change):
         FacetVector facets1 = node1.getFacets();
-        oldFacets1 = facets1.deepCopy(); // contains new Facet objects that link to existing nodes
+        oldFacetNodes1 = new Node[facets1.size()][];
+        for (int i=0 ; i<facets1.size() ; i++ ) {
+            NodeVector nodes = facets1.get(i).getNodes();
+            Node[] a = new Node[nodes.size()];
+            for (int j=0 ; j<a.length ; j++ ) {
+                a[j] = nodes.get(j);
+            }
+            oldFacetNodes1[i] = a;
+        }
         // Replace node1 with node2 in any facet definitions for the node being removed:
         for (int i=0 ; i<facets1.size() ; i++ ) { // loop over every facet that contains the first node
             Facet f = facets1.get(i);
             NodeVector nodes = f.getNodes(); // the nodes in the current facet
+            model.facetEdgesChanging(f);
             while ( nodes.replace(node1,node2) >= 0 ) {} // tries to replace the FIRST instance of node1 in the list until node1 is no longer found
             // If the facet connects a pair of nodes along an edge then delete one of the node references (zero-length edge):
             nodes.removeZeroEdges();
+            f.nodesChanged();
+            model.facetEdgesChanged(f);
             // Make sure that node2 is linked to the facet:
             //f.addNode(node2); // unnecessary
             node2.addFacet(f);
@@ -59,8 +72,14 @@ public final class MergeNodesCommand extends ModelCommand {
         FacetVector facets1 = node1.getFacets();
         for (int i=0 ; i<facets1.size() ; i++ ) {
             Facet f = facets1.get(i);
-            f.clear(); // clears all nodes
-            f.addNodes( oldFacets1.get(i).getNodes() ); // adds old node references back into the facet
+            model.facetEdgesChanging(f);
+            NodeVector nodes = f.getNodes();
+            nodes.clear(); // clears all nodes
+            for (Node n : oldFacetNodes1[i]) {
+                nodes.addDup(n); // adds old node references back into the facet (in case of any repeated nodes)
+            }
+            f.nodesChanged();
+            model.facetEdgesChanged(f);
         }
         // Check if we have to remove the new node from the PLC:
         if (com!=null) {
@@ -69,11 +88,20 @@ public final class MergeNodesCommand extends ModelCommand {
             // Now undo addition of the new node:
             com.undo();
         }
-        // Nullify any working objects:
-        node1 = null;
-        node2 = null;
-        oldFacets1 = null;
-        com = null;
+        // (the command information is kept so that the command can be redone)
+    }
+    
+    @Override
+    public long estimatedSize() {
+        long n = OBJECT_BYTES + 6*REFERENCE_BYTES;
+        if (oldFacetNodes1!=null) {
+            n += OBJECT_BYTES + oldFacetNodes1.length*(REFERENCE_BYTES+OBJECT_BYTES);
+            for (Node[] a : oldFacetNodes1) {
+                n += a.length*REFERENCE_BYTES;
+            }
+        }
+        if (com!=null) { n += com.estimatedSize(); }
+        return n;
     }
     
 }
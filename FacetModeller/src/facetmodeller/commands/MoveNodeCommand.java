@@ -24,6 +24,24 @@ public final class MoveNodeCommand extends Command {
         if (p3!=null) { newP3 = p3.deepCopy(); }
     }
     
+    /** Creates a command for a node that has already been moved (e.g. by dragging it), so that the move can be undone.
+     * The command records the supplied starting position and the current position of the node.
+     * @param n The node moved.
+     * @param start2 The starting 2D point for an on-section node (ignored for an off-section node).
+     * @param start3 The starting 3D point for an off-section node (ignored for an on-section node).
+     * @return  */
+    public static MoveNodeCommand moved(Node n, MyPoint2D start2, MyPoint3D start3) {
+        MoveNodeCommand com;
+        if (n.isOff()) {
+            com = new MoveNodeCommand(n,null,n.getPoint3D());
+            com.oldP3 = start3.deepCopy();
+        } else {
+            com = new MoveNodeCommand(n,n.getPoint2D(),null);
+            com.oldP2 = start2.deepCopy();
+        }
+        return com;
+    }
+    
     @Override
     public void execute() {
         if (node==null) { return; }
@@ -55,4 +73,14 @@ public final class MoveNodeCommand extends Command {
         }
     }
     
+    @Override
+    public long estimatedSize() {
+        long n = OBJECT_BYTES + 6*REFERENCE_BYTES;
+        if (oldP2!=null) { n += POINT_BYTES; }
+        if (oldP3!=null) { n += POINT_BYTES; }
+        if (newP2!=null) { n += POINT_BYTES; }
+        if (newP3!=null) { n += POINT_BYTES; }
+        return n;
+    }
+    
 }
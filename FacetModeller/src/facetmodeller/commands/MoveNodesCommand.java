@@ -0,0 +1,132 @@
+package facetmodeller.commands;
+
+import facetmodeller.plc.Node;
+import geometry.MyPoint3D;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/** Command to move several nodes.
+ * The nodes are moved as they are added to the command (see the move method) and the command holds only
+ * the old and new defining coordinates of the nodes that actually moved, packed into arrays, so undoing and
+ * redoing the command takes time proportional to the number of nodes moved without repeating the calculations
+ * that produced the new positions. The coordinates can be moved into an undo journal on disk (see the spill method).
+ * @author Peter
+ */
+public final class MoveNodesCommand extends Command {
+    
+    private Node[] nodes = new Node[16]; // the nodes moved
+    private double[] oldCoords = new double[3*16]; // old defining coordinates (three per node)
+    private double[] newCoords = new double[3*16]; // new defining coordinates (three per node)
+    private int n = 0; // number of nodes moved
+    private UndoJournal journal = null; // holds the coordinates after spilling
+    private UndoJournal.Block oldBlock = null, newBlock = null;
+    
+    public MoveNodesCommand(String t) {
+        super(t);
+    }
+    
+    /** Creates a command for nodes that have already been moved (see the NodeTransformer class).
+     * The arrays are used directly (not copied) so they should be sized for the number of nodes moved.
+     * @param t The command name.
+     * @param n The nodes moved.
+     * @param oldC The old defining coordinates (three per node).
+     * @param newC The new defining coordinates (three per node).
+     * @param count The number of nodes moved (the number of entries used in the arrays).
+     */
+    public MoveNodesCommand(String t, Node[] n, double[] oldC, double[] newC, int count) {
+        super(t);
+        nodes = n;
+        oldCoords = oldC;
+        newCoords = newC;
+        this.n = count;
+    }
+    
+    /** Returns the number of nodes moved.
+     * @return  */
+    public int size() { return n; }
+    
+    /** Moves a node to a new spatial position and records the move.
+     * Nodes that don't change position (e.g. on-section nodes whose section is not calibrated) are not recorded.
+     * @param node
+     * @param p */
+    public void move(Node node, MyPoint3D p) {
+        if ( node==null || p==null ) { return; }
+        if (journal!=null) { return; } // can't add to the command after spilling
+        if (n==nodes.length) {
+            int m = Math.max(2*n,16);
+            nodes = Arrays.copyOf(nodes,m);
+            oldCoords = Arrays.copyOf(oldCoords,3*m);
+            newCoords = Arrays.copyOf(newCoords,3*m);
+        }
+        int i = 3*n;
+        node.getCoordinates(oldCoords,i);
+        node.setPoint3D(p);
+        node.getCoordinates(newCoords,i);
+        if ( oldCoords[i]==newCoords[i] && oldCoords[i+1]==newCoords[i+1] && oldCoords[i+2]==newCoords[i+2] ) { return; } // didn't move
+        nodes[n++] = node;
+    }
+    
+    @Override
+    public void execute() {
+        // Set the new coordinates (the nodes are moved when they are added so this is only required when redoing):
+        if (journal==null) {
+            for (int i=0 ; i<n ; i++ ) {
+                nodes[i].setCoordinates(newCoords,3*i);
+            }
+        } else {
+            DoubleBuffer buf = journal.read(newBlock);
+            double[] c = new double[3];
+            for (int i=0 ; i<n ; i++ ) {
+                buf.get(c);
+                nodes[i].setCoordinates(c,0);
+            }
+        }
+    }
+    
+    @Override
+    public void undo() {
+        // Reverse order to that executed in case a node was moved more than once:
+        if (journal==null) {
+            for (int i=n-1 ; i>=0 ; i-- ) {
+                nodes[i].setCoordinates(oldCoords,3*i);
+            }
+        } else {
+            DoubleBuffer buf = journal.read(oldBlock);
+            double[] c = new double[3];
+            for (int i=n-1 ; i>=0 ; i-- ) {
+                buf.position(3*i);
+                buf.get(c);
+                nodes[i].setCoordinates(c,0);
+            }
+        }
+    }
+    
+    @Override
+    public boolean spill(UndoJournal j) {
+        if ( journal!=null || n==0 ) { return false; }
+        long mark = j.length();
+        try {
+            oldBlock = j.write(oldCoords,3*n);
+            newBlock = j.write(newCoords,3*n);
+        } catch (IOException e) {
+            j.rewind(mark); // reclaim the first block if the second could not be written
+            oldBlock = null;
+            newBlock = null;
+            return false; // keep the coordinates in memory
+        }
+        journal = j;
+        oldCoords = null;
+        newCoords = null;
+        nodes = Arrays.copyOf(nodes,n); // no more nodes can be added
+        return true;
+    }
+    
+    @Override
+    public long estimatedSize() {
+        long size = OBJECT_BYTES + 7*REFERENCE_BYTES + OBJECT_BYTES + nodes.length*REFERENCE_BYTES;
+        if (journal==null) { size += 2*OBJECT_BYTES + nodes.length*6*8; }
+        return size;
+    }
+    
+}
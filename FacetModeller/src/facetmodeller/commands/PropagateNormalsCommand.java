@@ -164,10 +164,8 @@ public final class PropagateNormalsCommand extends ControlledCommand {
                     return null;
                 }
                 
-                // Find facets associated with that face (the two nodes found above):
-                FacetVector fv0 = face.get(0).getFacets(); // facets associated with first node in the face
-                FacetVector fv1 = face.get(1).getFacets(); // facets associated with second node in the face
-                FacetVector neighj = FacetVector.intersection(fv0,fv1); // facets associated with both nodes in the face
+                // Find facets associated with that face (the two nodes found above) using the edge index:
+                FacetVector neighj = controller.getEdgeFacets(face.get(0),face.get(1)); // facets associated with both nodes in the face
                 
                 // Add those neighbouring facets to the list of neighbours (if the groups match):
                 neighbours.addAll(neighj,group);
@@ -248,4 +246,18 @@ public final class PropagateNormalsCommand extends ControlledCommand {
         }
     }
     
+    @Override
+    public void redo() {
+        // Reverse the ordering for the affected facets again (rather than repeating the propagation):
+        for ( int i=0 ; i<facetsReordered.size() ; i++ ) {
+            Facet f = facetsReordered.get(i);
+            f.reverse();
+        }
+    }
+    
+    @Override
+    public long estimatedSize() {
+        return OBJECT_BYTES + 4*REFERENCE_BYTES + LIST_BYTES + facetsReordered.size()*REFERENCE_BYTES;
+    }
+    
 }
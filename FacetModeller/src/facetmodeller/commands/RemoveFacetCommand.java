@@ -33,4 +33,10 @@ public final class RemoveFacetCommand extends ModelCommand {
         new AddFacetCommand(model,facet).execute();
     }
     
+    @Override
+    public long estimatedSize() {
+        // The removed facet is only held by this command:
+        return OBJECT_BYTES + 2*REFERENCE_BYTES + FACET_BYTES + facet.size()*REFERENCE_BYTES;
+    }
+    
 }
@@ -1,21 +1,101 @@
 package facetmodeller.commands;
 
 import facetmodeller.ModelManager;
+import facetmodeller.groups.Group;
 import facetmodeller.plc.Facet;
 import facetmodeller.plc.FacetVector;
+import facetmodeller.plc.IndexedVector;
+import facetmodeller.plc.Node;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 
-/** Command to perform several RemoveFacet commands.
+/** Command to remove several facets.
+ * This does the same as performing a RemoveFacet command for each facet but each list holding the facets
+ * (the PLC, the groups and the nodes) is compacted in a single pass, and undoing the command puts the facets
+ * back into their original positions in those lists.
  * @author Peter
  */
 public final class RemoveFacetCommandVector extends ModelCommandVector {
     
-    public RemoveFacetCommandVector(ModelManager mod, FacetVector facets, String t) {
+    private final Facet[] facets; // the facets to remove (copied because the supplied vector may be one that changes on execution)
+    
+    // Information required for undoing the command:
+    private IndexedVector.Removal<Facet> plcRemoval = null;
+    private final ArrayList<Group> groups = new ArrayList<>();
+    private final ArrayList<IndexedVector.Removal<Facet>> groupRemovals = new ArrayList<>();
+    private final ArrayList<Node> nodes = new ArrayList<>();
+    private final ArrayList<IndexedVector.Removal<Facet>> nodeRemovals = new ArrayList<>();
+    
+    public RemoveFacetCommandVector(ModelManager mod, FacetVector f, String t) {
         super(mod,t);
-        // Create all the individual remove facet commands:
-        for (int i=0 ; i<facets.size() ; i++ ) {
-            Facet f = facets.get(i);
-            add( new RemoveFacetCommand(mod,f) );
+        facets = new Facet[f.size()];
+        for (int i=0 ; i<f.size() ; i++ ) {
+            facets[i] = f.get(i);
+        }
+    }
+    
+    @Override
+    public void execute() {
+        groups.clear();
+        groupRemovals.clear();
+        nodes.clear();
+        nodeRemovals.clear();
+        Set<Facet> set = new HashSet<>(2*facets.length);
+        for (Facet f : facets) {
+            set.add(f);
+        }
+        // Remove the facets from the PLC:
+        plcRemoval = model.removeFacets(set);
+        // Remove the facets from the groups that hold them:
+        Set<Group> groupsDone = new HashSet<>();
+        for (Facet f : facets) {
+            Group g = f.getGroup();
+            if ( g==null || !groupsDone.add(g) ) { continue; }
+            groups.add(g);
+            groupRemovals.add( g.removeFacets(set) );
+        }
+        // Remove the facets from their nodes:
+        Set<Node> nodesDone = new HashSet<>();
+        for (Facet f : facets) {
+            for (int j=0 ; j<f.size() ; j++ ) {
+                Node n = f.getNode(j);
+                if (!nodesDone.add(n)) { continue; }
+                nodes.add(n);
+                nodeRemovals.add( n.removeFacets(set) );
+            }
+        }
+    }
+    
+    @Override
+    public void undo() {
+        // Put the facets back into their nodes, groups and the PLC in reverse order to that executed:
+        for (int i=nodes.size()-1 ; i>=0 ; i-- ) {
+            nodes.get(i).restoreFacets(nodeRemovals.get(i));
+        }
+        for (int i=groups.size()-1 ; i>=0 ; i-- ) {
+            groups.get(i).restoreFacets(groupRemovals.get(i));
+        }
+        if (plcRemoval!=null) { model.restoreFacets(plcRemoval); }
+    }
+    
+    @Override
+    public long estimatedSize() {
+        // The removed facets are only held by this command (and the nodes they refer to):
+        long n = OBJECT_BYTES + 6*REFERENCE_BYTES + facets.length*(REFERENCE_BYTES+FACET_BYTES);
+        for (Facet f : facets) {
+            n += f.size()*REFERENCE_BYTES;
+        }
+        // The removal records hold a position and a reference for each element removed from each list:
+        if (plcRemoval!=null) { n += LIST_BYTES + plcRemoval.size()*(INT_BYTES+REFERENCE_BYTES); }
+        n += 2*LIST_BYTES + groups.size()*(LIST_BYTES+2*REFERENCE_BYTES) + nodes.size()*(LIST_BYTES+2*REFERENCE_BYTES);
+        for (int i=0 ; i<groupRemovals.size() ; i++ ) {
+            n += groupRemovals.get(i).size()*(INT_BYTES+REFERENCE_BYTES);
+        }
+        for (int i=0 ; i<nodeRemovals.size() ; i++ ) {
+            n += nodeRemovals.get(i).size()*(INT_BYTES+REFERENCE_BYTES);
         }
+        return n;
     }
     
 }
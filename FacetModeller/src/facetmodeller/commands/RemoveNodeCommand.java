@@ -39,4 +39,11 @@ public final class RemoveNodeCommand extends ModelCommand {
         com.undo();
     }
     
+    @Override
+    public long estimatedSize() {
+        long n = OBJECT_BYTES + 3*REFERENCE_BYTES + NODE_BYTES; // the removed node is only held by this command
+        if (com!=null) { n += com.estimatedSize(); }
+        return n;
+    }
+    
 }
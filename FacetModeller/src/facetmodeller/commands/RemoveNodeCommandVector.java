@@ -1,21 +1,106 @@
 package facetmodeller.commands;
 
 import facetmodeller.ModelManager;
+import facetmodeller.groups.Group;
+import facetmodeller.plc.FacetVector;
+import facetmodeller.plc.IndexedVector;
 import facetmodeller.plc.Node;
 import facetmodeller.plc.NodeVector;
+import facetmodeller.sections.Section;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 
-/** Command to perform several RemoveNode commands.
+/** Command to remove several nodes and any facets that contain them.
+ * This does the same as performing a RemoveNode command for each node but each list holding the nodes
+ * (the PLC, the sections and the groups) is compacted in a single pass, and undoing the command puts the nodes
+ * back into their original positions in those lists.
  * @author Peter
  */
 public final class RemoveNodeCommandVector extends ModelCommandVector {
     
-    public RemoveNodeCommandVector(ModelManager mod, NodeVector nodes, String t) {
+    private final Node[] nodes; // the nodes to remove (copied because the supplied vector may be one that changes on execution)
+    
+    // Information required for undoing the command:
+    private RemoveFacetCommandVector com = null; // removes the facets containing the nodes
+    private IndexedVector.Removal<Node> plcRemoval = null;
+    private final ArrayList<Section> sections = new ArrayList<>();
+    private final ArrayList<IndexedVector.Removal<Node>> sectionRemovals = new ArrayList<>();
+    private final ArrayList<Group> groups = new ArrayList<>();
+    private final ArrayList<IndexedVector.Removal<Node>> groupRemovals = new ArrayList<>();
+    
+    public RemoveNodeCommandVector(ModelManager mod, NodeVector n, String t) {
         super(mod,t);
-        // Create all the individual remove node commands:
-        for (int i=0 ; i<nodes.size() ; i++ ) {
-            Node n = nodes.get(i);
-            add( new RemoveNodeCommand(mod,n) );
+        nodes = new Node[n.size()];
+        for (int i=0 ; i<n.size() ; i++ ) {
+            nodes[i] = n.get(i);
+        }
+    }
+    
+    @Override
+    public void execute() {
+        sections.clear();
+        sectionRemovals.clear();
+        groups.clear();
+        groupRemovals.clear();
+        // Remove any facets associated with the nodes:
+        FacetVector facets = new FacetVector(true); // indexed because it can be very large
+        for (Node n : nodes) {
+            facets.addAll(n.getFacets());
+        }
+        com = new RemoveFacetCommandVector(model,facets,""); com.execute();
+        // Remove the nodes from the PLC:
+        Set<Node> set = new HashSet<>(2*nodes.length);
+        for (Node n : nodes) {
+            set.add(n);
+        }
+        plcRemoval = model.removeNodes(set);
+        // Remove the nodes from the sections and groups that hold them:
+        Set<Section> sectionsDone = new HashSet<>();
+        Set<Group> groupsDone = new HashSet<>();
+        for (Node n : nodes) {
+            Section s = n.getSection();
+            if ( s!=null && sectionsDone.add(s) ) {
+                sections.add(s);
+                sectionRemovals.add( s.removeNodes(set) );
+            }
+            Group g = n.getGroup();
+            if ( g!=null && groupsDone.add(g) ) {
+                groups.add(g);
+                groupRemovals.add( g.removeNodes(set) );
+            }
+        }
+    }
+    
+    @Override
+    public void undo() {
+        // Put the nodes back into their groups, sections and the PLC in reverse order to that executed:
+        for (int i=groups.size()-1 ; i>=0 ; i-- ) {
+            groups.get(i).restoreNodes(groupRemovals.get(i));
+        }
+        for (int i=sections.size()-1 ; i>=0 ; i-- ) {
+            sections.get(i).restoreNodes(sectionRemovals.get(i));
+        }
+        if (plcRemoval!=null) { model.restoreNodes(plcRemoval); }
+        // Undo the remove facets operation:
+        if (com!=null) { com.undo(); }
+    }
+    
+    @Override
+    public long estimatedSize() {
+        // The removed nodes are only held by this command (and the facets removed with them):
+        long n = OBJECT_BYTES + 7*REFERENCE_BYTES + nodes.length*(REFERENCE_BYTES+NODE_BYTES);
+        // The removal records hold a position and a reference for each element removed from each list:
+        if (plcRemoval!=null) { n += LIST_BYTES + plcRemoval.size()*(INT_BYTES+REFERENCE_BYTES); }
+        n += 2*LIST_BYTES + sections.size()*(LIST_BYTES+2*REFERENCE_BYTES) + groups.size()*(LIST_BYTES+2*REFERENCE_BYTES);
+        for (int i=0 ; i<sectionRemovals.size() ; i++ ) {
+            n += sectionRemovals.get(i).size()*(INT_BYTES+REFERENCE_BYTES);
+        }
+        for (int i=0 ; i<groupRemovals.size() ; i++ ) {
+            n += groupRemovals.get(i).size()*(INT_BYTES+REFERENCE_BYTES);
         }
+        if (com!=null) { n += com.estimatedSize(); }
+        return n;
     }
     
 }
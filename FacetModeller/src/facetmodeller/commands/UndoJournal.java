@@ -0,0 +1,110 @@
+package facetmodeller.commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** A temporary file that holds undo information for large commands so it doesn't have to be kept on the heap.
+ * Blocks of numbers are appended to the file (see the write method) and mapped back into memory only when
+ * a command is undone or redone (see the read method). Space is not reused for individual blocks:
+ * the space is reused from the start of the file when it no longer holds any blocks that are in use (see the reset method).
+ * The file is never truncated because mapped buffers may still be reachable (truncating a mapped file fails on some systems):
+ * it is deleted when the journal is closed or the application exits.
+ * @author Peter Lelievre
+ */
+public final class UndoJournal {
+
+    // -------------------- Properties -------------------
+
+    private RandomAccessFile file = null; // created when first required
+    private File path = null;
+    private long length = 0; // bytes written since the journal was last reset (the file may be longer)
+
+    // -------------------- Public Methods -------------------
+
+    /** Appends a block of numbers to the journal.
+     * @param a
+     * @param n The number of values in a to write.
+     * @return A handle for reading the block back.
+     * @throws IOException If the temporary file can not be created or written.
+     */
+    public Block write(double[] a, int n) throws IOException {
+        open();
+        long bytes = 8L*n;
+        MappedByteBuffer buf = file.getChannel().map(FileChannel.MapMode.READ_WRITE,length,bytes);
+        buf.order(ByteOrder.nativeOrder()).asDoubleBuffer().put(a,0,n);
+        Block block = new Block(length,n);
+        length += bytes;
+        return block;
+    }
+
+    /** Maps a block back into memory.
+     * @param block
+     * @return A read-only buffer holding the values in the block.
+     * @throws UncheckedIOException If the temporary file can not be read (the undo information is lost).
+     */
+    public DoubleBuffer read(Block block) {
+        try {
+            MappedByteBuffer buf = file.getChannel().map(FileChannel.MapMode.READ_ONLY,block.offset,8L*block.size);
+            return buf.order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Undo information could not be read from the temporary file.",e);
+        }
+    }
+
+    /** Returns the number of bytes written to the file since the journal was last reset.
+     * @return  */
+    public long length() { return length; }
+
+    /** Discards any blocks written after the supplied length (e.g. when a command fails to spill part way through).
+     * Those blocks must no longer be used.
+     * @param l A length previously returned by the length method. */
+    public void rewind(long l) {
+        if ( l>=0 && l<length ) { length = l; }
+    }
+
+    /** Discards all the blocks so that the space in the file is reused. Any existing blocks must no longer be used. */
+    public void reset() {
+        length = 0;
+    }
+
+    /** Closes and deletes the file. The journal can still be used afterwards (a new file is created when required). */
+    public void close() {
+        if (file!=null) {
+            try { file.close(); } catch (IOException e) {}
+        }
+        if (path!=null) { path.delete(); }
+        file = null;
+        path = null;
+        length = 0;
+    }
+
+    // -------------------- Private Methods -------------------
+
+    private void open() throws IOException {
+        if (file!=null) { return; }
+        path = File.createTempFile("facetmodeller_undo",".tmp");
+        path.deleteOnExit();
+        file = new RandomAccessFile(path,"rw");
+        length = 0;
+    }
+
+    // -------------------- Public Classes -------------------
+
+    /** The location of a block of numbers in the journal. */
+    public static final class Block {
+        private final long offset; // bytes from the start of the file
+        private final int size; // number of values
+        private Block(long o, int n) {
+            offset = o;
+            size = n;
+        }
+        public int size() { return size; }
+    }
+
+}
@@ -1,18 +1,33 @@
 package facetmodeller.commands;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 
 /** For tracking commands and undoing them in the reverse order they were executed.
+ * Commands that are undone are kept so they can be redone, until a new command is added.
+ * The history can be limited by the number of commands and by the estimated memory they hold
+ * (see the Command.estimatedSize method): the oldest commands are discarded first.
+ * The limits apply to the commands that can be undone: the memory held by undone commands is tracked separately
+ * and is released when a new command is added.
+ * The most recent command is always kept so that it can be undone.
+ * Commands holding a large amount of undo information are asked to move it into a journal on disk
+ * (see the Command.spill method and the UndoJournal class) so that only a small part is held in memory.
  * @author Peter
  */
 public class UndoVector {
 
     // -------------------- Properties -------------------
     
-    private int maxsize = 0; // maximum size of vector
+    private int maxsize = 0; // maximum number of commands (0 for no limit)
+    private long maxBytes = 0; // maximum estimated memory (0 for no limit)
+    private long bytes = 0; // current estimated memory of the undo commands
+    private long redoBytes = 0; // current estimated memory of the redo commands
+    private long spillBytes = 16L*1024L*1024L; // HARDWIRE: commands estimated to hold more than this are spilled to the journal (0 to never spill)
+    private int numSpilled = 0; // number of commands held that have been spilled
+    private final UndoJournal journal = new UndoJournal();
     
     // Favour composition over inheritence!
-    private final ArrayList<Command> vector = new ArrayList<>();
+    private final ArrayDeque<Entry> deque = new ArrayDeque<>(); // the most recent command is first
+    private final ArrayDeque<Entry> redoDeque = new ArrayDeque<>(); // the most recently undone command is first
 
     // -------------------- Public Methods -------------------
     
@@ -20,33 +35,162 @@ public class UndoVector {
         maxsize = n;
     }
     
+    /**
+     * @param n The maximum number of commands (0 for no limit).
+     * @param b The maximum estimated memory in bytes (0 for no limit).
+     */
+    public UndoVector(int n, long b) {
+        maxsize = n;
+        maxBytes = b;
+    }
+    
     public void add(Command c) {
-        // Check if we are at the maximum size:
-        if ( maxsize>0 && vector.size()==maxsize ) {
-            // Remove the last element:
-            vector.remove(maxsize-1);
+        // A new command means the undone commands can no longer be redone:
+        clearRedo();
+        // Move large undo information out of memory:
+        long size = c.estimatedSize();
+        boolean spilled = false;
+        if ( spillBytes>0 && size>spillBytes && c.spill(journal) ) {
+            spilled = true;
+            numSpilled++;
+            size = c.estimatedSize();
         }
         // Add to the start of the vector:
-        vector.add(0,c);
+        Entry e = new Entry(c,size,spilled);
+        deque.addFirst(e);
+        bytes += e.size;
+        // Remove the oldest commands if we are over the limits:
+        trim();
     }
 
     public Command get() {
         // Check for empty vector:
-        if (vector.isEmpty()) { return null; }
+        if (deque.isEmpty()) { return null; }
         // Return the most recent item from the start of the vector:
-        return vector.get(0);
+        return deque.peekFirst().command;
     }
 
     public void remove() {
         // Check for empty vector:
-        if (vector.isEmpty()) { return; }
+        if (deque.isEmpty()) { return; }
         // Remove the most recent item from the start of the vector:
-        vector.remove(0);
+        removeUndo(deque.pollFirst());
+    }
+    
+    /** Moves the most recent command to the redo list.
+     * Call after the command has been undone. */
+    public void undone() {
+        Entry e = deque.pollFirst();
+        if (e==null) { return; }
+        bytes -= e.size;
+        redoBytes += e.size;
+        redoDeque.addFirst(e);
+    }
+    
+    /** Returns the most recently undone command (null if there is nothing to redo).
+     * @return  */
+    public Command getRedo() {
+        if (redoDeque.isEmpty()) { return null; }
+        return redoDeque.peekFirst().command;
+    }
+    
+    /** Moves the most recently undone command back to the undo list.
+     * Call after the command has been redone. */
+    public void redone() {
+        Entry e = redoDeque.pollFirst();
+        if (e==null) { return; }
+        redoBytes -= e.size;
+        bytes += e.size;
+        deque.addFirst(e);
+        trim();
+    }
+    
+    public int size() { return deque.size(); }
+    public boolean isEmpty() { return deque.isEmpty(); }
+    public int redoSize() { return redoDeque.size(); }
+    public boolean isRedoEmpty() { return redoDeque.isEmpty(); }
+    
+    public void clear() {
+        deque.clear();
+        redoDeque.clear();
+        bytes = 0;
+        redoBytes = 0;
+        numSpilled = 0;
+        journal.close();
+    }
+    
+    /** Returns the estimated memory (bytes) held by the commands that can be undone.
+     * @return  */
+    public long getEstimatedSize() { return bytes; }
+    
+    /** Returns the estimated memory (bytes) held by the commands that can be redone.
+     * @return  */
+    public long getRedoEstimatedSize() { return redoBytes; }
+    
+    public long getMaxBytes() { return maxBytes; }
+    
+    /** Changes the memory limit, discarding the oldest commands if required.
+     * @param b The maximum estimated memory in bytes (0 for no limit).
+     */
+    public void setMaxBytes(long b) {
+        maxBytes = b;
+        trim();
     }
     
-    //public int size() { return vector.size(); }
-    public boolean isEmpty() { return vector.isEmpty(); }
+    public long getSpillBytes() { return spillBytes; }
     
-    public void clear() { vector.clear(); }
+    /** Changes the size above which commands are spilled to disk (only affects commands added later).
+     * @param b The size in bytes (0 to never spill).
+     */
+    public void setSpillBytes(long b) { spillBytes = b; }
+    
+    /** Returns the number of bytes in use in the journal on disk (including space used by discarded commands).
+     * @return  */
+    public long getJournalSize() { return journal.length(); }
+    
+    // -------------------- Private Methods -------------------
+    
+    private void clearRedo() {
+        while (!redoDeque.isEmpty()) {
+            Entry e = redoDeque.pollFirst();
+            redoBytes -= e.size;
+            discard(e);
+        }
+    }
+    
+    /** Updates the spill count for a command that has been removed (the caller updates the memory totals).
+     * The journal space is reused when it no longer holds information for any command. */
+    private void discard(Entry e) {
+        if (!e.spilled) { return; }
+        numSpilled--;
+        if (numSpilled==0) { journal.reset(); }
+    }
+    
+    /** Removes the oldest commands until the limits are satisfied (the most recent command is always kept).
+     * Undone commands are not removed here and they don't count towards the limits. */
+    private void trim() {
+        while ( deque.size()>1 && ( ( maxsize>0 && deque.size()>maxsize ) || ( maxBytes>0 && bytes>maxBytes ) ) ) {
+            removeUndo(deque.pollLast());
+        }
+    }
+    
+    private void removeUndo(Entry e) {
+        bytes -= e.size;
+        discard(e);
+    }
+    
+    // -------------------- Private Classes -------------------
+    
+    /** A command and its estimated size (calculated once when added because it can be expensive for large command vectors). */
+    private static class Entry {
+        public final Command command;
+        public final long size;
+        public final boolean spilled; // true if the command moved information into the journal
+        public Entry(Command c, long s, boolean sp) {
+            command = c;
+            size = s;
+            spilled = sp;
+        }
+    }
     
 }
@@ -4,6 +4,7 @@ import fileio.SessionIO;
 import facetmodeller.plc.Facet;
 import facetmodeller.plc.FacetVector;
 import facetmodeller.plc.HasID;
+import facetmodeller.plc.IndexedVector;
 import facetmodeller.plc.Node;
 import facetmodeller.plc.NodeVector;
 import facetmodeller.plc.Region;
@@ -12,6 +13,7 @@ import fileio.FileUtils;
 import java.awt.Color;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.util.Set;
 
 /** A group to associated with nodes, facets and a region.
  * @author Peter
@@ -26,8 +28,8 @@ public class Group extends HasID implements SessionIO {
     private Color facetColor = Color.BLACK;
     private Color regionColor = Color.BLACK;
 
-    private final NodeVector nodes = new NodeVector();
-    private final FacetVector facets = new FacetVector();
+    private final NodeVector nodes = new NodeVector(true); // indexed because it can be very large
+    private final FacetVector facets = new FacetVector(true); // indexed because it can be very large
     private final RegionVector regions = new RegionVector();
 
     // ------------------ Constructor -------------------
@@ -165,6 +167,27 @@ public class Group extends HasID implements SessionIO {
     public void removeRegion(Region r) {
         regions.remove(r);
     }
+    
+    /** Removes any of the supplied nodes in a single pass.
+     * @param set
+     * @return The nodes removed and their positions, for use with the restoreNodes method.
+     */
+    public IndexedVector.Removal<Node> removeNodes(Set<Node> set) {
+        return nodes.removeAll(set);
+    }
+    /** Removes any of the supplied facets in a single pass.
+     * @param set
+     * @return The facets removed and their positions, for use with the restoreFacets method.
+     */
+    public IndexedVector.Removal<Facet> removeFacets(Set<Facet> set) {
+        return facets.removeAll(set);
+    }
+    public void restoreNodes(IndexedVector.Removal<Node> removal) {
+        nodes.restore(removal);
+    }
+    public void restoreFacets(IndexedVector.Removal<Facet> removal) {
+        facets.restore(removal);
+    }
 
 //    /** Clears all plc information. */
 //    public void clearPLC() {
@@ -1,6 +1,7 @@
 package facetmodeller.groups;
 
 import facetmodeller.plc.FacetVector;
+import facetmodeller.plc.IndexedVector;
 import facetmodeller.plc.NodeVector;
 import fileio.FileUtils;
 import java.awt.Color;
@@ -8,8 +9,6 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.StringTokenizer;
 
 /** A Vector of Group objects.
@@ -21,7 +20,7 @@ public class GroupVector {
     // -------------------- Properties -------------------
 
     // Favour composition over inheritence!
-    private final ArrayList<Group> vector = new ArrayList<>();
+    private final IndexedVector<Group> vector = new IndexedVector<>(true); // indexed because contains is called per node or facet when painting
 
     // ------------------- Constructor ------------------
 
@@ -99,7 +98,7 @@ public class GroupVector {
      * @return 
      */
     public NodeVector getNodes() {
-        NodeVector allNodes = new NodeVector();
+        NodeVector allNodes = new NodeVector(true);
         for (int i=0 ; i<size() ; i++ ) {
             NodeVector nodes = get(i).getNodes();
             allNodes.addAll(nodes);
@@ -111,7 +110,7 @@ public class GroupVector {
      * @return 
      */
     public FacetVector getFacets() {
-        FacetVector allFacets = new FacetVector();
+        FacetVector allFacets = new FacetVector(true);
         for (int i=0 ; i<size() ; i++ ) {
             FacetVector facets = get(i).getFacets();
             allFacets.addAll(facets);
@@ -176,7 +175,7 @@ public class GroupVector {
 
     /** Reverses the order of the elements in the vector. */
     public void reverseOrder() {
-        Collections.reverse(vector);
+        vector.reverse();
     }
 
     /** Resets the ID values from 0 to the size of the vector in the order listed. */
@@ -0,0 +1,154 @@
+package facetmodeller.gui;
+
+/** The pixels on a line between two pixels, as walked by the modified Bresenham algorithm used by the ZBuffer3D class:
+ * the line takes one step along its major axis for each pixel and a step along its minor axis whenever the
+ * numerator passes the length of the line.
+ * The position and numerator at any step can be calculated directly, so the line can be clipped to a rectangle
+ * (e.g. a tile of the frame) and only the steps inside it walked, giving exactly the same pixels as walking the whole line.
+ * @author Peter Lelievre
+ */
+public final class BresenhamLine {
+
+    // -------------------- Properties -------------------
+
+    private int x1, y1; // the first pixel
+    private int sx, sy; // direction of the steps in x and y (-1, 0 or 1)
+    private boolean xMajor; // true if x changes at every step
+    private int longest, shortest; // number of steps along the major and minor axes
+    private int first, last; // the range of steps left after clipping (inclusive)
+
+    // -------------------- Getters -------------------
+
+    /** Returns the number of steps between the two ends of the line (zero if they are the same pixel).
+     * @return  */
+    public int getLongest() { return longest; }
+    public int getShortest() { return shortest; }
+    public int getStepX() { return sx; }
+    public int getStepY() { return sy; }
+    public boolean getXMajor() { return xMajor; }
+
+    /** Returns the first step left after clipping.
+     * @return  */
+    public int getFirst() { return first; }
+
+    /** Returns the last step left after clipping.
+     * @return  */
+    public int getLast() { return last; }
+
+    /** Returns the x pixel coordinate at a step along the line.
+     * @param i
+     * @return  */
+    public int getX(int i) {
+        return xMajor ? x1 + sx*i : (int)( x1 + sx*minorSteps(i) );
+    }
+
+    /** Returns the y pixel coordinate at a step along the line.
+     * @param i
+     * @return  */
+    public int getY(int i) {
+        return xMajor ? (int)( y1 + sy*minorSteps(i) ) : y1 + sy*i;
+    }
+
+    /** Returns the numerator at a step along the line (before it is updated for the next step).
+     * @param i
+     * @return  */
+    public int getNumerator(int i) {
+        if (longest==0) { return 0; }
+        return (int)( numerator(i) % longest );
+    }
+
+    // -------------------- Public Methods -------------------
+
+    /** Sets the ends of the line. The line is not clipped.
+     * @param x1
+     * @param y1
+     * @param x2
+     * @param y2 */
+    public void set(int x1, int y1, int x2, int y2) {
+        this.x1 = x1;
+        this.y1 = y1;
+        int w = x2 - x1;
+        int h = y2 - y1;
+        sx = Integer.signum(w);
+        sy = Integer.signum(h);
+        xMajor = ( Math.abs(w) > Math.abs(h) );
+        longest = xMajor ? Math.abs(w) : Math.abs(h);
+        shortest = xMajor ? Math.abs(h) : Math.abs(w);
+        first = 0;
+        last = longest;
+    }
+
+    /** Removes the steps with pixels outside a rectangle.
+     * @param xmin The rectangle limits (inclusive).
+     * @param xmax
+     * @param ymin
+     * @param ymax
+     * @return False if no steps are left. */
+    public boolean clip(int xmin, int xmax, int ymin, int ymax) {
+        if (xMajor) {
+            clipMajor(x1,sx,xmin,xmax);
+            clipMinor(y1,sy,ymin,ymax);
+        } else {
+            clipMajor(y1,sy,ymin,ymax);
+            clipMinor(x1,sx,xmin,xmax);
+        }
+        return ( first<=last );
+    }
+
+    // -------------------- Private Methods -------------------
+
+    private long numerator(int i) {
+        return ( longest >> 1 ) + ( (long)i )*shortest;
+    }
+
+    /** Returns the number of steps taken along the minor axis before a step along the major axis. */
+    private long minorSteps(int i) {
+        if (longest==0) { return 0; }
+        return numerator(i) / longest;
+    }
+
+    /** Clips the steps along the major axis, for which the coordinate is c1 + s*i. */
+    private void clipMajor(int c1, int s, int cmin, int cmax) {
+        long lo, hi;
+        if (s>0) {
+            lo = (long)cmin - c1;
+            hi = (long)cmax - c1;
+        } else if (s<0) {
+            lo = (long)c1 - cmax;
+            hi = (long)c1 - cmin;
+        } else { // a single pixel
+            if ( c1<cmin || c1>cmax ) { last = first - 1; }
+            return;
+        }
+        restrict(lo,hi);
+    }
+
+    /** Clips the steps along the minor axis, for which the coordinate is c1 + s*k where k is the number of minor steps. */
+    private void clipMinor(int c1, int s, int cmin, int cmax) {
+        if ( s==0 || shortest==0 ) { // the coordinate doesn't change
+            if ( c1<cmin || c1>cmax ) { last = first - 1; }
+            return;
+        }
+        // The range of minor steps k inside the rectangle:
+        long kmin, kmax;
+        if (s>0) {
+            kmin = (long)cmin - c1;
+            kmax = (long)cmax - c1;
+        } else {
+            kmin = (long)c1 - cmax;
+            kmax = (long)c1 - cmin;
+        }
+        // Convert to a range of steps (k increases with the step so it is at least kmin from the first step with
+        // ( longest/2 + i*shortest ) >= kmin*longest and at most kmax up to the last step with that below (kmax+1)*longest):
+        long half = longest >> 1;
+        long lo = -Math.floorDiv( half - kmin*longest , shortest ); // ceiling division
+        long hi = Math.floorDiv( (kmax+1)*longest - half - 1 , shortest );
+        restrict(lo,hi);
+    }
+
+    private void restrict(long lo, long hi) {
+        if (lo>first) { first = (int)Math.min(lo,(long)last+1); }
+        if (hi<last) { last = (int)Math.max(hi,(long)first-1); }
+    }
+
+}
@@ -147,6 +147,9 @@ public final class ClickModeManager {
 
         // Check if the mode is changing:
         if (mode==m) { return; }
+        
+        // Finish any drag in progress for the old mode (so that it is recorded for undoing):
+        controller.finishDrag();
 
         // Clear all temporary items that may be drawn:
         controller.clearAllTemporaryOverlays();
@@ -0,0 +1,109 @@
+package facetmodeller.gui;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/** The colour and depth buffers for z-buffer painting (see the ZBuffer3D class).
+ * The colours are held in the int array behind a TYPE_INT_RGB image, so the image can be drawn without
+ * any conversion after painting (the alpha byte of each colour is ignored). The depths are held in a float array.
+ * The pixel at (i,j) is at index j*width+i in both arrays.
+ * A buffer can be cleared and painted again for each frame without reallocating the arrays or the image.
+ * @author Peter Lelievre
+ */
+public class FrameBuffer {
+
+    // -------------------- Properties -------------------
+
+    private final int width, height;
+    private final BufferedImage image;
+    private final int[] pixels; // the image data
+    private final float[] depths;
+
+    // -------------------- Constructor -------------------
+
+    /**
+     * @param w Image size.
+     * @param h
+     */
+    public FrameBuffer(int w, int h) {
+        width = w;
+        height = h;
+        image = new BufferedImage(w,h,BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        depths = new float[w*h];
+    }
+
+    // -------------------- Getters -------------------
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public BufferedImage getImage() { return image; }
+
+    /** Returns the colour array. The array is not copied so any changes are seen in the image.
+     * @return  */
+    public int[] getPixels() { return pixels; }
+
+    /** Returns the depth array. The array is not copied.
+     * @return  */
+    public float[] getDepths() { return depths; }
+
+    /** Returns the depth at a pixel.
+     * @param i
+     * @param j
+     * @return  */
+    public double getZ(int i, int j) { return depths[ j*width + i ]; }
+
+    // -------------------- Public Methods -------------------
+
+    /** Sets all pixels to the same depth and colour.
+     * @param z0
+     * @param col */
+    public void clear(double z0, Color col) {
+        clear(0,0,width,height,z0,col);
+    }
+
+    /** Sets the pixels in a rectangle to the same depth and colour.
+     * @param i0 First pixel in the rectangle.
+     * @param j0
+     * @param w Rectangle size.
+     * @param h
+     * @param z0
+     * @param col */
+    public void clear(int i0, int j0, int w, int h, double z0, Color col) {
+        float z = (float)z0;
+        int rgb = col.getRGB();
+        for (int j=j0 ; j<j0+h ; j++ ) {
+            int k = j*width + i0;
+            Arrays.fill(depths,k,k+w,z);
+            Arrays.fill(pixels,k,k+w,rgb);
+        }
+    }
+
+    /** Sets a pixel if it is inside the image and it passes the depth test.
+     * @param i
+     * @param j
+     * @param z
+     * @param rgb
+     * @return True if the pixel was set. */
+    public boolean setPixel(int i, int j, double z, int rgb) {
+        if ( i<0 || i>=width || j<0 || j>=height ) { return false; }
+        return setPixel( j*width + i , z , rgb );
+    }
+
+    /** Sets a pixel if it passes the depth test (the pixel must be inside the image).
+     * As for the paint.ZBuffer class, the test fails if the depth is less than or equal to the current depth.
+     * @param k The pixel index.
+     * @param z
+     * @param rgb
+     * @return True if the pixel was set. */
+    public boolean setPixel(int k, double z, int rgb) {
+        float zf = (float)z;
+        if (zf<=depths[k]) { return false; }
+        depths[k] = zf;
+        pixels[k] = rgb;
+        return true;
+    }
+
+}
@@ -44,7 +44,7 @@ public final class MenuBar extends JMenuBar {
             miDefinePolyFacets,miDefinePolyFacetsTri,miDefineTriFacets,miDefineLineFacets,miDeleteFacets,miChangeFacets,
             miReverseFacets,miEdgeFlip,miMarkFacetsToggle,miMarkFacetsTrue,miMarkFacetsFalse,miAddNodesInTriFacets,miAddNodesOnEdges,
             miAddRegions,miDeleteRegions,miPropagateNormals;
-    private MenuTaskMenuItem miUndo,miLoadSession,miLoadLastSession,miSaveSession,miSaveSessionAs,miLoadNodesAndFacets,
+    private MenuTaskMenuItem miUndo,miRedo,miUndoMemoryLimit,miLoadSession,miLoadLastSession,miSaveSession,miSaveSessionAs,miLoadNodesAndFacets,
             miLoadCrossSectionImages,miLoadDepthSectionImages,miLoadGroups,miSaveGroups,
             miSectionInfo,miNewNoImageCrossSection,miNewNoImageDepthSection,miNewSnapshotSection,miResetSnapshotSection,miReduceSectionImage,
             miReverseGroupOrder,miGroupUp1,miGroupUp2,miGroupTop,miGroupDown1,miGroupDown2,miGroupBottom,
@@ -54,7 +54,7 @@ public final class MenuBar extends JMenuBar {
             miSnapToCalibration,miSnapToCalibrationVertical,miSnapToCalibrationHorizontal,
             miSnapToVOI,miSnapToVOIVertical,miSnapToVOIHorizontal,
             miSnapToGrid,miSnapToGridVertical,miSnapToGridHorizontal,miTranslate,miScalePixels,
-            miClearPLC,miClearFacets,miFindBadFacets,miFindHoles,miFindUnusedNodes,
+            miClearPLC,miClearFacets,miFindBadFacets,miFindIntersectingFacets,miFindHoles,miFindUnusedNodes,
             miDeleteDuplicateNodes,miMergeDuplicateNodes,miFindNodesCalibration,miFindNodesVOI,
             miFindNodesIndex,miFindFacetsIndex,miSplitGroupVOI,miSplitGroupBoundary,
             miDeleteNodeGroup,miDeleteFacetGroup,miDeleteDisplayedNodes,miDeleteDisplayedFacets,
@@ -81,6 +81,8 @@ public final class MenuBar extends JMenuBar {
         miAbout = makeMenuItem("About","Display information about FacetModeller",listener);
         miExit = makeMenuItem("Exit","Exit FacetModeller without saving",listener);
         miUndo = makeMenuTaskMenuItem(new UndoPreviousCommandMenuTask(controller),listener);
+        miRedo = makeMenuTaskMenuItem(new RedoCommandMenuTask(controller),listener);
+        miUndoMemoryLimit = makeMenuTaskMenuItem(new UndoMemoryLimitMenuTask(controller),listener);
 
         // Build the file menu items:
         miLoadCrossSectionImages = makeMenuTaskMenuItem(new LoadSectionFilesMenuTask(controller,true),listener);
@@ -206,6 +208,7 @@ public final class MenuBar extends JMenuBar {
         miFindNodesVOI = makeMenuTaskMenuItem(new FindNodesOutsideVOIMenuTask(controller),"Nodes outside of VOI",listener);
         miFindNodesCalibration = makeMenuTaskMenuItem(new FindNodesOutsideCalibrationMenuTask(controller),"Nodes outside calibration",listener);
         miFindBadFacets = makeMenuTaskMenuItem(new FindBadFacetsMenuTask(controller),"Bad facets",listener);
+        miFindIntersectingFacets = makeMenuTaskMenuItem(new FindIntersectingFacetsMenuTask(controller),"Intersecting facets",listener);
         miFindHoles = makeMenuTaskMenuItem(new FindHolesMenuTask(controller),"Holes",listener);
         miFindUnusedNodes = makeMenuTaskMenuItem(new FindUnusedNodesMenuTask(controller),"Unused nodes",listener);
         miDeleteNodeGroup = makeMenuTaskMenuItem(new DeleteNodeGroupMenuTask(controller),"Group of nodes",listener);
@@ -303,6 +306,8 @@ public final class MenuBar extends JMenuBar {
         mainMenu.add(miAbout);
         mainMenu.add(miExit);
         mainMenu.add(miUndo);
+        mainMenu.add(miRedo);
+        mainMenu.add(miUndoMemoryLimit);
 
         // Build the file menu:
         JMenu fileMenu = new JMenu("File");
@@ -478,6 +483,7 @@ public final class MenuBar extends JMenuBar {
         findMenu.add(miFindNodesCalibration);
         findMenu.add(miFindUnusedNodes);
         findMenu.add(miFindBadFacets);
+        if (is3D) { findMenu.add(miFindIntersectingFacets); }
         findMenu.add(miFindHoles);
         // Delete submenu:
         JMenu deleteMenu = new JMenu("Delete");
@@ -683,6 +689,14 @@ public final class MenuBar extends JMenuBar {
         // FacetModeller menu items:
         miAbout.setEnabled(true);
         miExit.setEnabled(true);
+        // Show the size of the undo information (the commands that can be undone, not those that can be redone):
+        int nUndo = controller.undoVectorSize();
+        if (nUndo==0) {
+            miUndo.setText("Undo");
+        } else {
+            double mb = controller.undoVectorEstimatedSize() / (1024.0*1024.0);
+            miUndo.setText("Undo (" + nUndo + " commands, " + String.format("%.1f",mb) + " MB)");
+        }
         
         // File menu items:
         miExportPoly.setEnabled(hasPLCandAllCalibrated);
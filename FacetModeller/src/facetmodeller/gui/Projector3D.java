@@ -176,6 +176,38 @@ public final class Projector3D implements SessionIO {
         return p;
     }
     
+    /** Converts a 3D space coordinate to a projected image pixel coordinate in place, without creating any objects.
+     * The arithmetic is the same as for the spaceToImage(MyPoint3D) method so the results are identical.
+     * @param a
+     * @param i Index in the array for the first of the three coordinates.
+     * @return False if the point is close to or behind the camera (the array is then left partially converted).
+     */
+    public boolean spaceToImage(double[] a, int i) {
+        double scaling = getScaling();
+        // Translate the point relative to the user-defined model origin and apply vertical exaggeration and scaling:
+        double x = ( a[i] - spaceOrigin.getX() )*scaling;
+        double y = ( a[i+1] - spaceOrigin.getY() )*scaling;
+        double z = ( verticalExaggeration*( a[i+2] - spaceOrigin.getZ() ) )*scaling;
+        // Rotation (as in the Matrix3D.times method):
+        Matrix3D m = rotationMatrix;
+        double xr = m.get(0,0)*x + m.get(0,1)*y + m.get(0,2)*z;
+        double yr = m.get(1,0)*x + m.get(1,1)*y + m.get(1,2)*z;
+        double zr = m.get(2,0)*x + m.get(2,1)*y + m.get(2,2)*z;
+        // Perspective projection:
+        if (perspective) {
+            double d = cameraDistance - zr;
+            if (d<clipDistance) { return false; }
+            double r = cameraDistance / d;
+            xr *= r;
+            yr *= r;
+        }
+        // Flip the y axis and translate so that the model origin is at the centre of the image:
+        a[i] = xr + imageOrigin.getX();
+        a[i+1] = -yr + imageOrigin.getY();
+        a[i+2] = zr + imageOrigin.getZ();
+        return true;
+    }
+
     public MyPoint3D imageToSpaceParallel(MyPoint3D p0) {
         // Deep copy:
         MyPoint3D p = p0.deepCopy();
@@ -0,0 +1,295 @@
+package facetmodeller.gui;
+
+import geometry.MyPoint3D;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** For 3D rendering of a scene using z-buffer strategy, split into square tiles that are painted in parallel.
+ * The primitives (nodes, facets and edges) are recorded as they are added and binned into the tiles that they
+ * overlap: the tiles overlapping the bounding boxes of nodes and facets, and the tiles that edges actually cross.
+ * When the image is requested, the tiles are painted on the common fork-join pool,
+ * each by its own ZBuffer3D object into its own part of a shared frame buffer (so no copying is required),
+ * which only walks the part of each edge inside its tile.
+ * The primitives in each tile are painted in the order they were added so the result is the same as painting
+ * the whole scene into a single ZBuffer3D object.
+ * The points supplied must not be changed until the image has been requested.
+ * An object can be cleared and used again for the next frame without reallocating its arrays or its frame buffer.
+ * @author Peter Lelievre
+ */
+public class TiledZBuffer3D implements ZBufferPainter {
+    
+    // -------------------- Properties -------------------
+    
+    private static final int TILE_SIZE = 128; // HARDWIRE: tile width and height in pixels
+    
+    private static final byte NODE = 0;
+    private static final byte FACET = 1;
+    private static final byte EDGE = 2;
+    
+    private final FrameBuffer buf;
+    private final int width, height; // frame size
+    private double z0; // initial depth
+    private Color background;
+    private final int numTilesI, numTilesJ;
+    
+    // The primitives, in the order they were added:
+    private int numPrimitives = 0;
+    private byte[] types = new byte[64];
+    private MyPoint3D[][] facets = new MyPoint3D[64][]; // facet points (null for other primitives)
+    private MyPoint3D[] points1 = new MyPoint3D[64]; // edge end or node centre
+    private MyPoint3D[] points2 = new MyPoint3D[64]; // other edge end
+    private Color[] colors1 = new Color[64]; // node, edge or facet face colour
+    private Color[] colors2 = new Color[64]; // facet edge colour
+    private boolean[] thicks = new boolean[64];
+    private double[] sizes = new double[64]; // node diameter
+    
+    // The primitives overlapping each tile (indices into the arrays above, in order):
+    private final int[][] bins;
+    private final int[] binSizes;
+    
+    private boolean painted = false; // the tiles are painted when the image is first requested
+    private final BresenhamLine line = new BresenhamLine(); // reused for binning each edge
+    
+    // -------------------- Constructor -------------------
+    
+    /**
+     * @param w Image size.
+     * @param h
+     * @param z Initial depth.
+     * @param col Background colour.
+     */
+    public TiledZBuffer3D(int w, int h, double z, Color col) {
+        this(new FrameBuffer(w,h),z,col);
+    }
+    
+    /**
+     * @param buf The frame buffer to paint into.
+     * @param z Initial depth.
+     * @param col Background colour.
+     */
+    public TiledZBuffer3D(FrameBuffer buf, double z, Color col) {
+        this.buf = buf;
+        width = buf.getWidth();
+        height = buf.getHeight();
+        z0 = z;
+        background = col;
+        numTilesI = ( width + TILE_SIZE - 1 ) / TILE_SIZE;
+        numTilesJ = ( height + TILE_SIZE - 1 ) / TILE_SIZE;
+        bins = new int[numTilesI*numTilesJ][];
+        binSizes = new int[bins.length];
+    }
+    
+    // -------------------- Implemented ZBufferPainter Methods -------------------
+    
+    @Override
+    public void putNode(MyPoint3D p3, Color col, double d) {
+        int k = add(NODE);
+        points1[k] = p3;
+        colors1[k] = col;
+        sizes[k] = d;
+        double r = d/2.0;
+        double x = p3.getX();
+        double y = p3.getY();
+        bin( k , x-r , x+r , y-r , y+r );
+    }
+    
+    @Override
+    public void putFacet(MyPoint3D[] facet, Color faceColor, Color edgeColor, boolean thick) {
+        int k = add(FACET);
+        facets[k] = facet;
+        colors1[k] = faceColor;
+        colors2[k] = edgeColor;
+        thicks[k] = thick;
+        double x1 = Double.POSITIVE_INFINITY;
+        double x2 = Double.NEGATIVE_INFINITY;
+        double y1 = Double.POSITIVE_INFINITY;
+        double y2 = Double.NEGATIVE_INFINITY;
+        for (MyPoint3D p : facet) {
+            x1 = Math.min(x1,p.getX());
+            x2 = Math.max(x2,p.getX());
+            y1 = Math.min(y1,p.getY());
+            y2 = Math.max(y2,p.getY());
+        }
+        bin( k , x1 , x2 , y1 , y2 );
+    }
+    
+    @Override
+    public void putEdge(MyPoint3D p1, MyPoint3D p2, Color col) {
+        putEdge(p1,p2,col,false);
+    }
+    
+    @Override
+    public void putEdge(MyPoint3D p1, MyPoint3D p2, Color col, boolean thick) {
+        int k = add(EDGE);
+        points1[k] = p1;
+        points2[k] = p2;
+        colors1[k] = col;
+        thicks[k] = thick;
+        binEdge(k,p1,p2);
+    }
+    
+    /** Paints the tiles (the first time this is called) and returns the image.
+     * @return  */
+    @Override
+    public BufferedImage getImage() {
+        if (!painted) {
+            painted = true;
+            if (bins.length>0) { ForkJoinPool.commonPool().invoke(new PaintTask(0,bins.length)); }
+        }
+        return buf.getImage();
+    }
+    
+    // -------------------- Public Methods -------------------
+    
+    /** Removes all the primitives so that the object can be used for another frame.
+     * The frame buffer is cleared when the image is next requested.
+     * @param z Initial depth.
+     * @param col Background colour.
+     */
+    public void clear(double z, Color col) {
+        z0 = z;
+        background = col;
+        // Release the references to the points and colours:
+        Arrays.fill(facets,0,numPrimitives,null);
+        Arrays.fill(points1,0,numPrimitives,null);
+        Arrays.fill(points2,0,numPrimitives,null);
+        Arrays.fill(colors1,0,numPrimitives,null);
+        Arrays.fill(colors2,0,numPrimitives,null);
+        numPrimitives = 0;
+        Arrays.fill(binSizes,0);
+        painted = false;
+    }
+    
+    // -------------------- Private Methods -------------------
+    
+    /** Adds a primitive to the arrays, enlarging them if required.
+     * @return The index of the new primitive. */
+    private int add(byte type) {
+        if (painted) { throw new IllegalStateException("The image has already been painted."); }
+        if (numPrimitives==types.length) {
+            int n = 2*numPrimitives;
+            types = Arrays.copyOf(types,n);
+            facets = Arrays.copyOf(facets,n);
+            points1 = Arrays.copyOf(points1,n);
+            points2 = Arrays.copyOf(points2,n);
+            colors1 = Arrays.copyOf(colors1,n);
+            colors2 = Arrays.copyOf(colors2,n);
+            thicks = Arrays.copyOf(thicks,n);
+            sizes = Arrays.copyOf(sizes,n);
+        }
+        types[numPrimitives] = type;
+        return numPrimitives++;
+    }
+    
+    /** Adds a primitive to the tiles overlapping its bounding box.
+     * The box is padded by a pixel on each side for the thick edge mask and for rounding. */
+    private void bin(int k, double x1, double x2, double y1, double y2) {
+        // Calculate the range of tiles (primitives entirely outside the frame paint nothing):
+        int i1 = (int)Math.floor(x1) - 1;
+        int i2 = (int)Math.ceil(x2) + 1;
+        int j1 = (int)Math.floor(y1) - 1;
+        int j2 = (int)Math.ceil(y2) + 1;
+        if ( i2<0 || j2<0 || i1>=width || j1>=height ) { return; }
+        int ti1 = Math.max(i1,0) / TILE_SIZE;
+        int ti2 = Math.min(i2,width-1) / TILE_SIZE;
+        int tj1 = Math.max(j1,0) / TILE_SIZE;
+        int tj2 = Math.min(j2,height-1) / TILE_SIZE;
+        // Add to each tile:
+        for (int tj=tj1 ; tj<=tj2 ; tj++ ) {
+            for (int ti=ti1 ; ti<=ti2 ; ti++ ) {
+                addToBin( tj*numTilesI + ti , k );
+            }
+        }
+    }
+    
+    /** Adds an edge to the tiles that the line of pixels painted for it crosses (see the ZBuffer3D.putEdge method).
+     * The line is padded by a pixel on each side for the thick edge mask. */
+    private void binEdge(int k, MyPoint3D p1, MyPoint3D p2) {
+        int x1 = (int)p1.getX();
+        int y1 = (int)p1.getY();
+        int x2 = (int)p2.getX();
+        int y2 = (int)p2.getY();
+        // Calculate the range of tile columns (edges entirely outside the frame paint nothing):
+        int i1 = Math.min(x1,x2) - 1;
+        int i2 = Math.max(x1,x2) + 1;
+        if ( i2<0 || i1>=width ) { return; }
+        int ti1 = Math.max(i1,0) / TILE_SIZE;
+        int ti2 = Math.min(i2,width-1) / TILE_SIZE;
+        // Loop over each column of tiles:
+        for (int ti=ti1 ; ti<=ti2 ; ti++ ) {
+            // Clip the line to the column (padded) to find the range of rows it crosses in the column:
+            line.set(x1,y1,x2,y2);
+            if (!line.clip( ti*TILE_SIZE-1 , (ti+1)*TILE_SIZE , -1 , height )) { continue; }
+            int ya = line.getY(line.getFirst());
+            int yb = line.getY(line.getLast());
+            int tj1 = Math.max( Math.min(ya,yb)-1 , 0 ) / TILE_SIZE;
+            int tj2 = Math.min( Math.max(ya,yb)+1 , height-1 ) / TILE_SIZE;
+            // Add to each tile:
+            for (int tj=tj1 ; tj<=tj2 ; tj++ ) {
+                addToBin( tj*numTilesI + ti , k );
+            }
+        }
+    }
+    
+    private void addToBin(int t, int k) {
+        int[] bin = bins[t];
+        int n = binSizes[t];
+        if (bin==null) {
+            bin = new int[16];
+            bins[t] = bin;
+        } else if (n==bin.length) {
+            bin = Arrays.copyOf(bin,2*n);
+            bins[t] = bin;
+        }
+        bin[n] = k;
+        binSizes[t] = n + 1;
+    }
+    
+    /** Paints a single tile. */
+    private void paintTile(int t) {
+        int i0 = ( t % numTilesI )*TILE_SIZE;
+        int j0 = ( t / numTilesI )*TILE_SIZE;
+        int w = Math.min(TILE_SIZE,width-i0);
+        int h = Math.min(TILE_SIZE,height-j0);
+        ZBuffer3D zbuf = new ZBuffer3D(buf,i0,j0,w,h,z0,background);
+        int[] bin = bins[t];
+        for (int n=0 ; n<binSizes[t] ; n++ ) {
+            int k = bin[n];
+            switch (types[k]) {
+                case NODE:
+                    zbuf.putNode(points1[k],colors1[k],sizes[k]);
+                    break;
+                case FACET:
+                    zbuf.putFacet(facets[k],colors1[k],colors2[k],thicks[k]);
+                    break;
+                default:
+                    zbuf.putEdge(points1[k],points2[k],colors1[k],thicks[k]);
+            }
+        }
+    }
+    
+    // -------------------- Private Classes -------------------
+    
+    /** Paints a range of tiles, splitting the range in two if it contains more than one tile. */
+    private class PaintTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int start, end; // the range of tile indices (end is exclusive)
+        public PaintTask(int t1, int t2) {
+            start = t1;
+            end = t2;
+        }
+        @Override
+        protected void compute() {
+            if ( end-start <= 1 ) {
+                paintTile(start);
+                return;
+            }
+            int mid = (start+end) >>> 1;
+            invokeAll( new PaintTask(start,mid) , new PaintTask(mid,end) );
+        }
+    }
+    
+}
@@ -1,47 +1,122 @@
 package facetmodeller.gui;
 
-import geometry.Circle;
-import geometry.MyPoint2D;
 import geometry.MyPoint3D;
-import geometry.ZBary;
 import geometry.ZPlane;
 import java.awt.Color;
-import java.awt.Polygon;
-import paint.ZBuffer;
+import java.awt.image.BufferedImage;
 
 /** For 3D rendering of a scene using z-buffer strategy.
+ * The pixels are painted into a FrameBuffer object, which can be reused for each frame.
+ * A ZBuffer3D object can paint a rectangular tile of the frame buffer (see the TiledZBuffer3D class),
+ * in which case pixels outside the tile are ignored. All pixel coordinates are frame coordinates.
  * @author Peter Lelievre
  */
-public class ZBuffer3D extends ZBuffer {
+public class ZBuffer3D implements ZBufferPainter {
+    
+    // -------------------- Properties -------------------
+    
+    private static final double TRI_TOL = 1.0E-9; // HARDWIRE: relative tolerance for a column lying along a triangle edge
+    
+    private final FrameBuffer buf;
+    private final int frameWidth, frameHeight;
+    private final int i0, j0, width, height; // the tile painted into
+    private final BBox bbox = new BBox(); // reused for each primitive
+    private final BresenhamLine line = new BresenhamLine(); // reused for each edge
     
     // -------------------- Constructor -------------------
     
     public ZBuffer3D(int w, int h, double z0, Color col) {
-        super(w,h,z0,col);
+        this(new FrameBuffer(w,h),z0,col);
     }
     
-    // -------------------- Public methods -------------------
+    /** Clears a frame buffer and paints into it.
+     * @param buf
+     * @param z0 Initial depth.
+     * @param col Background colour.
+     */
+    public ZBuffer3D(FrameBuffer buf, double z0, Color col) {
+        this(buf,0,0,buf.getWidth(),buf.getHeight(),z0,col);
+    }
+    
+    /** Clears a tile of a frame buffer and paints into it.
+     * @param buf
+     * @param i0 Frame pixel coordinates of the first pixel in the tile.
+     * @param j0
+     * @param w Tile size.
+     * @param h
+     * @param z0 Initial depth.
+     * @param col Background colour.
+     */
+    public ZBuffer3D(FrameBuffer buf, int i0, int j0, int w, int h, double z0, Color col) {
+        this.buf = buf;
+        frameWidth = buf.getWidth();
+        frameHeight = buf.getHeight();
+        this.i0 = i0;
+        this.j0 = j0;
+        width = w;
+        height = h;
+        buf.clear(i0,j0,w,h,z0,col);
+    }
+    
+    // -------------------- Getters -------------------
+    
+    /** Returns the tile width.
+     * @return  */
+    public int getWidth() { return width; }
+    
+    /** Returns the tile height.
+     * @return  */
+    public int getHeight() { return height; }
+    
+    /** Returns the image for the whole frame buffer.
+     * @return  */
+    @Override
+    public BufferedImage getImage() { return buf.getImage(); }
+    
+    /** Returns the depth at a pixel.
+     * @param i Frame pixel coordinates.
+     * @param j
+     * @return  */
+    public double getZ(int i, int j) { return buf.getZ(i,j); }
+    
+    // -------------------- Public Methods -------------------
+    
+    /** Sets a pixel if it is in the tile and it passes the depth test.
+     * @param i Frame pixel coordinates.
+     * @param j
+     * @param z
+     * @param col
+     * @return True if the pixel was set. */
+    public boolean setPixel(int i, int j, double z, Color col) {
+        return setPixel(i,j,z,col.getRGB());
+    }
     
     /** Processes a node.
      * @param p3
      * @param col
      * @param d */
     public void putNode(MyPoint3D p3, Color col, double d) {
-        // Create a circle object:
+        int rgb = col.getRGB();
+        // The node is painted as a sphere (no objects are created for the pixels):
         double r = d/2.0;
-        Circle circle = new Circle( p3.getX(), p3.getY(), r );
+        double r2 = r*r;
+        double x = p3.getX();
+        double y = p3.getY();
+        double z0 = p3.getZ();
         // Get the bounding box:
         BBox box = getBBox(p3,r);
         // Loop over each pixel in the bounding box:
         for (int i=box.i1 ; i<box.i2 ; i++) {
+            double dx = i - x;
             for (int j=box.j1 ; j<box.j2 ; j++) {
-                MyPoint2D p = new MyPoint2D(i,j);
+                double dy = j - y;
                 // Check if the pixel is inside the projected sphere:
-                if (!circle.inside(p)) { continue; }
+                double d2 = dx*dx + dy*dy;
+                if (d2>r2) { continue; }
                 // Calculate the height of the pixel projected onto the sphere's surface:
-                double z = p3.getZ() + circle.interpolate(p); // addition means closer to viewer
+                double z = z0 + Math.sqrt( r2 - d2 ); // addition means closer to viewer
                 // Compare against the z value in the ZBuffer:
-                setPixel(i,j,z,col); // the checking is done inside this method
+                setPixel(i,j,z,rgb); // the checking is done inside this method
             }
         }
     }
@@ -79,6 +154,8 @@ public class ZBuffer3D extends ZBuffer {
     }
     
     /** Processes an edge, optionally drawn thick with aliasing.
+     * Only the part of the line inside the tile (or next to it for a thick line) is walked,
+     * so a long edge costs time proportional to its length inside the tile.
      * @param p1
      * @param p2
      * @param col
@@ -92,46 +169,46 @@ public class ZBuffer3D extends ZBuffer {
         final int y2 = (int)p2.getY();
         final double z1 = p1.getZ();
         final double z2 = p2.getZ();
+        final int rgb = col.getRGB();
         final int w = x2 - x1;
         final int h = y2 - y1;
         double d = Math.sqrt( Math.pow(w,2) + Math.pow(h,2) ); // distance between points in (x-y) plane
         //double d = p1.distanceToPointXY(p2); // distance between points in (x-y) plane
         if (d<1) { return; } // 
         final double zslope = (z2-z1)/d;
-        int x = x1;
-        int y = y1;
-        int dx1=0, dy1=0, dx2=0, dy2=0;
-        if (w<0) { dx1 = -1; } else if (w>0) { dx1 = 1; }
-        if (h<0) { dy1 = -1; } else if (h>0) { dy1 = 1; }
-        if (w<0) { dx2 = -1; } else if (w>0) { dx2 = 1; }
-        int longest = Math.abs(w);
-        int shortest = Math.abs(h);
-        //if (!(longest>shortest)) {
-        if ( longest <= shortest ) {
-            longest = Math.abs(h);
-            shortest = Math.abs(w);
-            if (h<0) { dy2 = -1; } else if (h>0) { dy2 = 1; }
-            dx2 = 0;
-        }
-        int numerator = ( longest >> 1 );
-        //int width = getWidth();
-        //int height = getHeight();
-        for (int i=0 ; i<=longest ; i++ ) {
+        // Clip the line to the tile (the thick line mask reaches a pixel further):
+        line.set(x1,y1,x2,y2);
+        int m = ( thick ? 1 : 0 );
+        if (!line.clip( i0-m , i0+width-1+m , j0-m , j0+height-1+m )) { return; }
+        final int dx1 = line.getStepX();
+        final int dy1 = line.getStepY();
+        final int dx2 = ( line.getXMajor() ? dx1 : 0 );
+        final int dy2 = ( line.getXMajor() ? 0 : dy1 );
+        final int longest = line.getLongest();
+        final int shortest = line.getShortest();
+        // Start at the first step inside the tile:
+        final int first = line.getFirst();
+        final int last = line.getLast();
+        int x = line.getX(first);
+        int y = line.getY(first);
+        int numerator = line.getNumerator(first);
+        for (int i=first ; i<=last ; i++ ) {
             // Interpolate the z value:
             d = Math.sqrt( Math.pow(x-x1,2) + Math.pow(y-y1,2) ); // distance along the line
             double z = z1 + d*zslope + 1;
-            // Set the pixel:
-            boolean ok = setPixel(x,y,z,col); // the setPixel method checks that the pixel coordinates are inside the image
-            // If drawing a thick line then apply a simple mask:
-            if (thick && ok) {
-                setPixel(x-1,y-1,z,col);
-                setPixel(x-1,y  ,z,col);
-                setPixel(x-1,y+1,z,col);
-                setPixel(x  ,y-1,z,col);
-                setPixel(x  ,y+1,z,col);
-                setPixel(x+1,y-1,z,col);
-                setPixel(x+1,y  ,z,col);
-                setPixel(x+1,y+1,z,col);
+            // Set the pixel (the setPixel method checks that the pixel coordinates are inside the tile):
+            setPixel(x,y,z,rgb);
+            // If drawing a thick line then apply a simple mask around the pixel if it is inside the frame
+            // (each pixel in the mask is depth tested on its own so the result doesn't depend on the tile):
+            if ( thick && x>=0 && x<frameWidth && y>=0 && y<frameHeight ) {
+                setPixel(x-1,y-1,z,rgb);
+                setPixel(x-1,y  ,z,rgb);
+                setPixel(x-1,y+1,z,rgb);
+                setPixel(x  ,y-1,z,rgb);
+                setPixel(x  ,y+1,z,rgb);
+                setPixel(x+1,y-1,z,rgb);
+                setPixel(x+1,y  ,z,rgb);
+                setPixel(x+1,y+1,z,rgb);
             }
             // Update variables before continuing to next iteration:
             numerator += shortest;
@@ -186,35 +263,115 @@ public class ZBuffer3D extends ZBuffer {
     
     // -------------------- Private methods -------------------
     
-    /** Processes a triangular facet (n=3). */
-    private void putTri(MyPoint3D[] facet, Color col) {
-        // Initialize barycentric information:
-        MyPoint3D p0 = facet[0];
-        MyPoint3D p1 = facet[1];
-        MyPoint3D p2 = facet[2];
-        ZBary bar = new ZBary(p0,p1,p2);
+    /** Sets a pixel if it is in the tile and it passes the depth test.
+     * @return True if the pixel was set. */
+    private boolean setPixel(int i, int j, double z, int rgb) {
+        if ( i<i0 || i>=i0+width || j<j0 || j>=j0+height ) { return false; }
+        return buf.setPixel( j*frameWidth + i , z , rgb );
+    }
+    
+    /** Processes a triangular facet (n=3).
+     * The triangle is convex so the pixels inside it form a single span in each column.
+     * The ends of the span are estimated from the edge functions and then found exactly by checking the barycentric
+     * coordinates of the pixels near the estimated ends, using the same arithmetic as the ZBary class
+     * (so exactly the same pixels are filled). The depth is then interpolated along the span with a constant increment.
+     * No objects are created for the pixels. */
+    void putTri(MyPoint3D[] facet, Color col) {
+        // Initialize barycentric information (as in the ZBary class):
+        double x0 = facet[0].getX();
+        double y0 = facet[0].getY();
+        double x1 = facet[1].getX() - x0;
+        double y1 = facet[1].getY() - y0;
+        double x2 = facet[2].getX() - x0;
+        double y2 = facet[2].getY() - y0;
+        double det = x1*y2 - x2*y1;
         // Check for collinear vertices:
-        if (!bar.check()) { return; }
+        if (det==0.0) { return; }
+        int rgb = col.getRGB();
+        double z0 = facet[0].getZ();
+        double z1 = facet[1].getZ() - z0;
+        double z2 = facet[2].getZ() - z0;
+        // The edge functions det*b1, det*b2 and det*b0 are linear in the pixel coordinates
+        // (e=e0+dx*ex+dy*ey where dx=i-x0 and dy=j-y0), as is the depth:
+        double s = Math.signum(det); // multiplying by s makes the edge functions non-negative inside the triangle
+        double e1x = s*y2;
+        double e1y = -s*x2;
+        double e2x = -s*y1;
+        double e2y = s*x1;
+        double e0x = -e1x - e2x;
+        double e0y = -e1y - e2y;
+        double e00 = s*det;
+        double zy = ( x1*z2 - x2*z1 )/det; // depth increment down a column
+        // Columns lying along an edge of the triangle are checked pixel by pixel (rounding errors can make those spans ragged):
+        boolean alongEdge0 = ( e0y==0.0 );
+        boolean alongEdge1 = ( e1y==0.0 );
+        boolean alongEdge2 = ( e2y==0.0 );
         // Get the bounding box:
         BBox box = getBBox(facet);
-        // Loop over each pixel in the bounding box:
+        // Loop over each column in the bounding box:
         for (int i=box.i1 ; i<=box.i2 ; i++) {
-            for (int j=box.j1 ; j<=box.j2 ; j++) {
-                // Calculate barycentric coordinates for the point:
-                MyPoint2D p = new MyPoint2D(i,j);
-                bar.calculate(p);
-                // Check if the pixel is inside the projected triangle:
-                if (!bar.inOrOn()) { continue; }
-                // Interpolate the z value at the current pixel location:
-                double z = bar.interpolate();
-                // Compare against the z value in the ZBuffer:
-                setPixel(i,j,z,col); // the checking is done inside this method
+            double dx = i - x0;
+            double e0 = e00 + dx*e0x;
+            double e1 = dx*e1x;
+            double e2 = dx*e2x;
+            // Each edge function must be non-negative, giving a lower or upper limit on dy:
+            double lo = box.j1 - y0;
+            double hi = box.j2 - y0;
+            if (e0y>0.0) { lo = Math.max(lo,-e0/e0y); } else if (e0y<0.0) { hi = Math.min(hi,-e0/e0y); }
+            if (e1y>0.0) { lo = Math.max(lo,-e1/e1y); } else if (e1y<0.0) { hi = Math.min(hi,-e1/e1y); }
+            if (e2y>0.0) { lo = Math.max(lo,-e2/e2y); } else if (e2y<0.0) { hi = Math.min(hi,-e2/e2y); }
+            // Pad the estimated span by a pixel at each end to allow for rounding errors:
+            int j1 = Math.max( box.j1 , (int)Math.floor(y0+lo) - 1 );
+            int j2 = Math.min( box.j2 , (int)Math.ceil(y0+hi) + 1 );
+            boolean ragged = ( (alongEdge0 && Math.abs(e0)<=TRI_TOL*e00) || (alongEdge1 && Math.abs(e1)<=TRI_TOL*e00) || (alongEdge2 && Math.abs(e2)<=TRI_TOL*e00) );
+            if (ragged) {
+                // Check every pixel in the span:
+                for (int j=j1 ; j<=j2 ; j++) {
+                    if (!inTri(x1,y1,x2,y2,det,dx,j-y0)) { continue; }
+                    buf.setPixel(j*frameWidth+i,triDepth(x1,y1,x2,y2,det,z0,z1,z2,dx,j-y0),rgb); // the checking is done inside this method
+                }
+                continue;
+            }
+            // Find the exact ends of the span:
+            while ( j1<=j2 && !inTri(x1,y1,x2,y2,det,dx,j1-y0) ) { j1++; }
+            while ( j2>j1 && !inTri(x1,y1,x2,y2,det,dx,j2-y0) ) { j2--; }
+            if (j1>j2) { continue; }
+            // Fill the span (the bounding box is inside the tile so the pixels can be indexed directly):
+            double zs = triDepth(x1,y1,x2,y2,det,z0,z1,z2,dx,j1-y0);
+            int k = j1*frameWidth + i;
+            for (int j=j1 ; j<=j2 ; j++) {
+                buf.setPixel(k,zs+(j-j1)*zy,rgb); // the checking is done inside this method
+                k += frameWidth;
             }
         }
     }
     
-    /** Processes a polygonal facet (n>3). */
+    /** Checks if a pixel is inside a projected triangle using the same arithmetic as the ZBary class.
+     * The triangle vertices and pixel are relative to the first vertex.
+     * @return True if inside or on the triangle. */
+    private static boolean inTri(double x1, double y1, double x2, double y2, double det, double dx, double dy) {
+        double b1 = (y2*dx - x2*dy)/det;
+        double b2 = (x1*dy - y1*dx)/det;
+        double b0 = 1.0 - b1 - b2;
+        return ( b0>=0.0 && b0<=1.0 && b1>=0.0 && b1<=1.0 && b2>=0.0 && b2<=1.0 );
+    }
+    
+    /** Interpolates the depth at a pixel in a projected triangle.
+     * The triangle vertices, vertex depths and pixel are relative to the first vertex. */
+    private static double triDepth(double x1, double y1, double x2, double y2, double det, double z0, double z1, double z2, double dx, double dy) {
+        double b1 = (y2*dx - x2*dy)/det;
+        double b2 = (x1*dy - y1*dx)/det;
+        return z0 + b1*z1 + b2*z2;
+    }
+    
+    /** Processes a polygonal facet (n>3).
+     * Uses a scanline fill with an active edge table. The insideness rule is that of the java.awt.Polygon class
+     * (even-odd rule with the vertices truncated to integer pixel coordinates) so the same pixels are filled
+     * as when each pixel is checked with that class. In each row, a pixel crosses an active edge if it lies to the
+     * left of the edge, so the crossing thresholds are found for the active edges and the pixels between
+     * alternate pairs of sorted thresholds are inside. */
     private void putPoly(MyPoint3D[] facet, Color col) {
+        int rgb = col.getRGB();
         // Fit a plane to the polygon (assuming it is planar):
         ZPlane plane = fitZPlane(facet);
         // Check for collinear vertices:
@@ -222,17 +379,81 @@ public class ZBuffer3D extends ZBuffer {
         if (!plane.check()) { return; }
         // Get the bounding box:
         BBox box = getBBox(facet);
-        // Loop over each pixel in the bounding box:
-        for (int i=box.i1 ; i<=box.i2 ; i++) {
-            for (int j=box.j1 ; j<=box.j2 ; j++) {
-                // Check if the pixel is inside the projected polygon:
-                double x = i;
-                double y = j;
-                if (!inPoly(facet,x,y)) { continue; }
-                // Interpolate the z value at the current pixel location (assuming the polygon is planar):
-                double z = plane.interpolate(x,y);
-                // Compare against the z value in the ZBuffer:
-                setPixel(i,j,z,col); // the checking is done inside this method
+        // Build the edge table, skipping horizontal edges (the ends of each edge are ordered by y):
+        int n = facet.length;
+        int[] lx = new int[n];
+        int[] ly = new int[n];
+        int[] hx = new int[n];
+        int[] hy = new int[n];
+        int ne = 0;
+        int xa = (int)facet[n-1].getX();
+        int ya = (int)facet[n-1].getY();
+        for (int k=0 ; k<n ; k++ ) {
+            int xb = (int)facet[k].getX();
+            int yb = (int)facet[k].getY();
+            if (yb!=ya) {
+                // Insert the edge into the table, sorted by the lower y value:
+                int e = ne++;
+                int y = Math.min(ya,yb);
+                while ( e>0 && ly[e-1]>y ) {
+                    lx[e] = lx[e-1];
+                    ly[e] = ly[e-1];
+                    hx[e] = hx[e-1];
+                    hy[e] = hy[e-1];
+                    e--;
+                }
+                if (yb<ya) {
+                    lx[e] = xb; ly[e] = yb; hx[e] = xa; hy[e] = ya;
+                } else {
+                    lx[e] = xa; ly[e] = ya; hx[e] = xb; hy[e] = yb;
+                }
+            }
+            xa = xb;
+            ya = yb;
+        }
+        if (ne==0) { return; }
+        // Loop over each row in the bounding box, maintaining the active edges (those with ly<=j<hy):
+        int[] active = new int[ne];
+        int[] t = new int[ne]; // crossing thresholds for the active edges
+        int na = 0;
+        int next = 0; // next edge in the table to become active
+        int j1 = Math.max( box.j1 , ly[0] );
+        for (int j=j1 ; j<=box.j2 ; j++) {
+            // Add the edges that start at or before this row:
+            while ( next<ne && ly[next]<=j ) { active[na++] = next++; }
+            // Remove the edges that end at or before this row and calculate the thresholds for the others:
+            int m = 0;
+            for (int k=0 ; k<na ; k++ ) {
+                int e = active[k];
+                if (hy[e]<=j) { continue; }
+                active[m] = e;
+                // The pixel at x crosses the edge if x<threshold (see the Polygon.contains method):
+                double q = (double)(j-ly[e]) / (hy[e]-ly[e]) * (hx[e]-lx[e]);
+                int left = Math.min(lx[e],hx[e]);
+                int right = Math.max(lx[e],hx[e]);
+                int ti = Math.max( left , Math.min( right , lx[e] + (int)Math.ceil(q) ) );
+                // Insert the threshold into the sorted list:
+                int r = m++;
+                while ( r>0 && t[r-1]>ti ) {
+                    t[r] = t[r-1];
+                    r--;
+                }
+                t[r] = ti;
+            }
+            na = m;
+            if ( na==0 && next==ne ) { break; } // no more edges
+            // Fill the pixels with an odd number of crossings:
+            for (int k=0 ; k<na ; k++ ) {
+                if ( ((na-k-1)&1)==0 ) { continue; } // even number of crossings for pixels between t[k] and t[k+1]
+                int i1 = Math.max( box.i1 , t[k] );
+                int i2 = Math.min( box.i2 , ( k+1<na ? t[k+1]-1 : box.i2 ) );
+                int row = j*frameWidth; // the bounding box is inside the tile so the pixels can be indexed directly
+                for (int i=i1 ; i<=i2 ; i++) {
+                    // Interpolate the z value at the current pixel location (assuming the polygon is planar):
+                    double z = plane.interpolate(i,j);
+                    // Compare against the z value in the ZBuffer:
+                    buf.setPixel(row+i,z,rgb); // the checking is done inside this method
+                }
             }
         }
     }
@@ -311,79 +532,10 @@ public class ZBuffer3D extends ZBuffer {
         }
     }
     
-    /** Checks if a point is inside a rotated and projected polygon.
-     * @param facet
-     * @param x
-     * @param y
-     * @return 
-     */
-    private boolean inPoly(MyPoint3D[] facet, double x, double y) {
-        
-        // Create polygon object:
-        Polygon p = new Polygon();
-        for (MyPoint3D fi : facet) {
-            int xi = (int)fi.getX();
-            int yi = (int)fi.getY();
-            p.addPoint(xi,yi);
-        }
-        return p.contains(x,y);
-        
-        /*
-        boolean ok = p.contains(x,y);
-        // That doesn't work! Use ray intersection method ...
-        // Loop over the edges in the facet:
-        int nedges = facet.length;
-        int ncross = 0; // counter for the number of times the polygon crosses the +x ray
-        for (int i=0 ; i<nedges ; i++ ) {
-            // Get edge vertex coordinates:
-            MyPoint3D p1 = facet[i]; // first vertex in current edge
-            MyPoint3D p2; // second vertex in current edge
-            if (i==(nedges-1)) { // reached last edge, between vertices [n-1] and [0]
-                p2 = facet[0];
-            } else {
-                p2 = facet[i+1];
-            }
-            double x1 = p1.getX();
-            double y1 = p1.getY();
-            double x2 = p2.getX();
-            double y2 = p2.getY();
-            // Check for complicating case of the point lying on a vertex:
-            if ( ( x1==x && y1==y ) || ( x2==x && y2==y ) ) { return true; } // doesn't really matter what value is returned
-            // If the edge is not to the +x of the point (i.e. both vertices are not) then cycle:
-            if ( x1<=x && x2<=x ) { continue; } // to next edge (next iteration of for i loop)
-            // Check for complicating case of one or both vertices exactly on the y=0 line:
-            //if ( y1==y || y2==y ) {
-            // The intersection counts only if the second vertex of the side lies below the ray:
-            // (see http://en.wikipedia.org/wiki/Point_in_polygon#Ray_casting_algorithm)
-            if ( y1==y && y2<y ) {
-                ncross++;
-                continue;
-            }
-            // If the edge does not straddle the y=0 line then cycle:
-            if ( Math.min(y1,y2)>=y || Math.max(y1,y2)<=y ) { continue; } // catches cases of vertex intersection not dealt with above
-            // Determine the intersection with the y=0 line:
-            double xi = x1 + (y-y1)*(x2-x1)/(y2-y1); // no danger of division by zero due to straddle check above
-            // If the intersection is on the +x side of the y=0 line then increment the ray intersection counter:
-            if ( xi>x ) { ncross++; }
-        } // for i loop (over edges)
-        // Check sign of ncross:
-        boolean ok2 = ( ncross%2 != 0 );
-        if ( ok != ok2 ) {
-            int j=0;
-        }
-        if ( ok2 ) {
-            int j=0;
-        } else {
-            int j=0;
-        }
-        return ok; // true (inside) if odd
-        */
-    }
-    
-    /** Finds the bounding box for a node. */
+    /** Finds the bounding box for a node (the object returned is reused for each primitive). */
     private BBox getBBox(MyPoint3D p, double r) {
         // The nodes are plotted as spheres of radius r:
-        BBox b = new BBox();
+        BBox b = bbox;
         //MyPoint3D p = node.getPoint3DRotated();
         double x = p.getX();
         double y = p.getY();
@@ -391,24 +543,25 @@ public class ZBuffer3D extends ZBuffer {
         b.i2 = (int)Math.floor(x+r);
         b.j1 = (int)Math.ceil(y-r);
         b.j2 = (int)Math.floor(y+r);
-        int w = getWidth()  - 1;
-        int h = getHeight() - 1;
-        // Check for values out-of-bounds:
-        b.inRange(w,h);
+        // Check for values out-of-bounds (the upper limits are exclusive and the last pixel in the frame is never painted):
+        b.i1 = BBox.inRange( b.i1 , i0 , i0+getWidth()-1 );
+        b.j1 = BBox.inRange( b.j1 , j0 , j0+getHeight()-1 );
+        b.i2 = BBox.inRange( b.i2 , i0 , Math.min( i0+getWidth() , frameWidth-1 ) );
+        b.j2 = BBox.inRange( b.j2 , j0 , Math.min( j0+getHeight() , frameHeight-1 ) );
         // Return the object:
         return b;
     }
     
-    /** Finds the bounding box for a facet. */
+    /** Finds the bounding box for a facet (the object returned is reused for each primitive). */
     private BBox getBBox(MyPoint3D[] facet) {
         // Initialization before max/min operations:
-        int w = getWidth()  - 1;
-        int h = getHeight() - 1;
-        BBox b = new BBox();
+        int w = i0 + getWidth()  - 1;
+        int h = j0 + getHeight() - 1;
+        BBox b = bbox;
         b.i1 = w;
         b.j1 = h;
-        b.i2 = 0;
-        b.j2 = 0;
+        b.i2 = i0;
+        b.j2 = j0;
         // Loop over each node in the facet:
         //for (int i=0 ; i<facet.length ; i++) {
         //    MyPoint3D p = facet[i];
@@ -425,7 +578,7 @@ public class ZBuffer3D extends ZBuffer {
             b.j2 = Math.max(b.j2,y1);
         }
         // Check for values out-of-bounds:
-        b.inRange(w,h);
+        b.inRange(i0,w,j0,h);
         // Return the object:
         return b;
     }
@@ -444,15 +597,15 @@ public class ZBuffer3D extends ZBuffer {
 //        // Return the object:
 //        return b;
 //    }
-    private class BBox {
+    private static class BBox {
         public int i1,i2,j1,j2;
-        private void inRange(int w, int h) {
-            i1 = inRange(i1,0,w);
-            i2 = inRange(i2,0,w);
-            j1 = inRange(j1,0,h);
-            j2 = inRange(j2,0,h);
+        private void inRange(int imin, int imax, int jmin, int jmax) {
+            i1 = inRange(i1,imin,imax);
+            i2 = inRange(i2,imin,imax);
+            j1 = inRange(j1,jmin,jmax);
+            j2 = inRange(j2,jmin,jmax);
         }
-        private int inRange(int i, int i1, int i2) {
+        private static int inRange(int i, int i1, int i2) {
             int j = i;
             j = Math.max(j,i1); // j>=i1
             j = Math.min(j,i2); // j<=i2
@@ -0,0 +1,22 @@
+package facetmodeller.gui;
+
+import geometry.MyPoint3D;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+/** Paints a scene using a z-buffer (see the ZBuffer3D and TiledZBuffer3D classes).
+ * All coordinates are projected image pixel coordinates, with depth increasing towards the viewer.
+ * @author Peter Lelievre
+ */
+public interface ZBufferPainter {
+    
+    public void putNode(MyPoint3D p3, Color col, double d);
+    public void putFacet(MyPoint3D[] facet, Color faceColor, Color edgeColor, boolean thick);
+    public void putEdge(MyPoint3D p1, MyPoint3D p2, Color col);
+    public void putEdge(MyPoint3D p1, MyPoint3D p2, Color col, boolean thick);
+    
+    /** Returns the painted image.
+     * @return  */
+    public BufferedImage getImage();
+    
+}
@@ -0,0 +1,56 @@
+package facetmodeller.menutasks;
+
+import dialogs.Dialogs;
+import facetmodeller.FacetModeller;
+import facetmodeller.commands.ChangeFacetGroupCommandVector;
+import facetmodeller.plc.FacetVector;
+
+/** Moves any facets that intersect other facets into the current group.
+ * @author Peter
+ */
+public final class FindIntersectingFacetsMenuTask extends ControlledMenuTask {
+
+    public FindIntersectingFacetsMenuTask(FacetModeller con) { super(con); }
+
+    @Override
+    public String text() { return "Find intersecting facets"; }
+
+    @Override
+    public String tip() { return "Moves any facets that intersect other facets into the current group"; }
+
+    @Override
+    public String title() { return "Find Intersecting Facets"; }
+
+    @Override
+    public boolean check() {
+        if (!controller.is3D()) { return false; }
+        if (!controller.hasGroups()) { return false; }
+        if (controller.getSelectedCurrentGroup()==null) { return false; }
+        return ( controller.hasNodes() && controller.hasFacets() );
+    }
+
+    @Override
+    public void execute() {
+        // Check for the required information:
+        if (!check()) { return; }
+        // Find them:
+        FacetVector facets = controller.findIntersectingFacets();
+        if (facets==null) { return; }
+        // Check facets were found:
+        if (facets.size()==0) {
+            Dialogs.inform(controller,"No intersecting facets found.",title());
+            return;
+        }
+        // Change the group membership of those facets:
+        ChangeFacetGroupCommandVector com = new ChangeFacetGroupCommandVector(facets,controller.getSelectedCurrentGroup(),title()); com.execute();
+        controller.undoVectorAdd(com);
+        // Enable or disable menu items:
+        controller.checkItemsEnabled();
+        // Repaint:
+        controller.redraw();
+        // Inform user:
+        String s = facets.size() + " intersecting facets found and moved to current group.";
+        Dialogs.inform(controller,s,title());
+    }
+
+}
@@ -2,15 +2,13 @@ package facetmodeller.menutasks;
 
 import dialogs.Dialogs;
 import facetmodeller.FacetModeller;
-import facetmodeller.ModelManager;
-import facetmodeller.commands.AddFacetCommandVector;
-import facetmodeller.commands.AddNodeCommandVector;
 import facetmodeller.groups.Group;
 import facetmodeller.groups.GroupVector;
 import facetmodeller.plc.Facet;
 import facetmodeller.plc.FacetVector;
 import facetmodeller.plc.Node;
 import facetmodeller.plc.NodeVector;
+import facetmodeller.plc.PLCBuilder;
 import facetmodeller.sections.Section;
 import facetmodeller.sections.SnapshotSection;
 import filters.EleFilter;
@@ -114,7 +112,7 @@ public final class LoadNodesAndFacetsMenuTask extends ControlledMenuTask {
         }
 
         // Read the node file:
-        NodeVector nodes = new NodeVector();
+        NodeVector nodes = new NodeVector(true); // indexed because the file could contain many nodes
         NodeVector.ReadNodesReturnObject readNodesReturnObj = nodes.readNodes(nodeFile,-2);
         String errmsg = readNodesReturnObj.getErrmsg();
         if (errmsg!=null) {
@@ -269,14 +267,13 @@ public final class LoadNodesAndFacetsMenuTask extends ControlledMenuTask {
                         break;
                     }
                 }
-                // Add the node to the appropriate group (and add that group to the node):
+                // Set the appropriate group for the node (the node is added to the group below):
                 Group g;
                 if (same) { // all facets the same so must be within a region
                     g = newGroupWithin;
                 } else { // facets different so must be on boundary of a region
                     g = newGroupBetween;
                 }
-                g.addNode(node);
                 node.setGroup(g);
             }
         }
@@ -299,7 +296,7 @@ public final class LoadNodesAndFacetsMenuTask extends ControlledMenuTask {
             // Find the boundary nodes:
             NodeVector boundaryNodes = facets.findBoundaryNodes();
             
-            // Add those nodes to the appropriate group (and add that group to the nodes):
+            // Set the appropriate group for those nodes (the nodes are added to the groups below):
             for (int i=0 ; i<nodes.size() ; i++ ) {
                 Node node = nodes.get(i);
                 Group g;
@@ -309,7 +306,6 @@ public final class LoadNodesAndFacetsMenuTask extends ControlledMenuTask {
                     g = otherGroup;
                 }
                 if (g!=null) {
-                    g.addNode(node);
                     node.setGroup(g);
                 }
             }
@@ -347,10 +343,16 @@ public final class LoadNodesAndFacetsMenuTask extends ControlledMenuTask {
             controller.addGroup(newGroupBoundary);
         }
         
-        // Add the new nodes and optional facets to the plc, section, group:
-        ModelManager model = controller.getModelManager();
-        new AddNodeCommandVector(model,nodes,"").execute();
-        new AddFacetCommandVector(model,facets).execute();
+        // Add the new nodes and optional facets to the plc, section, group
+        // (all the objects are new and the facets were linked to their nodes when read):
+        PLCBuilder builder = controller.getModelManager().newPLCBuilder(nodes.size(),facets.size(),false);
+        for (int i=0 ; i<nodes.size() ; i++ ) {
+            builder.addNode(nodes.get(i));
+        }
+        for (int i=0 ; i<facets.size() ; i++ ) {
+            builder.addFacet(facets.get(i));
+        }
+        builder.finish();
         
         // Update the graphical selector objects:
         if ( doNodeAtts || doFacetAtts || doNodeAttsFromFacetAtts || doNodeAttsFromFacetDefs ) {
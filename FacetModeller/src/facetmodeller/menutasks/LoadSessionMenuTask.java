@@ -172,7 +172,7 @@ public final class LoadSessionMenuTask extends ControlledMenuTask {
         if (nodeFile==null) { return null; }
         
         // Read the node file:
-        NodeVector nodes = new NodeVector();
+        NodeVector nodes = new NodeVector(true); // indexed because the file could contain many nodes
         NodeVector.ReadNodesReturnObject readNodesReturnObj = nodes.readNodes(nodeFile,-2);
         String errmsg = readNodesReturnObj.getErrmsg();
         if (errmsg!=null) {
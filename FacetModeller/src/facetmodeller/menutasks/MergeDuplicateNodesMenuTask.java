@@ -28,8 +28,26 @@ public final class MergeDuplicateNodesMenuTask extends ControlledMenuTask {
     public void execute() {
         // Check for the required information:
         if (!check()) { return; }
+        // Ask for the distance tolerance:
+        String response = Dialogs.input(controller,"Enter the distance tolerance for duplicate nodes (spatial units, 0 for identical coordinates):",title(),"0");
+        if (response==null) { return; } // user cancelled
+        response = response.trim();
+        String[] ss = response.split("[ ]+");
+        if (ss.length!=1) {
+            Dialogs.error(controller,"You must enter a single numeric value. Please try again.",title());
+            return;
+        }
+        double tol;
+        try {
+            tol = Double.parseDouble(ss[0].trim());
+            if (tol<0.0) { throw new NumberFormatException(); }
+        } catch (NumberFormatException e) {
+            Dialogs.error(controller,"You must enter a non-negative value. Please try again.",title());
+            return;
+        }
         // Find the duplicates:
-        DuplicateNodeInfo dupInfo = controller.findDuplicateNodes();
+        DuplicateNodeInfo dupInfo = controller.findDuplicateNodes(tol);
+        if (dupInfo==null) { return; }
         int n = dupInfo.size();
         // Check number of nodes to remove:
         if (n==0) {
@@ -0,0 +1,47 @@
+package facetmodeller.menutasks;
+
+import dialogs.Dialogs;
+import facetmodeller.FacetModeller;
+import facetmodeller.commands.Command;
+
+/** 
+ * @author Peter
+ */
+public final class RedoCommandMenuTask extends ControlledMenuTask {
+    
+    public RedoCommandMenuTask(FacetModeller con) { super(con); }
+    
+    @Override
+    public String text() { return "Redo"; }
+
+    @Override
+    public String tip() { return "Repeats the most recently undone command"; }
+
+    @Override
+    public String title() { return "Redo"; }
+
+    @Override
+    public boolean check() { return !controller.getRedoIsEmpty(); }
+
+    @Override
+    public void execute() {
+        // Check for the required information:
+        if (!check()) { return; }
+        // Get the most recently undone command:
+        Command command = controller.redoVectorGet();
+        // Check we can redo:
+        if (command==null) {
+            Dialogs.inform(controller,"There is nothing to redo.",title());
+            return;
+        }
+        // Redo the command:
+        command.redo();
+        // Move the command from the redo information back to the undo information:
+        controller.undoVectorRedone();
+        // Enable or disable menu items:
+        controller.checkItemsEnabled();
+        // Repaint:
+        controller.redraw();
+    }
+    
+}
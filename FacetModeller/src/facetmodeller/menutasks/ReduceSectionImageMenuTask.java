@@ -125,6 +125,7 @@ public final class ReduceSectionImageMenuTask extends ControlledMenuTask {
         if (section.isCalibrated()) {
             c1.times(sx,sy);
             c2.times(sx,sy);
+            section.calibrationChanged(); // the clicked points were changed in place
         }
         
         // Check for nodes:
@@ -137,6 +138,7 @@ public final class ReduceSectionImageMenuTask extends ControlledMenuTask {
                 MyPoint2D p = node.getPoint2D();
                 if (p==null) { continue; } // skip this unexpected error
                 p.times(sx,sy);
+                node.setPoint2D(p); // the point returned is a copy
             }
         }
         
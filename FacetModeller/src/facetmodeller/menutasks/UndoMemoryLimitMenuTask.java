@@ -0,0 +1,61 @@
+package facetmodeller.menutasks;
+
+import dialogs.Dialogs;
+import facetmodeller.FacetModeller;
+
+/** Allows the user to change the memory limit for the undo information.
+ * @author Peter
+ */
+public final class UndoMemoryLimitMenuTask extends ControlledMenuTask {
+    
+    private static final double MEGABYTE = 1024.0*1024.0;
+    
+    public UndoMemoryLimitMenuTask(FacetModeller con) { super(con); }
+    
+    @Override
+    public String text() { return "Undo memory limit"; }
+
+    @Override
+    public String tip() { return "Changes the memory available for undo information (the oldest commands are discarded first)"; }
+
+    @Override
+    public String title() { return "Undo Memory Limit"; }
+
+    @Override
+    public boolean check() { return true; }
+
+    @Override
+    public void execute() {
+        // Ask for the limit:
+        String prompt = "The undo information currently holds " + controller.undoVectorSize() + " commands using about "
+                + String.format("%.1f",controller.undoVectorEstimatedSize()/MEGABYTE) + " MB in memory, "
+                + controller.undoVectorRedoSize() + " undone commands using about "
+                + String.format("%.1f",controller.undoVectorRedoEstimatedSize()/MEGABYTE) + " MB in memory and "
+                + String.format("%.1f",controller.undoVectorJournalSize()/MEGABYTE) + " MB on disk."
+                + System.lineSeparator() + "The limit applies to the commands that can be undone."
+                + System.lineSeparator() + "Enter the memory limit for the undo information (MB, 0 for no limit):";
+        String response = Dialogs.input(controller,prompt,title(),String.format("%.1f",controller.getUndoMemoryLimit()/MEGABYTE));
+        // Check response:
+        if (response == null) { return; }
+        // Parse the limit out of the response:
+        response = response.trim();
+        String[] ss = response.split("[ ]+");
+        if (ss.length!=1) {
+            Dialogs.error(controller,"You must enter a single numeric value. Please try again.","Error");
+            return;
+        }
+        double d;
+        try {
+            d = Double.parseDouble(ss[0].trim());
+            if (d<0.0) { throw new NumberFormatException(); }
+        } catch (NumberFormatException e) {
+            Dialogs.error(controller,"You must enter a non-negative value. Please try again.","Error");
+            return;
+        }
+        // Set the limit (this may discard old commands):
+        controller.setUndoMemoryLimit( (long)(d*MEGABYTE) );
+        // Enable or disable menu items:
+        controller.checkItemsEnabled();
+    }
+    
+}
@@ -38,10 +38,10 @@ public final class UndoPreviousCommandMenuTask extends ControlledMenuTask {
         String prompt = "This will undo the most recent \"" + command.getName() + "\" command.";
         int response = Dialogs.continueCancel(controller,prompt,title());
         if (response!=Dialogs.OK_OPTION) { return; }
-        // Remove the previous command from the undo information vector:
-        controller.undoVectorRemove();
         // Undo the command:
         command.undo();
+        // Move the command from the undo information to the redo information:
+        controller.undoVectorUndone();
         // Enable or disable menu items:
         controller.checkItemsEnabled();
         // Repaint:
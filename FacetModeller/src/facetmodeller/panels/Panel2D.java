@@ -3,6 +3,7 @@ package facetmodeller.panels;
 import facetmodeller.FacetModeller;
 import facetmodeller.ZoomableSessionIO;
 import facetmodeller.plc.FacetVector;
+import facetmodeller.plc.Node;
 import facetmodeller.plc.NodeVector;
 import facetmodeller.plc.RegionVector;
 import geometry.MyPoint2D;
@@ -75,6 +76,7 @@ public final class Panel2D extends JPanel implements ZoomableSessionIO {
     
     // Wrappers for the SectionImagePanel class:
     public void redraw() { imagePanel.repaint(); }
+    public void redrawNode(Node node) { imagePanel.repaintNode(node); }
     public NodeVector getPaintedNodes() { return imagePanel.getPaintedNodes(); }
     public MyPoint2DVector getPaintedNodePoints() { return imagePanel.getPaintedNodePoints(); }
     public FacetVector getPaintedFacets() { return imagePanel.getPaintedFacets(); }
@@ -47,7 +47,7 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
     private final ZoomerDefault zoomer;
 
     // Lists of things that have been painted:
-    private final NodeVector paintedNodes = new NodeVector(); // the nodes painted
+    private final NodeVector paintedNodes = new NodeVector(true); // the nodes painted (indexed for fast lookup)
     private final MyPoint2DVector paintedNodePoints = new MyPoint2DVector(); // the node points painted (may be shifted)
     private final FacetVector paintedFacets = new FacetVector(); // the facets painted
     private final MyPoint2DVector paintedFacetCentroids = new MyPoint2DVector(); // the facet centroids painted
@@ -60,6 +60,23 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
     // For keeping track of the cursor:
     private boolean mouseInside = false;
     
+    // For repainting around a node that is being moved (see the repaintNode method):
+    private Node dirtyNode = null;
+    private Rectangle dirtyRegion = null; // the panel region last repainted for that node
+    private BufferedImage dragBackground = null; // everything painted except that node and its facets (null if not cached)
+    private Rectangle dragBounds = null; // the panel region covered by the cached image
+    private final FacetVector dragFacets = new FacetVector(); // the painted facets containing that node
+    private int[] dragFacetIndices = null; // the indices of those facets in the list of painted facets
+    private Color dragColor = null; // the painting colour for that node
+    private boolean dragFilled = false; // true if that node is painted filled
+    
+    // For telling drags from slightly jittered clicks:
+    private Point pressPoint = null; // panel coordinates of the last mouse press
+    private boolean dragStarted = false; // true once the cursor has moved far enough from the press point
+    private boolean jittered = false; // true if the cursor moved (but not far enough to start a drag) since the press
+    private boolean clickSent = false; // true if a jittered click has already been passed on when the button was released
+    private final int DRAG_THRESHOLD = 3; // HARDWIRE: panel pixels the cursor must move before a press becomes a drag
+    
     // ------------------ Constructor ------------------
 
     /** Creates the panel.
@@ -120,6 +137,75 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
         zoomReset();
     }
 
+    // -------------------- Public Methods --------------------
+    
+    /** Repaints only the part of the panel covering a node and the facets containing it, e.g. while the node is dragged.
+     * Everything else is painted into a cached image the first time and only the node and its facets are painted over it
+     * until the next full repaint. The region painted for the node's previous position is repainted as well so that it is erased,
+     * and the painted points for the node and facet centroids are updated so that picking works without a full repaint.
+     * The whole panel is repainted if the node has moved outside the section image,
+     * because the plotting range may then have changed.
+     * @param node A node in the current section, or an off-section node.
+     */
+    public void repaintNode(Node node) {
+        Section currentSection = controller.getSelectedCurrentSection();
+        if ( node==null || currentSection==null || imageToPanel==null ) {
+            repaint();
+            return;
+        }
+        int shiftX = controller.getShiftingX();
+        int shiftY = controller.getShiftingY();
+        // Update the painted point for the node:
+        MyPoint2D p = shiftNode(node,currentSection,shiftX,shiftY);
+        if (p==null) {
+            repaint();
+            return;
+        }
+        if ( p.getX()<0.0 || p.getY()<0.0 || p.getX()>currentSection.getWidth() || p.getY()>currentSection.getHeight() ) {
+            repaint();
+            return;
+        }
+        // Paint everything else into the cached image if required (the cached image is then repainted in full):
+        if ( dragBackground==null || node!=dirtyNode ) {
+            if (!paintDragBackground(node)) {
+                repaint();
+                return;
+            }
+            dirtyNode = node;
+            dirtyRegion = new Rectangle(dragBounds);
+        }
+        int i = paintedNodes.indexOf(node);
+        if (i>=0) {
+            MyPoint2D q = paintedNodePoints.get(i);
+            q.setX(p.getX());
+            q.setY(p.getY());
+        }
+        // Update the painted centroids of the facets containing the node:
+        for (int j=0 ; j<dragFacets.size() ; j++ ) {
+            HasPathAndCentroid tmp = addFacetToPath(dragFacets.get(j),currentSection,shiftX,shiftY);
+            if (tmp==null) { continue; } // shouldn't happen, but I'll check for it anyway
+            MyPoint2D q = paintedFacetCentroids.get(dragFacetIndices[j]);
+            q.setX(tmp.centroid.getX());
+            q.setY(tmp.centroid.getY());
+        }
+        // Find the panel region covering the node and the nodes of the facets containing it:
+        Rectangle region = panelRectangle(p);
+        FacetVector facets = node.getFacets();
+        for (int j=0 ; j<facets.size() ; j++ ) {
+            Facet facet = facets.get(j);
+            for (int k=0 ; k<facet.size() ; k++ ) {
+                MyPoint2D pk = shiftNode(facet.getNode(k),currentSection,shiftX,shiftY);
+                if (pk!=null) { region.add(panelRectangle(pk)); }
+            }
+        }
+        // Repaint that region and the one painted last time:
+        Rectangle dirty = new Rectangle(region);
+        if ( node==dirtyNode && dirtyRegion!=null ) { dirty.add(dirtyRegion); }
+        dirtyNode = node;
+        dirtyRegion = region;
+        repaint(dirty);
+    }
+    
     // -------------------- Overridden Methods --------------------
 
     @Override
@@ -127,11 +213,38 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
         controller.resetScroller();
     }
     
+    /** Repaints the whole panel, forgetting any cached image painted for a node being moved (see the repaintNode method). */
+    @Override
+    public void repaint() {
+        dragBackground = null;
+        super.repaint();
+    }
+
     /** Paints graphics on the panel.
      * @param g Graphics context in which to draw.
      */
     @Override
     public void paintComponent(Graphics g) {
+        // Only paint the node being moved over the cached image if possible:
+        Rectangle clip = g.getClipBounds();
+        if ( dragBackground!=null && clip!=null && dragBounds.equals(getVisibleRect()) && dragBounds.contains(clip) ) {
+            paintDrag(g);
+            return;
+        }
+        // Otherwise paint everything:
+        dragBackground = null;
+        paintScene(g,null);
+    }
+
+    // -------------------- Private Methods --------------------
+
+    /** Helper subroutine for the paintComponent method.
+     * Paints everything, optionally leaving out a node being moved and the facets containing it,
+     * along with any cursor overlays that could be affected by the move.
+     * The lists of painted nodes, facets etc. include everything, whether painted or not.
+     * @param exclude The node to leave out (null to paint everything).
+     */
+    private void paintScene(Graphics g, Node exclude) {
 
         // Paint background:
         super.paintComponent(g);
@@ -143,6 +256,7 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
         paintedFacetCentroids.clear();
         paintedRegions.clear();
         paintedRegionPoints.clear();
+        dragFacets.clear();
 
         // Return if no sections exist:
         if (!controller.hasSections()) { return; }
@@ -250,7 +364,7 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
         */
 
         // Determine the nodes to paint in the current and other sections:
-        NodeVector nodesToPaint = new NodeVector();
+        NodeVector nodesToPaint = new NodeVector(true);
         groups = controller.getSelectedNodeGroups();
         if (groups!=null) {
         for (int i=(groups.size()-1) ; i>=0; i-- ) { // loop over every selected node group in reverse order
@@ -416,31 +530,12 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
             // Create a path around possibly shifted node coordinates:
             HasPathAndCentroid tmp = addFacetToPath(facet,currentSection,shiftX,shiftY);
             if (tmp==null) { continue; } // shouldn't happen, but I'll check for it anyway
-            // Close the path:
-            tmp.path.closePath();
-            // Transform the path from section to panel coordinates:
-            tmp.path.transform(imageToPanel);
-            // Determine the painting colour for the facet:
-            Color col = getFacetPaintingColor(facetColorBy,facet);
-            // Greate a filled, semi-transparent polygonal patch:
-            if (facet.size()>2) { // (no patch exists for edge-element facets)
-                g2.setPaint(col);
-                g2.fill(tmp.path);
-            }
-            // Draw the path (i.e. the facet edges):
-            if (ndim==3) {
-                col = controller.getEdgeColor();
-            }// else {
-            //    color = facet.getColor();
-            //}
-            g2.setPaint(col);
-            g2.draw(tmp.path);
-            // Draw a small point at the facet centroid:
-            if (ndim==2) {
-                col = controller.getEdgeColor();
+            // Paint the facet unless it contains the node left out:
+            if ( exclude!=null && facet.containsNode(exclude) ) {
+                dragFacets.add(facet);
+            } else {
+                paintFacet(g2,facet,tmp,facetColorBy,ndim,centroidWidth);
             }
-            g2.setPaint(col);
-            PaintingUtils.paintPoint(g2,imageToPanel,tmp.centroid,centroidWidth,true); // filled
             // Add to the list of painted facets and centroids:
             paintedFacets.add(facet);
             paintedFacetCentroids.add(tmp.centroid);
@@ -450,7 +545,8 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
         BasicStroke dashedStroke = new BasicStroke(edgeWidth+1,BasicStroke.CAP_SQUARE,BasicStroke.JOIN_MITER,
                                                    (float)10.0,new float[]{2f,16f},(float)0.0);
         Facet currentFacet = controller.getCurrentFacet();
-        if (currentFacet!=null) {
+        boolean paintCurrentFacet = ( currentFacet!=null && ( exclude==null || !currentFacet.containsNode(exclude) ) );
+        if (paintCurrentFacet) {
             // Create a path around the node coordinates:
             if (currentFacet.size()>1) {
                 HasPathAndCentroid tmp = addFacetToPath(currentFacet,currentSection,shiftX,shiftY);
@@ -471,7 +567,7 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
         }
 
         // Paint the edges of the facet closest to the cursor position:
-        if (mouseInside && currentFacet==null) {
+        if (mouseInside && currentFacet==null && exclude==null) {
             Facet facet = controller.getClosestFacet();
             if (facet!=null) {
                 // Create a path around the node coordinates:
@@ -548,9 +644,14 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
             if (p==null) { continue; } // shouldn't happen, but I'll check for it anyway
             // Determine the painting colour for the node:
             Color col = getNodePaintingColor(nodeColorBy,node);
-            // Paint the node:
-            g2.setPaint(col);
-            PaintingUtils.paintPoint(g2,imageToPanel,p,nodeWidth,filled);
+            // Paint the node unless it is the node left out:
+            if (node==exclude) {
+                dragColor = col;
+                dragFilled = filled;
+            } else {
+                g2.setPaint(col);
+                PaintingUtils.paintPoint(g2,imageToPanel,p,nodeWidth,filled);
+            }
             // Add to the list of painted nodes and node points:
             paintedNodes.add(node);
             paintedNodePoints.add(p);
@@ -571,7 +672,7 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
         }
 
         // Paint circles around the nodes of the current facet being defined:
-        if (currentFacet!=null) {
+        if (paintCurrentFacet) {
             if (mode==ClickModeManager.MODE_DEFINE_TRI_FACETS) {
                 g2.setPaint(Color.WHITE);
             } else {
@@ -590,7 +691,7 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
         }
 
         // Paint circles around the nodes of the facet closest to the cursor position:
-        if (mouseInside && currentFacet==null) {
+        if (mouseInside && currentFacet==null && exclude==null) {
             Facet facet = controller.getClosestFacet();
             if (facet!=null) {
                 // Paint circles around the node coordinates:
@@ -656,7 +757,7 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
         
         // Paint a large circle around the origin node of the same colour as the node if it is present in those painted:
         Node originNode = controller.getOriginNode3D();
-        if (originNode!=null) {
+        if ( originNode!=null && originNode!=exclude ) {
             int i = paintedNodes.indexOf(originNode);
             if (i>=0) {
                 MyPoint2D p = shiftNode(originNode,currentSection,shiftX,shiftY);
@@ -674,7 +775,7 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
         
         // Paint a white circle around the current node (e.g. being moved or first in an edge being flipped):
         Node currentNode = controller.getCurrentNode();
-        if (currentNode!=null) {
+        if ( currentNode!=null && exclude==null ) {
             MyPoint2D p = shiftNode(currentNode,currentSection,shiftX,shiftY);
             if (p!=null) {
                 g2.setPaint(Color.WHITE);
@@ -684,7 +785,7 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
 
         // Paint a white circle around the node closest to the cursor position (e.g. or that being moved):
         MyPoint2D p = controller.getClosestNodePoint();
-        if (mouseInside && p!=null) {
+        if (mouseInside && p!=null && exclude==null) {
             g2.setPaint(Color.WHITE);
             PaintingUtils.paintPoint(g2,imageToPanel,p,2*nodeWidth,false); // not filled
 //            if (showPickingRadius) {
@@ -695,7 +796,7 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
 
         // Paint a white circle around the region closest to the cursor position:
         p = controller.getClosestRegionPoint();
-        if (mouseInside && p!=null) {
+        if (mouseInside && p!=null && exclude==null) {
             g2.setPaint(Color.WHITE);
             PaintingUtils.paintPoint(g2,imageToPanel,p,2*nodeWidth,false); // not filled
 //            if (showPickingRadius) {
@@ -706,8 +807,117 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
 
     }
 
-    // -------------------- Private Methods --------------------
+    /** Helper subroutine for the repaintNode method.
+     * Paints everything except a node being moved, and the facets containing it, into an image covering the visible panel region.
+     * The lists of painted nodes, facets etc. are rebuilt as for a full repaint.
+     * @return False if the node was not painted.
+     */
+    private boolean paintDragBackground(Node node) {
+        dragBackground = null;
+        Rectangle bounds = getVisibleRect();
+        if (bounds.isEmpty()) { return false; }
+        BufferedImage image = new BufferedImage(bounds.width,bounds.height,BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.translate(-bounds.x,-bounds.y);
+        paintScene(g2,node);
+        g2.dispose();
+        if (!paintedNodes.contains(node)) { return false; }
+        // Find the facets containing the node in the list of painted facets:
+        dragFacetIndices = new int[dragFacets.size()];
+        for (int i=0 ; i<dragFacets.size() ; i++ ) {
+            dragFacetIndices[i] = paintedFacets.indexOf(dragFacets.get(i));
+        }
+        dragBackground = image;
+        dragBounds = bounds;
+        return true;
+    }
 
+    /** Helper subroutine for the paintComponent method.
+     * Paints the cached image and then the node being moved, and the facets containing it, over that.
+     */
+    private void paintDrag(Graphics g) {
+
+        // Paint the cached image:
+        g.drawImage(dragBackground,dragBounds.x,dragBounds.y,null);
+
+        // Set some local variables:
+        Section currentSection = controller.getSelectedCurrentSection();
+        if (currentSection==null) { return; }
+        int shiftX = controller.getShiftingX();
+        int shiftY = controller.getShiftingY();
+        final int nodeWidth = controller.getPointWidth();
+        final int edgeWidth = controller.getLineWidth();
+        final int centroidWidth = (int)Math.ceil(nodeWidth/2.0); // centroids drawn half the node width
+        final float transparency = (float)controller.getTransparency();
+        int ndim = controller.numberOfDimensions();
+        int facetColorBy = controller.getFacetColorBy();
+
+        // Use Java2D graphics with the same styles as the paintScene method:
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER,transparency));
+        g2.setRenderingHint(
+                RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setStroke(new BasicStroke(edgeWidth)); // line style
+
+        // Paint the facets containing the node:
+        for (int i=0 ; i<dragFacets.size() ; i++ ) {
+            Facet facet = dragFacets.get(i);
+            HasPathAndCentroid tmp = addFacetToPath(facet,currentSection,shiftX,shiftY);
+            if (tmp==null) { continue; } // shouldn't happen, but I'll check for it anyway
+            paintFacet(g2,facet,tmp,facetColorBy,ndim,centroidWidth);
+        }
+
+        // Paint the node and a white circle around it (it is the node closest to the cursor while being moved):
+        MyPoint2D p = shiftNode(dirtyNode,currentSection,shiftX,shiftY);
+        if (p==null) { return; } // shouldn't happen, but I'll check for it anyway
+        g2.setPaint(dragColor);
+        PaintingUtils.paintPoint(g2,imageToPanel,p,nodeWidth,dragFilled);
+        if (mouseInside) {
+            g2.setPaint(Color.WHITE);
+            PaintingUtils.paintPoint(g2,imageToPanel,p,2*nodeWidth,false); // not filled
+        }
+
+    }
+
+    /** Helper subroutine for the paintScene and paintDrag methods.
+     * Paints the patch, edges and centroid of a facet from a path around its possibly shifted nodes.
+     */
+    private void paintFacet(Graphics2D g2, Facet facet, HasPathAndCentroid tmp, int facetColorBy, int ndim, int centroidWidth) {
+        // Close the path:
+        tmp.path.closePath();
+        // Transform the path from section to panel coordinates:
+        tmp.path.transform(imageToPanel);
+        // Determine the painting colour for the facet:
+        Color col = getFacetPaintingColor(facetColorBy,facet);
+        // Greate a filled, semi-transparent polygonal patch:
+        if (facet.size()>2) { // (no patch exists for edge-element facets)
+            g2.setPaint(col);
+            g2.fill(tmp.path);
+        }
+        // Draw the path (i.e. the facet edges):
+        if (ndim==3) {
+            col = controller.getEdgeColor();
+        }// else {
+        //    color = facet.getColor();
+        //}
+        g2.setPaint(col);
+        g2.draw(tmp.path);
+        // Draw a small point at the facet centroid:
+        if (ndim==2) {
+            col = controller.getEdgeColor();
+        }
+        g2.setPaint(col);
+        PaintingUtils.paintPoint(g2,imageToPanel,tmp.centroid,centroidWidth,true); // filled
+    }
+
+    /** Returns a panel rectangle covering a painted point (image pixel coordinates), with room for the node width. */
+    private Rectangle panelRectangle(MyPoint2D p) {
+        Point2D q = imageToPanel.transform(new Point2D.Double(p.getX(),p.getY()),null);
+        int w = controller.getPointWidth() + controller.getLineWidth() + 2; // HARDWIRE: a couple of pixels for antialiasing
+        return new Rectangle( (int)Math.floor(q.getX())-w , (int)Math.floor(q.getY())-w , 2*w+1 , 2*w+1 );
+    }
+    
     /** Helper subroutine for the paintComponent method.
      * Projects the node onto the current section (image pixel coordinates) and shifts as required for plotting.
      * @return A new MyPoint2D object holding the image pixel coordinates of the projected and possibly shifted node.
@@ -910,6 +1120,11 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
         @Override
         public void mouseClicked(MouseEvent e) {
             //System.out.println("Clicked");
+            // Check if the click was already passed on when the button was released:
+            if (clickSent) {
+                clickSent = false;
+                return;
+            }
             // Transform the clicked point:
             MyPoint2D p = new MyPoint2D(e.getPoint());
             p.transform(panelToImage); // transform from panel to section image pixel coordinates
@@ -925,16 +1140,36 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
             mouseInside = false;
             repaint();
         }
-//        @Override
-//        public void mousePressed (MouseEvent e) {
-//            // Tell the controller about the mouse press:
-//            controller.mousePress(e);
-//        }
-//        @Override
-//        public void mouseReleased (MouseEvent e) {
-//            // Tell the controller about the mouse release:
-//            controller.mouseRelease();
-//        }
+        @Override
+        public void mousePressed (MouseEvent e) {
+            pressPoint = e.getPoint();
+            dragStarted = false;
+            jittered = false;
+            clickSent = false;
+            // Transform the pressed point:
+            MyPoint2D p = new MyPoint2D(e.getPoint());
+            p.transform(panelToImage);
+            // Tell the controller about the mouse press:
+            controller.mousePress(p);
+        }
+        @Override
+        public void mouseReleased (MouseEvent e) {
+            // Transform the release point:
+            MyPoint2D p = new MyPoint2D(e.getPoint());
+            p.transform(panelToImage);
+            // Tell the controller about the mouse release:
+            controller.mouseRelease(p);
+            // Java doesn't report a click if the cursor moved at all so treat a slightly jittered click as a click:
+            if ( jittered && !dragStarted ) {
+                p = new MyPoint2D(pressPoint);
+                p.transform(panelToImage);
+                controller.mouseClick(p);
+                clickSent = true; // in case Java reports the click as well
+            }
+            pressPoint = null;
+            dragStarted = false;
+            jittered = false;
+        }
     }
 
     /** Listens for mouse movement. */
@@ -951,6 +1186,14 @@ public final class SectionImagePanel extends ImagePanel implements SessionIO { /
         @Override
         public void mouseDragged(MouseEvent e) {
             //System.out.println("Dragged");
+            // Ignore small movements after the mouse press (they are treated as a click when the button is released):
+            if ( pressPoint!=null && !dragStarted ) {
+                if ( pressPoint.distance(e.getPoint()) <= DRAG_THRESHOLD ) {
+                    jittered = true;
+                    return;
+                }
+                dragStarted = true;
+            }
             // Transform the current cursor location:
             MyPoint2D p = new MyPoint2D(e.getPoint());
             p.transform(panelToImage);
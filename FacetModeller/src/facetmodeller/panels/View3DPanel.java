@@ -6,9 +6,12 @@ import facetmodeller.VOI;
 import facetmodeller.groups.Group;
 import facetmodeller.groups.GroupVector;
 import facetmodeller.gui.ClickModeManager;
+import facetmodeller.gui.FrameBuffer;
 import facetmodeller.gui.Projector3D;
 import facetmodeller.gui.SceneInfo;
+import facetmodeller.gui.TiledZBuffer3D;
 import facetmodeller.gui.ZBuffer3D;
+import facetmodeller.gui.ZBufferPainter;
 import facetmodeller.gui.ZoomerDefault;
 import static facetmodeller.panels.RadioButtonsPanel.COLOR_FACETS_BY_GROUP;
 import static facetmodeller.panels.RadioButtonsPanel.COLOR_FACETS_BY_MARKER;
@@ -43,6 +46,7 @@ import java.awt.geom.GeneralPath;
 import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.util.Arrays;
 
 /** A 3D view panel using simple z-buffer approach.
  * @author Peter Lelievre
@@ -54,10 +58,18 @@ public class View3DPanel extends PanningPanel implements SessionIO {
 
     private final FacetModeller controller;
     private ZoomerDefault zoomer = null;
-    private ZBuffer3D zbuf = null; // z-buffer object for painting the scene onto an image
-    private MyPoint3D[] projectedPoints = null; // working object for projecting nodes onto the current view
+    private ZBufferPainter zbuf = null; // z-buffer object for painting the scene onto an image
     private boolean drawn; // used to signal to the monitors that the scene is drawn
     
+    // Working objects reused for each frame (so that painting creates little garbage):
+    private FrameBuffer frameBuffer = null; // replaced when the panel size changes
+    private TiledZBuffer3D tiledBuffer = null; // painter for large scenes using frameBuffer
+    private double[] projectedCoords = new double[0]; // projected coordinates (x,y,z) for each node, indexed by node ID
+    private boolean[] projected = new boolean[0]; // false for nodes behind the camera or on uncalibrated sections
+    private MyPoint3D[] projectedPoints = new MyPoint3D[0]; // point objects holding the projected coordinates for painting
+    private MyPoint3D[][] facetPoints = new MyPoint3D[0][]; // facet point arrays indexed by facet size (single buffer only)
+    private final float[] hsb = new float[3];
+    
     // Properties required for projection:
     //private final double cameraDistance=2000.0; // distance from viewer to screen in pixels (approximate)
     //private MyPoint3D spaceOrigin; // the origin of the model (spatial coordinates)
@@ -81,6 +93,9 @@ public class View3DPanel extends PanningPanel implements SessionIO {
     
     // Drawing hardwires: TODO: remove these hardwires
     private final int AXIS_LENGTH = 25; // length in pixels
+    private final int TILED_MIN_PRIMITIVES = 20000; // scenes with at least this many nodes and facets are painted in parallel tiles
+    private final int SHADED_COLORS = 4096; // number of shaded facet colours remembered (must be a power of two)
+    private final Color[] shadedColors = new Color[SHADED_COLORS]; // shaded facet colours (see the getShadedColor method)
     
     // ------------------- Constructor ------------------
 
@@ -240,9 +255,6 @@ public class View3DPanel extends PanningPanel implements SessionIO {
         // Paint background:
         super.paintComponent(g);
         
-        // Clear the list of projected nodes:
-        projectedPoints = null;
-        
         // Calculate the properties required for projection:
         SceneInfo info = controller.getSceneInfo3D();
         if (info==null) { return; } // no voi or no nodes in plc
@@ -272,21 +284,21 @@ public class View3DPanel extends PanningPanel implements SessionIO {
         // Project all the nodes and reset the node IDs:
         ModelManager model = controller.getModelManager();
         int n = model.numberOfNodes();
-        projectedPoints = new MyPoint3D[n];
+        ensureProjectionCapacity(n);
         for (int i=0 ; i<n; i++ ) { // loop over each node
             Node node = model.getNode(i);
-            // Set the node ID equal to i so I can use the ID's as indices into the projectedPoints array:
+            // Set the node ID equal to i so I can use the ID's as indices into the projection arrays:
             node.setID(i);
-            // Transform the point to image coordinates:
-            MyPoint3D p3 = node.getPoint3D();
-            MyPoint3D p;
-            if (p3==null) { // section not calibrated
-                p = null;
-            } else {
-                p = spaceToImage(p3); // p is a deep copy of node.getPoint3D()
+            // Transform the point to image coordinates (false if the section is not calibrated or the node is behind the camera):
+            int k = 3*i;
+            boolean ok = ( node.getSpatialCoordinates(projectedCoords,k) && projector.spaceToImage(projectedCoords,k) );
+            projected[i] = ok;
+            if (ok) {
+                MyPoint3D p = projectedPoints[i];
+                p.setX(projectedCoords[k]);
+                p.setY(projectedCoords[k+1]);
+                p.setZ(projectedCoords[k+2]);
             }
-            // Save the transformed point in the list:
-            projectedPoints[i] = p;
         }
         
         // If rotating then I'll only draw minimal information using 2D graphics,
@@ -315,7 +327,22 @@ public class View3DPanel extends PanningPanel implements SessionIO {
         Graphics2D g2 = (Graphics2D) g;
         MyPoint3D pt1 = getPt1();
         if (pt1==null) {
-           zbuf = new ZBuffer3D( w, h, -Double.MAX_VALUE, getBackground() );
+            // The frame buffer is reused until the panel size changes:
+            if ( frameBuffer==null || frameBuffer.getWidth()!=w || frameBuffer.getHeight()!=h ) {
+                frameBuffer = new FrameBuffer(w,h);
+                tiledBuffer = null;
+            }
+            // Large scenes are painted in parallel tiles if more than one processor is available:
+            if ( Runtime.getRuntime().availableProcessors()>1 && model.numberOfNodes()+model.numberOfFacets()>=TILED_MIN_PRIMITIVES ) {
+                if (tiledBuffer==null) {
+                    tiledBuffer = new TiledZBuffer3D( frameBuffer, -Double.MAX_VALUE, getBackground() );
+                } else {
+                    tiledBuffer.clear( -Double.MAX_VALUE, getBackground() );
+                }
+                zbuf = tiledBuffer;
+            } else {
+                zbuf = new ZBuffer3D( frameBuffer, -Double.MAX_VALUE, getBackground() );
+            }
         } else {
             g2.setRenderingHint(
                 RenderingHints.KEY_ANTIALIASING,
@@ -359,8 +386,7 @@ public class View3DPanel extends PanningPanel implements SessionIO {
                         boolean ok = true;
                         for (int k=0; k<nn ; k++) { // loop over each node in the facet
                             Node node = nodes.get(k);
-                            MyPoint3D p = node.getPoint3D();
-                            if (p==null) { ok=false; break; } // if the node's section is not calibrated
+                            if (!projected[node.getID()]) { ok=false; break; } // if the node's section is not calibrated, or the node is behind the camera
                             if (!showAll) {
                                 // Make sure the facet belongs to no other sections than those selected:
                                 Section s = node.getSection();
@@ -369,33 +395,26 @@ public class View3DPanel extends PanningPanel implements SessionIO {
                             }
                         }
                         if (!ok) { continue; }
-                        // Place the required transformed points into a new object:
+                        // Place the required transformed points into an array (the tiled painter keeps the array until it paints):
                         n = facet.size();
-                        MyPoint3D[] pts = new MyPoint3D[n];
+                        MyPoint3D[] pts = ( zbuf==tiledBuffer ? new MyPoint3D[n] : getFacetPoints(n) );
                         for (int k=0 ; k<n ; k++ ) { // loop over each node in the facet
-                            int id = facet.getNode(k).getID(); // index into projectedPoints
+                            int id = facet.getNode(k).getID(); // index into the projection arrays
                             pts[k] = projectedPoints[id];
-                            if (pts[k]==null) { // node is behind camera, or its section is not calibrated, so don't paint the facet
-                                ok = false;
-                                break;
-                            }
                         }
-                        if (!ok) { continue; }
                         // Calculate the shading:
-                        MyPoint3D v = facet.getNormal();
-                        if (v==null) { continue; }
-                        v = v.deepCopy(); // normalized
+                        MyPoint3D v = facet.getNormal(); // normalized
                         if (v==null) { continue; }
-                        v.rotate(projector.getRotationMatrix()); // rotated into projected coordinates
-                        double d = Math.abs(v.getZ()); // dotted with the z axis (direction not important)
+                        Matrix3D m = projector.getRotationMatrix();
+                        double d = m.get(2,0)*v.getX() + m.get(2,1)*v.getY() + m.get(2,2)*v.getZ(); // z component of the normal rotated into projected coordinates
+                        d = Math.abs(d); // dotted with the z axis (direction not important)
                         d = 1.0 - (1.0-d)*0.8; // too dark otherwise
                         // Determine the painting colour for the facet:
                         Color col = getFacetPaintingColor(facetColorBy,facet);
                         // Apply the shading to the painting colour:
-                        float[] hsb = new float[3];
                         Color.RGBtoHSB(col.getRed(),col.getGreen(),col.getBlue(),hsb);
                         hsb[2] *= (float)d; // d is on [0,1]
-                        col = Color.getHSBColor(hsb[0],hsb[1],hsb[2]);
+                        col = getShadedColor( Color.HSBtoRGB(hsb[0],hsb[1],hsb[2]) );
                         // Process the facet through the zbuffer:
                         Color faceCol = null;
                         Color edgeCol;
@@ -465,19 +484,16 @@ public class View3DPanel extends PanningPanel implements SessionIO {
                 if (s==null) { continue; } // shouldn't be possible
                 if (!s.isCalibrated()) { continue; } // not possible but I check for it anyway
                 if ( !showAll && !s.equals(currentSection) && otherSections!=null && !otherSections.contains(s) ) { continue; }
-                int id = node.getID(); // index into projectedPoints
+                int id = node.getID(); // index into the projection arrays
+                if (!projected[id]) { continue; } // only paint if node is in front of the camera, and if its section is calibrated
                 // Determine the painting colour for the node:
                 Color col = getNodePaintingColor(nodeColorBy,node);
                 // Paint the node:
                 if (pt1==null) {
-                    if ( projectedPoints[id] != null ) { // only paint if node is in front of the camera, and if its section is calibrated
-                        zbuf.putNode(projectedPoints[id],col,controller.getPointWidth());
-                    }
+                    zbuf.putNode(projectedPoints[id],col,controller.getPointWidth());
                 } else {
-                    MyPoint3D p = spaceToImage(node.getPoint3D());
-                    if (p==null) { continue; } // to next iteration of for j
                     g2.setPaint(col);
-                    g2.fillOval( (int)p.getX() - w/2 , (int)p.getY() - w/2 , w , w );
+                    g2.fillOval( (int)projectedCoords[3*id] - w/2 , (int)projectedCoords[3*id+1] - w/2 , w , w );
                 }
             } // for j
         } // for i
@@ -802,6 +818,38 @@ public class View3DPanel extends PanningPanel implements SessionIO {
     
     // -------------------- Private Methods --------------------
     
+    /** Enlarges the projection arrays if required (with some room for more nodes so they aren't enlarged too often). */
+    private void ensureProjectionCapacity(int n) {
+        int n0 = projected.length;
+        if (n<=n0) { return; }
+        int n1 = Math.max( n , n0 + n0/2 );
+        projectedCoords = new double[3*n1];
+        projected = new boolean[n1];
+        projectedPoints = Arrays.copyOf(projectedPoints,n1);
+        for (int i=n0 ; i<n1 ; i++ ) {
+            projectedPoints[i] = new MyPoint3D(0,0,0);
+        }
+    }
+    
+    /** Returns a working array for the points of a facet of size n (only for use with the single z-buffer). */
+    private MyPoint3D[] getFacetPoints(int n) {
+        if (n>=facetPoints.length) { facetPoints = Arrays.copyOf(facetPoints,n+1); }
+        if (facetPoints[n]==null) { facetPoints[n] = new MyPoint3D[n]; }
+        return facetPoints[n];
+    }
+    
+    /** Returns a colour object for a shaded facet colour, reusing the object created for the same colour
+     * on an earlier facet or frame if it is still remembered. */
+    private Color getShadedColor(int rgb) {
+        int k = ( rgb ^ (rgb>>>12) ) & (SHADED_COLORS-1);
+        Color col = shadedColors[k];
+        if ( col==null || col.getRGB()!=rgb ) {
+            col = new Color(rgb);
+            shadedColors[k] = col;
+        }
+        return col;
+    }
+    
     // Convert 3D space coordinate to projected image coordinate:
     private MyPoint3D spaceToImage(MyPoint3D p) {
         return projector.spaceToImage(p);
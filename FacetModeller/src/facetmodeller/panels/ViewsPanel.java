@@ -3,6 +3,7 @@ package facetmodeller.panels;
 import facetmodeller.FacetModeller;
 import facetmodeller.gui.Projector3D;
 import facetmodeller.plc.FacetVector;
+import facetmodeller.plc.Node;
 import facetmodeller.plc.NodeVector;
 import facetmodeller.plc.RegionVector;
 import fileio.SessionIO;
@@ -79,6 +80,7 @@ public final class ViewsPanel extends JPanel implements SessionIO {
     public void setZoomFactor2D(double d) { panel2D.setZoomFactor(d); }
     public void setZoomFactor3D(double d) { panel3D.setZoomFactor(d); }
     public void redraw2D() { panel2D.redraw(); }
+    public void redrawNode2D(Node node) { panel2D.redrawNode(node); }
     public Color getBackgroundColor() { return panel2D.getBackgroundColor(); }
     public void setBackgroundColor(Color col) {
         panel2D.setBackgroundColor(col);
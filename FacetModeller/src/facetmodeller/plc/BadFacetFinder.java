@@ -0,0 +1,208 @@
+package facetmodeller.plc;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Finds the "bad" facets in a PLC (see the PLC.findBadFacets method).
+ * The checks on individual facets are independent of each other so they are performed in parallel
+ * on the common fork-join pool, over ranges of facet indices.
+ * The checks read from a snapshot of the PLC (see the PLCSnapshot class) so they don't touch the model.
+ * Duplicate facets are found by hashing the sorted node indices of each facet, so the facets in the model
+ * are not reordered. The first facet (in model order) of a set of duplicates is kept.
+ * @author Peter Lelievre
+ */
+public class BadFacetFinder {
+
+    // -------------------- Properties -------------------
+
+    private static final double TOL = 1.0E-6; // HARDWIRE: tolerance for the colinearity and planarity checks
+    private static final int MIN_RANGE = 2048; // HARDWIRE: ranges of fewer facets than this are not split further
+
+    private static final byte OK = 0; // passed the node checks (may still be a duplicate)
+    private static final byte BAD = 1; // failed one of the per-facet checks
+
+    private final PLCSnapshot plc;
+    private final int nDimensions;
+    private final int[][] keys; // sorted node indices for each facet (null for bad facets)
+    private final byte[] status; // result of the per-facet checks
+
+    // ------------------- Constructor ------------------
+
+    /**
+     * @param snapshot A snapshot of the PLC.
+     * @param nDimensions The required number of unique nodes in a facet.
+     */
+    public BadFacetFinder(PLCSnapshot snapshot, int nDimensions) {
+        plc = snapshot;
+        this.nDimensions = nDimensions;
+        int nf = plc.numberOfFacets();
+        keys = new int[nf][];
+        status = new byte[nf];
+    }
+
+    // -------------------- Public Methods -------------------
+
+    /** Performs the checks.
+     * @return The bad facets, in model order.
+     */
+    public FacetVector find() {
+
+        int nf = plc.numberOfFacets();
+
+        // Perform the per-facet checks in parallel:
+        ForkJoinPool.commonPool().invoke(new CheckTask(0,nf));
+
+        // Look for duplicate facets (this is quick so it is done serially to keep the first of each set of duplicates):
+        HashMap<FacetKey,FacetKey> seen = new HashMap<>(2*nf);
+        for (int i=0 ; i<nf ; i++ ) {
+            if (keys[i]==null) { continue; }
+            FacetKey key = new FacetKey(keys[i]);
+            if (seen.putIfAbsent(key,key)!=null) { status[i] = BAD; }
+            keys[i] = null; // no longer required
+        }
+
+        // Collect the bad facets:
+        FacetVector bad = new FacetVector(true);
+        for (int i=0 ; i<nf ; i++ ) {
+            if (status[i]==BAD) { bad.add(plc.getFacet(i)); }
+        }
+        return bad;
+
+    }
+
+    // -------------------- Private Methods -------------------
+
+    /** Performs the per-facet checks on a single facet.
+     * @param i The facet index.
+     */
+    private void check(int i) {
+
+        int n = plc.facetSize(i); // number of nodes (including possible duplicates)
+
+        // ---------------- DUPLICATE NODE INDICES; NOT ENOUGH UNIQUE NODES ----------------
+
+        // Sort the node indices so that any duplicates are adjacent:
+        int[] ids = new int[n];
+        for (int j=0 ; j<n ; j++ ) {
+            ids[j] = plc.getFacetNode(i,j);
+        }
+        Arrays.sort(ids);
+        int u = n; // number of unique nodes
+        for (int j=1 ; j<n ; j++ ) {
+            if (ids[j]==ids[j-1]) { u--; }
+        }
+        if ( u!=n || u<nDimensions ) {
+            status[i] = BAD;
+            return;
+        }
+
+        // The sorted indices are used later to look for duplicate facets:
+        keys[i] = ids;
+
+        // ---------------- LINEAR OR NON-PLANAR POLYGONAL FACETS (n>3) ----------------
+
+        // Check for trivial case (not enough nodes):
+        if (n<=3) { return; } // non-planar facets can't exist unless n>3
+
+        // Check we can obtain the spatial location of all nodes in the facet:
+        for (int j=0 ; j<n ; j++ ) {
+            if ( ids[j]<0 || !plc.hasPoint(ids[j]) ) { return; }
+        }
+
+        // Calculate the vector between vertices 0 and 1:
+        int k0 = plc.getFacetNode(i,0);
+        int k1 = plc.getFacetNode(i,1);
+        double x0 = plc.getX(k0);
+        double y0 = plc.getY(k0);
+        double z0 = plc.getZ(k0);
+        double v1x = plc.getX(k1) - x0;
+        double v1y = plc.getY(k1) - y0;
+        double v1z = plc.getZ(k1) - z0;
+
+        // Find another vector that is not parallel to v1 (the cross product of two parallel vectors is a zero vector):
+        double c1x=0.0, c1y=0.0, c1z=0.0;
+        double d = 0.0;
+        int j = 2;
+        while ( d<TOL && j<n ) {
+            int k = plc.getFacetNode(i,j);
+            double v2x = plc.getX(k) - x0;
+            double v2y = plc.getY(k) - y0;
+            double v2z = plc.getZ(k) - z0;
+            c1x = v1y*v2z - v1z*v2y;
+            c1y = v1z*v2x - v1x*v2z;
+            c1z = v1x*v2y - v1y*v2x;
+            d = Math.sqrt( c1x*c1x + c1y*c1y + c1z*c1z );
+            j++;
+        }
+
+        // Check for linear facet (could not find another vector non-parallel to v1):
+        if (d<TOL) {
+            status[i] = BAD;
+            return;
+        }
+
+        // Check the remaining vertices: c1 is a normal vector for the plane and the normal vector
+        // calculated for every other vertex should be parallel (or antiparallel) to it:
+        for ( ; j<n ; j++ ) {
+            int k = plc.getFacetNode(i,j);
+            double v2x = plc.getX(k) - x0;
+            double v2y = plc.getY(k) - y0;
+            double v2z = plc.getZ(k) - z0;
+            double c2x = v1y*v2z - v1z*v2y;
+            double c2y = v1z*v2x - v1x*v2z;
+            double c2z = v1x*v2y - v1y*v2x;
+            double cx = c1y*c2z - c1z*c2y;
+            double cy = c1z*c2x - c1x*c2z;
+            double cz = c1x*c2y - c1y*c2x;
+            if ( Math.sqrt( cx*cx + cy*cy + cz*cz ) >= TOL ) {
+                status[i] = BAD; // non-planar facet
+                return;
+            }
+        }
+
+    }
+
+    // -------------------- Private Classes -------------------
+
+    /** Performs the per-facet checks over a range of facet indices, splitting the range in two if it is large. */
+    private class CheckTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int start, end; // the range of facet indices (end is exclusive)
+        public CheckTask(int i1, int i2) {
+            start = i1;
+            end = i2;
+        }
+        @Override
+        protected void compute() {
+            if ( end-start <= MIN_RANGE ) {
+                for (int i=start ; i<end ; i++ ) {
+                    check(i);
+                }
+                return;
+            }
+            int mid = (start+end) >>> 1;
+            invokeAll( new CheckTask(start,mid) , new CheckTask(mid,end) );
+        }
+    }
+
+    /** The canonical (sorted) node indices of a facet, for hashing. */
+    private static class FacetKey {
+        private final int[] ids;
+        private final int hash;
+        public FacetKey(int[] i) {
+            ids = i;
+            hash = Arrays.hashCode(i);
+        }
+        @Override
+        public int hashCode() { return hash; }
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FacetKey)) { return false; }
+            FacetKey k = (FacetKey)o;
+            return ( hash==k.hash && Arrays.equals(ids,k.ids) );
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+package facetmodeller.plc;
+
+import java.util.HashMap;
+
+/** A map from facet edges to the facets that contain them.
+ * An edge is an unordered pair of distinct nodes that are adjacent in a facet definition
+ * (each consecutive pair, including the last and first, for facets with three or more nodes,
+ * or the single pair for a two-node facet). Nodes are compared by identity.
+ * The PLC maintains one of these so that neighbour and boundary queries are constant time per edge.
+ * If the nodes in a facet are changed in place then the facet must be removed from the index before
+ * the change and added again afterwards.
+ * @author Peter Lelievre
+ */
+public class EdgeIndex {
+
+    // -------------------- Properties -------------------
+
+    private final HashMap<Edge,Edge> edges = new HashMap<>(); // each edge is its own key (only the nodes are used for hashing)
+
+    // ------------------- Constructors ------------------
+
+    public EdgeIndex() {}
+
+    /** Constructs an index of the edges in the supplied facets.
+     * @param facets */
+    public EdgeIndex(FacetVector facets) {
+        addAll(facets);
+    }
+
+    // -------------------- Public Methods -------------------
+
+    /** Clears the index. */
+    public void clear() {
+        edges.clear();
+    }
+
+    /** Returns the number of distinct edges in the index.
+     * @return  */
+    public int size() {
+        return edges.size();
+    }
+
+    /** Adds the edges of a facet to the index.
+     * @param f */
+    public void add(Facet f) {
+        NodeVector nodes = f.getNodes();
+        int n = numberOfEdges(nodes);
+        for (int j=0 ; j<n ; j++ ) {
+            Node n1 = nodes.get(j);
+            Node n2 = nodes.get( (j+1) % nodes.size() );
+            if (n1==n2) { continue; } // zero-length edge
+            Edge probe = new Edge(n1,n2);
+            Edge edge = edges.get(probe);
+            if (edge==null) {
+                edges.put(probe,probe);
+                edge = probe;
+            }
+            edge.addFacet(f);
+        }
+    }
+
+    /** Adds the edges of several facets to the index.
+     * @param facets */
+    public void addAll(FacetVector facets) {
+        for (int i=0 ; i<facets.size() ; i++ ) {
+            add(facets.get(i));
+        }
+    }
+
+    /** Removes the edges of a facet from the index.
+     * The facet nodes must be the same as when the facet was added.
+     * @param f */
+    public void remove(Facet f) {
+        NodeVector nodes = f.getNodes();
+        int n = numberOfEdges(nodes);
+        for (int j=0 ; j<n ; j++ ) {
+            Node n1 = nodes.get(j);
+            Node n2 = nodes.get( (j+1) % nodes.size() );
+            if (n1==n2) { continue; } // zero-length edge
+            Edge probe = new Edge(n1,n2);
+            Edge edge = edges.get(probe);
+            if (edge==null) { continue; } // shouldn't happen
+            edge.removeFacet(f);
+            if (edge.numFacets==0) { edges.remove(probe); }
+        }
+    }
+
+    /** Returns the number of facets containing the edge between two nodes.
+     * @param n1
+     * @param n2
+     * @return  */
+    public int numberOfFacets(Node n1, Node n2) {
+        Edge edge = edges.get(new Edge(n1,n2));
+        if (edge==null) { return 0; }
+        return edge.numFacets;
+    }
+
+    /** Returns the facets containing the edge between two nodes.
+     * @param n1
+     * @param n2
+     * @return A new vector (empty if the nodes don't define an edge).
+     */
+    public FacetVector getFacets(Node n1, Node n2) {
+        FacetVector facets = new FacetVector();
+        Edge edge = edges.get(new Edge(n1,n2));
+        if (edge==null) { return facets; }
+        for (int i=0 ; i<edge.numFacets ; i++ ) {
+            facets.add(edge.facets[i]); // duplicates are not added
+        }
+        return facets;
+    }
+
+    /** Returns true if the supplied facet has an edge not shared with any other facet in the index.
+     * @param f
+     * @return  */
+    public boolean isBoundaryFacet(Facet f) {
+        NodeVector nodes = f.getNodes();
+        int n = numberOfEdges(nodes);
+        for (int j=0 ; j<n ; j++ ) {
+            if ( numberOfFacets( nodes.get(j), nodes.get( (j+1) % nodes.size() ) ) == 1 ) { return true; }
+        }
+        return false;
+    }
+
+    // -------------------- Static Public Methods -------------------
+
+    /** Returns the number of edges for a facet with the supplied nodes.
+     * The jth edge joins node j and node (j+1) modulo the number of nodes.
+     * @param nodes
+     * @return  */
+    public static int numberOfEdges(NodeVector nodes) {
+        int n = nodes.size();
+        if (n<2) { return 0; }
+        if (n==2) { return 1; }
+        return n;
+    }
+
+    // -------------------- Private Classes -------------------
+
+    /** An edge and the facets that contain it. */
+    private static class Edge {
+        private final Node node1, node2;
+        private Facet[] facets = null;
+        private int numFacets = 0;
+        public Edge(Node n1, Node n2) {
+            node1 = n1;
+            node2 = n2;
+        }
+        public void addFacet(Facet f) {
+            if (facets==null) {
+                facets = new Facet[2]; // most edges are shared by two facets
+            } else if (numFacets==facets.length) {
+                Facet[] tmp = new Facet[2*numFacets];
+                System.arraycopy(facets,0,tmp,0,numFacets);
+                facets = tmp;
+            }
+            facets[numFacets++] = f;
+        }
+        public void removeFacet(Facet f) {
+            for (int i=0 ; i<numFacets ; i++ ) {
+                if (facets[i]!=f) { continue; }
+                numFacets--;
+                System.arraycopy(facets,i+1,facets,i,numFacets-i);
+                facets[numFacets] = null;
+                return;
+            }
+        }
+        @Override
+        public int hashCode() {
+            // Symmetric in the two nodes so that the edge is unordered:
+            return System.identityHashCode(node1) ^ System.identityHashCode(node2);
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Edge)) { return false; }
+            Edge e = (Edge)o;
+            return ( ( node1==e.node1 && node2==e.node2 ) || ( node1==e.node2 && node2==e.node1 ) );
+        }
+    }
+
+}
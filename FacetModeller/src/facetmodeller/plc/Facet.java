@@ -8,6 +8,10 @@ import java.awt.Color;
 
 /** A polygonal facet of connected nodes.
  * A facet is connected to a group and possibly many sections.
+ * Geometry derived from the node positions (centroid, normal, area and bounding box) is cached and recalculated
+ * when required. The cache is checked against a stamp formed from the geometry versions of the nodes
+ * (see Node.getGeometryVersion) so it is recalculated if any node moves or its section calibration changes.
+ * If the nodes are changed in place through getNodes() then nodesChanged() must be called.
  * @author Peter Lelievre
  */
 public class Facet extends HasGroup {
@@ -16,8 +20,13 @@ public class Facet extends HasGroup {
 
     private boolean boundaryMarker = false;
     private final NodeVector nodes = new NodeVector();
-//    private MyPoint3D centroid = null; // centroid point
+    // Cached derived geometry:
+    private long geometryStamp = NOT_CALCULATED; // sum of the node geometry versions when the geometry was calculated
+    private MyPoint3D centroid = null; // centroid point
     private MyPoint3D normal = null; // normal vector
+    private double area = 0.0;
+    private MyPoint3D boundsMin = null, boundsMax = null; // bounding box
+    private static final long NOT_CALCULATED = -1; // node geometry versions are never negative
 //    private final SectionVector sections = new SectionVector();
 
     // ------------------- Constructors ------------------
@@ -47,19 +56,44 @@ public class Facet extends HasGroup {
 
     public Color getColor() { return getGroup().getFacetColor(); }
     
+    /** Returns the centroid of the facet (or null if any node has no 3D position).
+     * The object returned is cached and should not be changed.
+     * @return  */
     public MyPoint3D getCentroid() {
-        // Recalculate centroid if required:
-        //if ( centroid == null ) { calculateCentroid(); }
-        //return centroid;
-        // Always recalculate the centroid in case the node coordinates or their section calibration changes:
-        return calculateCentroid();
+        updateGeometry();
+        return centroid;
     }
     
+    /** Returns the normalized normal vector for the facet
+     * (or null if the facet has fewer than three nodes, any node has no 3D position or the nodes are colinear).
+     * The object returned is cached and should not be changed.
+     * @return  */
     public MyPoint3D getNormal() {
-        // Recalculate normal if required:
-        if ( normal == null ) { calculateNormal(); }
+        updateGeometry();
         return normal;
-        //return calculateNormal();
+    }
+    
+    /** Returns the area of the facet (zero if the facet has fewer than three nodes or any node has no 3D position).
+     * @return  */
+    public double getArea() {
+        updateGeometry();
+        return area;
+    }
+    
+    /** Returns the minimum coordinates of the facet bounding box (or null if any node has no 3D position).
+     * The object returned is cached and should not be changed.
+     * @return  */
+    public MyPoint3D getMinimumLimits() {
+        updateGeometry();
+        return boundsMin;
+    }
+    
+    /** Returns the maximum coordinates of the facet bounding box (or null if any node has no 3D position).
+     * The object returned is cached and should not be changed.
+     * @return  */
+    public MyPoint3D getMaximumLimits() {
+        updateGeometry();
+        return boundsMax;
     }
     
     // -------------------- Setters -------------------
@@ -69,6 +103,12 @@ public class Facet extends HasGroup {
     // -------------------- Public Methods -------------------
     
     public void toggleBoundaryMarker() { boundaryMarker = !boundaryMarker; }
+    
+    /** Discards the cached derived geometry.
+     * Must be called if the nodes are changed in place through getNodes(). */
+    public void nodesChanged() {
+        geometryStamp = NOT_CALCULATED;
+    }
 
     public int size() {
         return nodes.size();
@@ -96,16 +136,14 @@ public class Facet extends HasGroup {
         if (nodes.contains(n)) { return; }
         // Add the node to the list:
         nodes.add(n);
-        // Nullify the centroid and normal so they will be recalculated (when required):
-        //centroid = null;
-        normal = null;
+        // Make sure the derived geometry will be recalculated (when required):
+        nodesChanged();
     }
 
     public void addNodes(NodeVector n) {
         nodes.addAll(n);
-        // Nullify the centroid and normal so they will be recalculated (when required):
-        //centroid = null;
-        normal = null;
+        // Make sure the derived geometry will be recalculated (when required):
+        nodesChanged();
     }
 
 //    public void addSection(Section s) {
@@ -115,22 +153,19 @@ public class Facet extends HasGroup {
 
     public void clear() {
         nodes.clear();
-        //centroid = null;
-        normal = null;
+        nodesChanged();
     }
 
     public void removeNode(Node n) {
         nodes.remove(n);
-        // Nullify the centroid and normal so they will be recalculated (when required):
-        //centroid = null;
-        normal = null;
+        // Make sure the derived geometry will be recalculated (when required):
+        nodesChanged();
     }
 
     public void removeLastNode() {
         nodes.removeLast();
-        // Nullify the centroid and normal so they will be recalculated (when required):
-        //centroid = null;
-        normal = null;
+        // Make sure the derived geometry will be recalculated (when required):
+        nodesChanged();
     }
 
 //    public void removeSection(Section s) {
@@ -222,9 +257,8 @@ public class Facet extends HasGroup {
     public void sortNodesByIDs() {
         // Sort the nodes by their ID value:
         nodes.sortByIDs();
-        // Nullify the centroid and normal so they will be recalculated (when required):
-        //centroid = null;
-        normal = null;
+        // Make sure the derived geometry will be recalculated (when required):
+        nodesChanged();
     }
 
     /* Returns true if the vector intersects the supplied facet.
@@ -265,35 +299,80 @@ public class Facet extends HasGroup {
     
     // -------------------- Private Methods -------------------
     
+    /** Recalculates the derived geometry if any node has moved since it was last calculated. */
+    private void updateGeometry() {
+        // Check if the cached geometry is up to date:
+        int n = size();
+        long stamp = 0;
+        for (int i=0 ; i<n ; i++ ) {
+            stamp += getNode(i).getGeometryVersion(); // the sum increases if any node version increases
+        }
+        if (stamp==geometryStamp) { return; }
+        geometryStamp = stamp;
+        // Get the node points once:
+        centroid = null;
+        normal = null;
+        area = 0.0;
+        boundsMin = null;
+        boundsMax = null;
+        if (n<1) { return; }
+        MyPoint3D[] pts = new MyPoint3D[n];
+        for (int i=0 ; i<n ; i++ ) {
+            pts[i] = getNode(i).getPoint3D();
+            if (pts[i]==null) { return; } // section might not be calibrated
+        }
+        // Calculate the derived geometry:
+        centroid = calculateCentroid(pts);
+        boundsMin = pts[0].deepCopy();
+        boundsMax = pts[0].deepCopy();
+        for (int i=1 ; i<n ; i++ ) {
+            boundsMin.min(pts[i]);
+            boundsMax.max(pts[i]);
+        }
+        area = calculateArea(pts);
+        normal = calculateNormal(pts);
+    }
+    
     /** Calculates the centroid of the facet.
      */
-    private MyPoint3D calculateCentroid() {
+    private static MyPoint3D calculateCentroid(MyPoint3D[] pts) {
         // TODO: develop a more robust approach for general planar polygons
-        // Check number of nodes:
-        int n = size();
-        if (n<1) { return null; }
         // The following is an approximation that just finds the average coordinate values.
         // This will hold for a 2D edge or 3D triangle.
+        int n = pts.length;
         MyPoint3D centroid = MyPoint3D.zero(); // initialization to zero before summation
         for (int i=0 ; i<n ; i++) { // loop over each node
-            MyPoint3D p = getNode(i).getPoint3D(); // 3D coordinates of current node
-            if (p==null) { return null; }
-            centroid.plus(p); // sum of node coordinates
+            centroid.plus(pts[i]); // sum of node coordinates
         }
         centroid.divide(n); // average of node coordinates
         return centroid;
     }
     
+    /** Calculates the area of a planar polygonal facet.
+     * Half the length of the sum of the cross products of the consecutive vertex positions (Newell's method).
+     */
+    private static double calculateArea(MyPoint3D[] pts) {
+        int n = pts.length;
+        if (n<3) { return 0.0; }
+        double x=0.0, y=0.0, z=0.0;
+        for (int i=0 ; i<n ; i++ ) {
+            MyPoint3D p = pts[i];
+            MyPoint3D q = pts[(i+1)%n];
+            x += p.getY()*q.getZ() - p.getZ()*q.getY();
+            y += p.getZ()*q.getX() - p.getX()*q.getZ();
+            z += p.getX()*q.getY() - p.getY()*q.getX();
+        }
+        return 0.5*Math.sqrt( x*x + y*y + z*z );
+    }
+    
     /** Calculates a vector normal to the facet.
      * The vector is normalized.
      */
-    //private MyPoint3D calculateNormal() {
-    private void calculateNormal() {
+    private static MyPoint3D calculateNormal(MyPoint3D[] pts) {
         // Check number of nodes:
-        int n = size();
+        int n = pts.length;
         if (n<3) {
-            normal = null; // normal angle not supported for 2D facets
-            return;
+            return null; // normal angle not supported for 2D facets
         }
         // The normal vector calculation works best if we calculate a plane using vectors that are as close to 90 degrees as possible.
         // Set tolerance on angle between the two vectors:
@@ -304,17 +383,17 @@ public class Facet extends HasGroup {
         // Loop over each node:
         for (int i0=0 ; i0<(n-2) ; i0++ ) {
             // Set initial node point:
-            MyPoint3D p0 = getNode(i0).getPoint3D();
+            MyPoint3D p0 = pts[i0];
             // Loop over each node again:
             for (int i1=i0+1 ; i1<(n-1) ; i1++ ) {
                 // Set next node point:
-                MyPoint3D p1 = getNode(i1).getPoint3D();
+                MyPoint3D p1 = pts[i1];
                 // Calculate vector between first pair of points:
                 MyPoint3D v1 = p0.vectorToPoint(p1);
                 // Loop over each node a last time:
                 for (int i2=i1+1 ; i2<n ; i2++ ) {
                     // Set final node point:
-                    MyPoint3D p2 = getNode(i2).getPoint3D();
+                    MyPoint3D p2 = pts[i2];
                     // Calculate vector between second pair of points:
                     MyPoint3D v2 = p0.vectorToPoint(p2);
                     // Check angle between vectors is appropriate:
@@ -337,18 +416,19 @@ public class Facet extends HasGroup {
             // Check if we should exit from outer for loop:
             if (ok) { break; }
         } // outer for loop
+        if (ibest==null) { return null; } // angles could not be calculated (coincident nodes)
         // Calculate the normal to the plane using the two vectors:
-        MyPoint3D p0 = getNode(ibest[0]).getPoint3D();
-        MyPoint3D p1 = getNode(ibest[1]).getPoint3D();
-        MyPoint3D p2 = getNode(ibest[2]).getPoint3D();
+        MyPoint3D p0 = pts[ibest[0]];
+        MyPoint3D p1 = pts[ibest[1]];
+        MyPoint3D p2 = pts[ibest[2]];
         MyPoint3D v1 = p0.vectorToPoint(p1);
         MyPoint3D v2 = p0.vectorToPoint(p2);
-        normal = v1.cross(v2); // vector normal to the plane
+        MyPoint3D normal = v1.cross(v2); // vector normal to the plane
         if (normal.norm()==0.0) { // collinear
-            normal = null;
-        } else {
-            normal.normalize();
+            return null;
         }
+        normal.normalize();
+        return normal;
     }
     
 }
@@ -0,0 +1,430 @@
+package facetmodeller.plc;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Finds facets in a PLC that intersect other facets.
+ * Facets with more than three nodes are split into a fan of triangles (the facets should be planar and convex).
+ * A bounding volume hierarchy over the triangles finds the pairs of triangles whose bounding boxes overlap
+ * and those pairs are then checked with a triangle-triangle intersection test.
+ * The triangles are checked in parallel on the common fork-join pool, over ranges of triangle indices.
+ * Facets that share nodes are allowed to touch at those nodes (or along a shared edge) without intersecting.
+ * Triangles from the same facet are not checked against each other.
+ * Facets with fewer than three nodes, with nodes that have no spatial position or with zero area are ignored
+ * (those are found by the PLC.findBadFacets method).
+ * The checks read from a snapshot of the PLC (see the PLCSnapshot class) so they don't touch the model.
+ * @author Peter Lelievre
+ */
+public class FacetIntersectionFinder {
+
+    // -------------------- Properties -------------------
+
+    private static final int LEAF_SIZE = 4; // HARDWIRE: maximum number of triangles in a leaf of the hierarchy
+    private static final int MIN_RANGE = 1024; // HARDWIRE: ranges of fewer triangles than this are not split further
+    private static final int MAX_DEPTH = 64; // the hierarchy is split at the median so its depth is at most log2 of the number of triangles
+    private static final double COPLANAR_TOL = 1.0E-12; // HARDWIRE: relative tolerance for deciding that triangles sharing an edge are coplanar
+
+    private final PLCSnapshot plc;
+    private final double[] px, py, pz; // spatial node positions, indexed by node index
+
+    // The triangles:
+    private int numTris = 0;
+    private int[] tv; // three node indices per triangle
+    private int[] tf; // facet index for each triangle
+    private double[] tb; // bounding box for each triangle (xmin,ymin,zmin,xmax,ymax,zmax)
+
+    // The bounding volume hierarchy (node 0 is the root):
+    private int numBoxes = 0;
+    private double[] bb; // bounding box for each hierarchy node
+    private int[] bLeft; // first child of each hierarchy node (-1 for leaves, the second child follows the first)
+    private int[] bStart, bCount; // range of the order array for each leaf
+    private int[] order; // triangle indices, ordered so that each leaf holds a contiguous range
+
+    private boolean[] intersecting; // flag for each facet (written concurrently but only ever set to true)
+
+    // ------------------- Constructor ------------------
+
+    /**
+     * @param snapshot A snapshot of the PLC.
+     */
+    public FacetIntersectionFinder(PLCSnapshot snapshot) {
+        plc = snapshot;
+        int nn = plc.numberOfNodes();
+        px = new double[nn];
+        py = new double[nn];
+        pz = new double[nn];
+        for (int i=0 ; i<nn ; i++ ) {
+            px[i] = plc.getX(i);
+            py[i] = plc.getY(i);
+            pz[i] = plc.getZ(i);
+        }
+        makeTriangles();
+    }
+
+    // -------------------- Public Methods -------------------
+
+    /** Performs the checks.
+     * @return The intersecting facets, in model order.
+     */
+    public FacetVector find() {
+        int nf = plc.numberOfFacets();
+        intersecting = new boolean[nf];
+        if (numTris>1) {
+            buildHierarchy();
+            ForkJoinPool.commonPool().invoke(new CheckTask(0,numTris));
+        }
+        FacetVector found = new FacetVector(true);
+        for (int i=0 ; i<nf ; i++ ) {
+            if (intersecting[i]) { found.add(plc.getFacet(i)); }
+        }
+        return found;
+    }
+
+    // -------------------- Private Methods -------------------
+
+    /** Splits the facets into triangles. */
+    private void makeTriangles() {
+        int nf = plc.numberOfFacets();
+        int n = 0;
+        for (int i=0 ; i<nf ; i++ ) {
+            int m = plc.facetSize(i);
+            if (m>=3) { n += m-2; }
+        }
+        tv = new int[3*n];
+        tf = new int[n];
+        tb = new double[6*n];
+        for (int i=0 ; i<nf ; i++ ) {
+            int m = plc.facetSize(i);
+            if (m<3) { continue; }
+            boolean ok = true;
+            for (int j=0 ; j<m ; j++ ) {
+                int k = plc.getFacetNode(i,j);
+                if ( k<0 || !plc.hasPoint(k) ) { ok = false; break; }
+            }
+            if (!ok) { continue; }
+            int k0 = plc.getFacetNode(i,0);
+            for (int j=1 ; j<m-1 ; j++ ) {
+                int k1 = plc.getFacetNode(i,j);
+                int k2 = plc.getFacetNode(i,j+1);
+                if (isDegenerate(k0,k1,k2)) { continue; }
+                int t = numTris++;
+                tv[3*t] = k0;
+                tv[3*t+1] = k1;
+                tv[3*t+2] = k2;
+                tf[t] = i;
+                tb[6*t  ] = Math.min(px[k0],Math.min(px[k1],px[k2]));
+                tb[6*t+1] = Math.min(py[k0],Math.min(py[k1],py[k2]));
+                tb[6*t+2] = Math.min(pz[k0],Math.min(pz[k1],pz[k2]));
+                tb[6*t+3] = Math.max(px[k0],Math.max(px[k1],px[k2]));
+                tb[6*t+4] = Math.max(py[k0],Math.max(py[k1],py[k2]));
+                tb[6*t+5] = Math.max(pz[k0],Math.max(pz[k1],pz[k2]));
+            }
+        }
+    }
+
+    /** Returns true if a triangle has zero area. */
+    private boolean isDegenerate(int k0, int k1, int k2) {
+        if ( k0==k1 || k1==k2 || k2==k0 ) { return true; }
+        double ux = px[k1]-px[k0], uy = py[k1]-py[k0], uz = pz[k1]-pz[k0];
+        double vx = px[k2]-px[k0], vy = py[k2]-py[k0], vz = pz[k2]-pz[k0];
+        double cx = uy*vz - uz*vy;
+        double cy = uz*vx - ux*vz;
+        double cz = ux*vy - uy*vx;
+        return ( cx==0.0 && cy==0.0 && cz==0.0 );
+    }
+
+    // ---------------- Bounding volume hierarchy ----------------
+
+    /** Builds the bounding volume hierarchy by recursively splitting the triangles at the median centroid
+     * along the longest axis of the centroid bounds. */
+    private void buildHierarchy() {
+        order = new int[numTris];
+        double[] centroid = new double[3*numTris];
+        for (int t=0 ; t<numTris ; t++ ) {
+            order[t] = t;
+            for (int k=0 ; k<3 ; k++ ) {
+                centroid[3*t+k] = 0.5*( tb[6*t+k] + tb[6*t+3+k] );
+            }
+        }
+        int maxBoxes = 2*numTris; // a binary tree with at least one triangle per leaf
+        bb = new double[6*maxBoxes];
+        bLeft = new int[maxBoxes];
+        bStart = new int[maxBoxes];
+        bCount = new int[maxBoxes];
+        numBoxes = 1;
+        // Use an explicit stack of hierarchy nodes to split:
+        int[] stack = new int[64];
+        int top = 0;
+        bStart[0] = 0;
+        bCount[0] = numTris;
+        stack[top++] = 0;
+        while (top>0) {
+            int b = stack[--top];
+            int start = bStart[b];
+            int count = bCount[b];
+            // Calculate the bounding box of the triangles and of their centroids:
+            double[] cmin = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+            double[] cmax = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+            for (int k=0 ; k<3 ; k++ ) {
+                bb[6*b+k] = Double.POSITIVE_INFINITY;
+                bb[6*b+3+k] = Double.NEGATIVE_INFINITY;
+            }
+            for (int i=start ; i<start+count ; i++ ) {
+                int t = order[i];
+                for (int k=0 ; k<3 ; k++ ) {
+                    bb[6*b+k] = Math.min( bb[6*b+k] , tb[6*t+k] );
+                    bb[6*b+3+k] = Math.max( bb[6*b+3+k] , tb[6*t+3+k] );
+                    cmin[k] = Math.min( cmin[k] , centroid[3*t+k] );
+                    cmax[k] = Math.max( cmax[k] , centroid[3*t+k] );
+                }
+            }
+            // Check for a leaf:
+            int axis = 0;
+            for (int k=1 ; k<3 ; k++ ) {
+                if ( cmax[k]-cmin[k] > cmax[axis]-cmin[axis] ) { axis = k; }
+            }
+            if ( count<=LEAF_SIZE || cmax[axis]<=cmin[axis] ) {
+                bLeft[b] = -1;
+                continue;
+            }
+            // Split at the median:
+            int mid = start + count/2;
+            select(centroid,axis,start,start+count-1,mid);
+            int left = numBoxes;
+            numBoxes += 2;
+            bLeft[b] = left;
+            bStart[left] = start;
+            bCount[left] = mid - start;
+            bStart[left+1] = mid;
+            bCount[left+1] = start + count - mid;
+            if (top+2>stack.length) { stack = Arrays.copyOf(stack,2*stack.length); }
+            stack[top++] = left;
+            stack[top++] = left+1;
+        }
+    }
+
+    /** Partially sorts part of the order array so that the kth entry has the kth smallest centroid
+     * coordinate along an axis, with smaller ones before and larger ones after (quickselect). */
+    private void select(double[] centroid, int axis, int lo, int hi, int k) {
+        while (hi>lo) {
+            double pivot = centroid[ 3*order[(lo+hi)>>>1] + axis ];
+            int i = lo;
+            int j = hi;
+            while (i<=j) {
+                while ( centroid[3*order[i]+axis] < pivot ) { i++; }
+                while ( centroid[3*order[j]+axis] > pivot ) { j--; }
+                if (i<=j) {
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k<=j) {
+                hi = j;
+            } else if (k>=i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /** Checks one triangle against all triangles with higher index whose bounding boxes overlap its own. */
+    private void check(int t, int[] stack) {
+        int f = tf[t];
+        int top = 0;
+        stack[top++] = 0;
+        while (top>0) {
+            int b = stack[--top];
+            if (!boxesOverlap(bb,b,tb,t)) { continue; }
+            int left = bLeft[b];
+            if (left>=0) {
+                stack[top++] = left;
+                stack[top++] = left+1;
+                continue;
+            }
+            int end = bStart[b] + bCount[b];
+            for (int i=bStart[b] ; i<end ; i++ ) {
+                int s = order[i];
+                if (s<=t) { continue; } // each pair is only checked once
+                int g = tf[s];
+                if (g==f) { continue; } // triangles from the same facet
+                if (!boxesOverlap(tb,s,tb,t)) { continue; }
+                if (trianglesIntersect(t,s)) {
+                    intersecting[f] = true;
+                    intersecting[g] = true;
+                }
+            }
+        }
+    }
+
+    private static boolean boxesOverlap(double[] b1, int i1, double[] b2, int i2) {
+        i1 *= 6;
+        i2 *= 6;
+        return ( b1[i1  ] <= b2[i2+3] && b2[i2  ] <= b1[i1+3] &&
+                 b1[i1+1] <= b2[i2+4] && b2[i2+1] <= b1[i1+4] &&
+                 b1[i1+2] <= b2[i2+5] && b2[i2+2] <= b1[i1+5] );
+    }
+
+    // ---------------- Triangle-triangle test ----------------
+
+    /** Returns true if two triangles intersect other than at their shared nodes (or along a shared edge). */
+    private boolean trianglesIntersect(int t, int s) {
+
+        int a0 = tv[3*t], a1 = tv[3*t+1], a2 = tv[3*t+2];
+        int b0 = tv[3*s], b1 = tv[3*s+1], b2 = tv[3*s+2];
+
+        // Count the shared nodes and reorder so that shared nodes come first:
+        int[] a = { a0, a1, a2 };
+        int[] b = { b0, b1, b2 };
+        int shared = 0;
+        for (int i=0 ; i<3 ; i++ ) {
+            for (int j=shared ; j<3 ; j++ ) {
+                if (a[i]!=b[j]) { continue; }
+                // Move the shared node to position "shared" in both triangles:
+                int tmp = a[shared]; a[shared] = a[i]; a[i] = tmp;
+                tmp = b[shared]; b[shared] = b[j]; b[j] = tmp;
+                shared++;
+                break;
+            }
+        }
+
+        switch (shared) {
+            case 0 -> {
+                // The triangles intersect if and only if an edge of one intersects the other:
+                for (int i=0 ; i<3 ; i++ ) {
+                    if (segmentIntersectsTriangle(a[i],a[(i+1)%3],b[0],b[1],b[2])) { return true; }
+                    if (segmentIntersectsTriangle(b[i],b[(i+1)%3],a[0],a[1],a[2])) { return true; }
+                }
+                return false;
+            }
+            case 1 -> {
+                // The intersection is a convex set containing the shared node. It contains other points
+                // if and only if the edge opposite the shared node in one triangle intersects the other:
+                return ( segmentIntersectsTriangle(a[1],a[2],b[0],b[1],b[2]) ||
+                         segmentIntersectsTriangle(b[1],b[2],a[0],a[1],a[2]) );
+            }
+            case 2 -> {
+                // The triangles only overlap if they are coplanar and on the same side of the shared edge:
+                double o = orient(a[0],a[1],a[2],b[2]);
+                double scale = Math.sqrt( length2(a[0],a[1]) * length2(a[0],a[2]) * length2(a[0],b[2]) );
+                if ( Math.abs(o) > COPLANAR_TOL*scale ) { return false; }
+                double[] n = normal(a[0],a[1],a[2]);
+                double[] m = normal(a[0],a[1],b[2]);
+                return ( n[0]*m[0] + n[1]*m[1] + n[2]*m[2] > 0.0 );
+            }
+            default -> {
+                return true; // two different facets with identical triangles
+            }
+        }
+
+    }
+
+    /** Returns true if a segment intersects a (closed) triangle. */
+    private boolean segmentIntersectsTriangle(int p, int q, int t0, int t1, int t2) {
+        double dp = orient(t0,t1,t2,p);
+        double dq = orient(t0,t1,t2,q);
+        if ( (dp>0.0 && dq>0.0) || (dp<0.0 && dq<0.0) ) { return false; } // both on the same side of the plane
+        if ( dp==0.0 && dq==0.0 ) { return coplanarSegmentIntersectsTriangle(p,q,t0,t1,t2); }
+        // The segment crosses the plane: check the crossing point is inside the triangle:
+        double o1 = orient(p,q,t0,t1);
+        double o2 = orient(p,q,t1,t2);
+        double o3 = orient(p,q,t2,t0);
+        return ( (o1>=0.0 && o2>=0.0 && o3>=0.0) || (o1<=0.0 && o2<=0.0 && o3<=0.0) );
+    }
+
+    /** Returns true if a segment intersects a (closed) triangle when all lie in the same plane.
+     * The calculations are performed in the coordinate plane most nearly parallel to the triangle. */
+    private boolean coplanarSegmentIntersectsTriangle(int p, int q, int t0, int t1, int t2) {
+        double[] n = normal(t0,t1,t2);
+        int drop = 0; // the coordinate to ignore
+        if ( Math.abs(n[1]) > Math.abs(n[drop]) ) { drop = 1; }
+        if ( Math.abs(n[2]) > Math.abs(n[drop]) ) { drop = 2; }
+        double[] u = ( drop==0 ? py : px );
+        double[] v = ( drop==2 ? py : pz );
+        // Either end inside the triangle:
+        if ( pointInTriangle2D(u,v,p,t0,t1,t2) || pointInTriangle2D(u,v,q,t0,t1,t2) ) { return true; }
+        // Segment crossing an edge of the triangle:
+        return ( segmentsIntersect2D(u,v,p,q,t0,t1) ||
+                 segmentsIntersect2D(u,v,p,q,t1,t2) ||
+                 segmentsIntersect2D(u,v,p,q,t2,t0) );
+    }
+
+    private static boolean pointInTriangle2D(double[] u, double[] v, int p, int t0, int t1, int t2) {
+        double o1 = orient2D(u,v,t0,t1,p);
+        double o2 = orient2D(u,v,t1,t2,p);
+        double o3 = orient2D(u,v,t2,t0,p);
+        return ( (o1>=0.0 && o2>=0.0 && o3>=0.0) || (o1<=0.0 && o2<=0.0 && o3<=0.0) );
+    }
+
+    private static boolean segmentsIntersect2D(double[] u, double[] v, int p1, int p2, int q1, int q2) {
+        double o1 = orient2D(u,v,p1,p2,q1);
+        double o2 = orient2D(u,v,p1,p2,q2);
+        double o3 = orient2D(u,v,q1,q2,p1);
+        double o4 = orient2D(u,v,q1,q2,p2);
+        if ( ( (o1>0.0 && o2<0.0) || (o1<0.0 && o2>0.0) ) && ( (o3>0.0 && o4<0.0) || (o3<0.0 && o4>0.0) ) ) { return true; }
+        // Touching or colinear cases:
+        return ( (o1==0.0 && onSegment2D(u,v,p1,p2,q1)) ||
+                 (o2==0.0 && onSegment2D(u,v,p1,p2,q2)) ||
+                 (o3==0.0 && onSegment2D(u,v,q1,q2,p1)) ||
+                 (o4==0.0 && onSegment2D(u,v,q1,q2,p2)) );
+    }
+
+    /** Returns true if point r, known to be colinear with p and q, lies between them. */
+    private static boolean onSegment2D(double[] u, double[] v, int p, int q, int r) {
+        return ( Math.min(u[p],u[q]) <= u[r] && u[r] <= Math.max(u[p],u[q]) &&
+                 Math.min(v[p],v[q]) <= v[r] && v[r] <= Math.max(v[p],v[q]) );
+    }
+
+    private static double orient2D(double[] u, double[] v, int a, int b, int c) {
+        return (u[b]-u[a])*(v[c]-v[a]) - (v[b]-v[a])*(u[c]-u[a]);
+    }
+
+    /** Returns the signed volume (times six) of the tetrahedron with the supplied nodes:
+     * positive if d is on one side of the plane through a, b and c, negative if on the other side and zero if coplanar. */
+    private double orient(int a, int b, int c, int d) {
+        double ax = px[a]-px[d], ay = py[a]-py[d], az = pz[a]-pz[d];
+        double bx = px[b]-px[d], by = py[b]-py[d], bz = pz[b]-pz[d];
+        double cx = px[c]-px[d], cy = py[c]-py[d], cz = pz[c]-pz[d];
+        return ax*(by*cz-bz*cy) + ay*(bz*cx-bx*cz) + az*(bx*cy-by*cx);
+    }
+
+    private double[] normal(int a, int b, int c) {
+        double ux = px[b]-px[a], uy = py[b]-py[a], uz = pz[b]-pz[a];
+        double vx = px[c]-px[a], vy = py[c]-py[a], vz = pz[c]-pz[a];
+        return new double[]{ uy*vz-uz*vy , uz*vx-ux*vz , ux*vy-uy*vx };
+    }
+
+    private double length2(int a, int b) {
+        double dx = px[b]-px[a], dy = py[b]-py[a], dz = pz[b]-pz[a];
+        return dx*dx + dy*dy + dz*dz;
+    }
+
+    // -------------------- Private Classes -------------------
+
+    /** Checks the triangles over a range of triangle indices, splitting the range in two if it is large. */
+    private class CheckTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int start, end; // the range of triangle indices (end is exclusive)
+        public CheckTask(int i1, int i2) {
+            start = i1;
+            end = i2;
+        }
+        @Override
+        protected void compute() {
+            if ( end-start <= MIN_RANGE ) {
+                int[] stack = new int[2*MAX_DEPTH]; // traversal stack
+                for (int t=start ; t<end ; t++ ) {
+                    check(t,stack);
+                }
+                return;
+            }
+            int mid = (start+end) >>> 1;
+            invokeAll( new CheckTask(start,mid) , new CheckTask(mid,end) );
+        }
+    }
+
+}
@@ -8,7 +8,7 @@ import facetmodeller.groups.Group;
 import fileio.FileUtils;
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Set;
 
 /** A Vector of Facet objects.
  * Many of the methods in this class are wrappers for methods of the same name in the Java Vector class.
@@ -21,17 +21,28 @@ public class FacetVector {
     public static final int MAX_UNIQUE_ATTRIBUTES = 16; // file reading hardwire
 
     // Favour composition over inheritence!
-    private ArrayList<Facet> vector = new ArrayList<>();
+    private final IndexedVector<Facet> vector; // optionally indexed for large facet lists (e.g. those in the PLC and groups)
 
     // ------------------- Constructor ------------------
 
     public void FacetVector() {}
+    
+    public FacetVector() {
+        vector = new IndexedVector<>(false);
+    }
+    
+    /** Constructs a facet vector with an optional index.
+     * @param indexed Set to true to maintain an index for constant time membership checks and element location.
+     */
+    public FacetVector(boolean indexed) {
+        vector = new IndexedVector<>(indexed);
+    }
 
     // ------------------- Copy Methods ------------------
 
     // Returns a new FacetVector object with copied Facets that link to existing nodes.
     public FacetVector deepCopy() {
-        FacetVector facets = new FacetVector();
+        FacetVector facets = new FacetVector(isIndexed());
         for ( int i=0 ; i<size() ; i++ ) {
             Facet f = get(i).copy(); // A new Facet object with links to existing nodes.
             facets.add(f);
@@ -50,6 +61,12 @@ public class FacetVector {
     public void clear() {
         vector.clear();
     }
+    
+    /** Returns true if the vector maintains an index of its elements.
+     * @return  */
+    public boolean isIndexed() {
+        return vector.isIndexed();
+    }
 
     /** Returns the size of the vector.
      * @return The size of the vector.
@@ -89,6 +106,20 @@ public class FacetVector {
         vector.add(f);
     }
     
+    /** Adds an element to the end of the vector regardless of whether or not it is already in the list.
+     * @param f
+     */
+    public void addDup(Facet f) {
+        vector.add(f);
+    }
+    
+    /** Makes room for a number of facets without further resizing (e.g. before adding many facets).
+     * @param n The total number of facets expected.
+     */
+    public void ensureCapacity(int n) {
+        vector.ensureCapacity(n);
+    }
+    
     /** Combines facet vectors.
      * @param v */
     public void addAll(FacetVector v) {
@@ -129,6 +160,21 @@ public class FacetVector {
         vector.remove(f);
     }
 
+    /** Removes all the facets in a set in a single pass.
+     * @param set
+     * @return The facets removed and their positions, for use with the restore method.
+     */
+    public IndexedVector.Removal<Facet> removeAll(Set<Facet> set) {
+        return vector.removeAll(set);
+    }
+    
+    /** Puts facets removed by the removeAll method back into their original positions.
+     * @param removal
+     */
+    public void restore(IndexedVector.Removal<Facet> removal) {
+        vector.restore(removal);
+    }
+
     /** Resets the ID values from 0 to the size of the vector in the order listed. */
     public void resetIDs() {
         for (int i=0 ; i<size() ; i++ ) {
@@ -155,7 +201,7 @@ public class FacetVector {
 
     /** Sorts the facets based on their node ID values. */
     public void sortByNodeIDs() {
-        Collections.sort(vector,new FacetNodeIDComparator());
+        vector.sort(new FacetNodeIDComparator());
     }
 
 //    /** Adds a section to the section membership for all facets.
@@ -203,7 +249,7 @@ public class FacetVector {
      * @return The nodes found or null if any facets were not triangles.
      */
     public NodeVector findBoundaryNodes() {
-        BoundaryInfo info = findBoundaryInfo(true);
+        BoundaryInfo info = findBoundaryInfo(true,null);
         if (info==null) { return null; }
         return info.nodes;
     }
@@ -212,15 +258,24 @@ public class FacetVector {
      * @return The facets found or null if any facets were not triangles.
      */
     public FacetVector findBoundaryFacets() {
-        BoundaryInfo info = findBoundaryInfo(false);
+        return findBoundaryFacets(null);
+    }
+    
+    /** Find the facets on the boundary of a triangulated surface using an existing edge index.
+     * @param edges An index of the edges in exactly the facets in this vector (e.g. the index maintained by the PLC),
+     * or null to create a temporary one.
+     * @return The facets found or null if any facets were not triangles.
+     */
+    public FacetVector findBoundaryFacets(EdgeIndex edges) {
+        BoundaryInfo info = findBoundaryInfo(false,edges);
         if (info==null) { return null; }
         return info.facets;
     }
     
-    private BoundaryInfo findBoundaryInfo(boolean doNodes) {
+    private BoundaryInfo findBoundaryInfo(boolean doNodes, EdgeIndex edges) {
         
-        NodeVector boundaryNodes = new NodeVector(); // will store nodes on the boundary
-        FacetVector boundaryFacets = new FacetVector(); // will store facets on the boundary
+        NodeVector boundaryNodes = new NodeVector(true); // will store nodes on the boundary (indexed for fast membership checks)
+        FacetVector boundaryFacets = new FacetVector(true); // will store facets on the boundary (indexed for fast membership checks)
         
         // Loop over each facet and check for triangular facets:
         for (int i=0 ; i<size() ; i++ ) {
@@ -233,6 +288,9 @@ public class FacetVector {
             if ( nn!=3 ) { return null; }
         }
         
+        // Index the edges of the facets if required (this replaces intersecting the facet lists of each pair of nodes):
+        if (edges==null) { edges = new EdgeIndex(this); }
+        
         // Loop over each facet:
         for (int i=0 ; i<size() ; i++ ) {
             
@@ -240,9 +298,7 @@ public class FacetVector {
             Facet facet = get(i);
             // Get the nodes for the ith facet:
             NodeVector facetNodes = facet.getNodes();
-            // Check for a triangular facet:
             int nn = facetNodes.size();
-            if ( nn!=3 ) { return null; }
             
             // Loop over each edge in the ith facet (equivalent to a loop over each node):
             for (int j=0 ; j<nn ; j++ ) {
@@ -257,23 +313,8 @@ public class FacetVector {
                     node2 = facetNodes.get(j+1);
                 }
                 
-                // Get the facets for each of those nodes (these are all candidate neighbouring facets):
-                FacetVector nodeFacets1 = node1.getFacets();
-                FacetVector nodeFacets2 = node2.getFacets();
-                
-                // Count the facets shared by each of those nodes:
-                int nf = 1; // counter for shared facets (initialized to 1 because they both share the ith facet)
-                for (int k=0 ; k<nodeFacets1.size() ; k++ ) { // loop over each facet for the first node in the pair
-                    Facet f = nodeFacets1.get(k);
-                    if (f==facet) { continue; } // the kth facet is the ith facet (already dealt with by initializing nf to 1)
-                    if (!contains(f)) { continue; } // the kth facet is not in the supplied list of facets
-                    if (!nodeFacets2.contains(f)) { continue; } // the kth facet is not shared by each node in the pair
-                    // Increment the counter of shared facets:
-                    nf++;
-                }
-                
                 // Check for a boundary edge:
-                if (nf==1) { // the only shared edge of the pair of nodes is the ith facet
+                if (edges.numberOfFacets(node1,node2)==1) { // the only facet containing the edge is the ith facet
                     if (doNodes) {
                         // Add the pair of nodes to the list of boundary nodes:
                         boundaryNodes.add(node1);
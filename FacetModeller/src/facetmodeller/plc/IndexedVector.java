@@ -0,0 +1,300 @@
+package facetmodeller.plc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/** An ordered list of objects with an optional identity-hashed side index.
+ * This is the shared storage used by the NodeVector, FacetVector, RegionVector, SectionVector and GroupVector classes.
+ * An indexed vector has constant time membership checks and element location (indexOf),
+ * at the cost of some extra memory per element. Objects are compared by identity, not by equals.
+ * The vector does not check for duplicates itself (that is left to the wrapping classes).
+ * @author Peter Lelievre
+ * @param <T> The type of object stored.
+ */
+public class IndexedVector<T> {
+
+    // -------------------- Properties -------------------
+
+    // Favour composition over inheritence!
+    private final ArrayList<T> vector = new ArrayList<>();
+
+    private IdentityHashMap<T,IndexEntry> index; // null if the vector is not indexed
+    private int indexedTo = 0; // index entries with positions below this are known to be correct
+
+    // ------------------- Constructor ------------------
+
+    /** Constructs a vector with an optional index.
+     * @param indexed Set to true to maintain the index.
+     */
+    public IndexedVector(boolean indexed) {
+        if (indexed) {
+            index = new IdentityHashMap<>(4); // start small because many vectors hold only a few elements
+        } else {
+            index = null;
+        }
+    }
+
+    // -------------------- Public Methods -------------------
+
+    /** Returns true if the vector maintains an index of its elements.
+     * @return  */
+    public boolean isIndexed() {
+        return (index!=null);
+    }
+
+    /** Clears the vector. */
+    public void clear() {
+        vector.clear();
+        if (index!=null) {
+            index.clear();
+            indexedTo = 0;
+        }
+    }
+
+    /** Makes room for a number of elements without further resizing (e.g. before adding many elements).
+     * @param n The total number of elements expected.
+     */
+    public void ensureCapacity(int n) {
+        if (n<=vector.size()) { return; }
+        vector.ensureCapacity(n);
+        if (index==null) { return; }
+        IdentityHashMap<T,IndexEntry> newIndex = new IdentityHashMap<>(n);
+        newIndex.putAll(index);
+        index = newIndex;
+    }
+
+    /** Returns the size of the vector.
+     * @return The size of the vector.
+     */
+    public int size() {
+        return vector.size();
+    }
+
+    /** Returns true if the vector has no elements.
+     * @return  */
+    public boolean isEmpty() {
+        return vector.isEmpty();
+    }
+
+    /** Returns a specified element of the vector.
+     * @param i The index of the requested element.
+     * @return The specified element of the vector.
+     */
+    public T get(int i) {
+        return vector.get(i);
+    }
+
+    /** Returns true if the supplied object is in the list.
+     * @param t
+     * @return  */
+    public boolean contains(T t) {
+        if (index==null) { return (indexOfScan(t)>=0); }
+        return index.containsKey(t);
+    }
+
+    /** Returns the index of the first occurrence of the supplied object in the list (or -1 if not in the list).
+     * @param t
+     * @return  */
+    public int indexOf(T t) {
+        if (index==null) { return indexOfScan(t); }
+        IndexEntry entry = index.get(t);
+        if (entry==null) { return -1; }
+        if (entry.position>=indexedTo) { reindex(); }
+        return entry.position;
+    }
+
+    /** Adds an element to the end of the vector (duplicates are not checked for).
+     * @param t
+     */
+    public void add(T t) {
+        int i = vector.size();
+        vector.add(t);
+        if (index==null) { return; }
+        if (indexedTo==i) { indexedTo++; } // the new element can't shift any others
+        addToIndex(t,i);
+    }
+
+    /** Adds an element at the specified position (duplicates are not checked for).
+     * @param i The position.
+     * @param t
+     */
+    public void add(int i, T t) {
+        vector.add(i,t);
+        if (index==null) { return; }
+        indexedTo = Math.min(indexedTo,i); // everything from the inserted position onwards has shifted
+        addToIndex(t,i);
+    }
+
+    /** Replaces the element at the specified position.
+     * @param i The position.
+     * @param t The new element.
+     */
+    public void set(int i, T t) {
+        T old = vector.set(i,t);
+        if (index==null) { return; }
+        removeFromIndex(old);
+        indexedTo = Math.min(indexedTo,i);
+        addToIndex(t,i);
+    }
+
+    /** Finds the first occurrence of an object in the vector and removes it (if found).
+     * @param t
+     */
+    public void remove(T t) {
+        int i = indexOf(t);
+        if (i<0) { return; }
+        remove(i);
+    }
+
+    /** Removes the element at the specified position.
+     * @param i The position.
+     * @return The element removed.
+     */
+    public T remove(int i) {
+        T t = vector.remove(i);
+        if (index==null) { return t; }
+        removeFromIndex(t);
+        indexedTo = Math.min(indexedTo,i); // everything from the removed position onwards has shifted
+        return t;
+    }
+
+    /** Removes all the elements that are in a set, compacting the vector in a single pass.
+     * @param set The elements to remove.
+     * @return The elements removed and their positions, for use with the restore method.
+     */
+    public Removal<T> removeAll(Set<T> set) {
+        Removal<T> removal = new Removal<>();
+        int n = vector.size();
+        int k = 0; // the next position to keep an element in
+        for (int i=0 ; i<n ; i++ ) {
+            T t = vector.get(i);
+            if (set.contains(t)) {
+                removal.add(i,t);
+                if (index!=null) { removeFromIndex(t); }
+            } else {
+                if (k!=i) { vector.set(k,t); }
+                k++;
+            }
+        }
+        if (k==n) { return removal; } // nothing removed
+        vector.subList(k,n).clear();
+        if (index!=null) { indexedTo = Math.min(indexedTo,removal.getPosition(0)); } // everything from the first removed position onwards has shifted
+        return removal;
+    }
+
+    /** Puts elements removed by the removeAll method back into their original positions, in a single pass.
+     * The vector should be in the same state as it was just after the removal.
+     * @param removal
+     */
+    public void restore(Removal<T> removal) {
+        int m = removal.size();
+        if (m==0) { return; }
+        int n = vector.size();
+        ArrayList<T> merged = new ArrayList<>(n+m);
+        int j = 0; // the next element in the current vector
+        for (int k=0 ; k<m ; k++ ) {
+            int p = removal.getPosition(k);
+            while ( merged.size()<p && j<n ) { merged.add(vector.get(j++)); }
+            merged.add(removal.get(k));
+        }
+        while (j<n) { merged.add(vector.get(j++)); }
+        vector.clear();
+        vector.addAll(merged);
+        if (index==null) { return; }
+        for (int k=0 ; k<m ; k++ ) {
+            addToIndex(removal.get(k),removal.getPosition(k));
+        }
+        indexedTo = Math.min(indexedTo,removal.getPosition(0)); // everything from the first restored position onwards has shifted
+    }
+
+    /** Sorts the vector.
+     * @param c */
+    public void sort(Comparator<? super T> c) {
+        Collections.sort(vector,c);
+        indexedTo = 0; // positions need to be recalculated
+    }
+
+    /** Reverses the order of the elements in the vector. */
+    public void reverse() {
+        Collections.reverse(vector);
+        indexedTo = 0; // positions need to be recalculated
+    }
+
+    // -------------------- Private Methods -------------------
+
+    /** Linear search by identity for an unindexed vector. */
+    private int indexOfScan(T t) {
+        for (int i=0 ; i<vector.size() ; i++ ) {
+            if ( vector.get(i) == t ) { return i; }
+        }
+        return -1;
+    }
+
+    /** Increments the count for an element added to the vector at the specified position. */
+    private void addToIndex(T t, int i) {
+        IndexEntry entry = index.get(t);
+        if (entry==null) {
+            index.put(t,new IndexEntry(i));
+        } else {
+            entry.count++; // a duplicate: the position of the first occurrence is recalculated in reindex if required
+        }
+    }
+
+    /** Decrements the count for an element removed from the vector. */
+    private void removeFromIndex(T t) {
+        IndexEntry entry = index.get(t);
+        if (entry==null) { return; }
+        entry.count--;
+        if (entry.count<=0) { index.remove(t); }
+    }
+
+    /** Recalculates any out-of-date element positions in the index.
+     * Only the part of the vector after the lowest position changed since the last call is visited.
+     */
+    private void reindex() {
+        // Loop backwards so that the position recorded for any duplicated element is its first occurrence:
+        for (int i=(vector.size()-1) ; i>=indexedTo ; i-- ) {
+            IndexEntry entry = index.get(vector.get(i));
+            if (entry.position<indexedTo) { continue; } // first occurrence is before the changed part of the vector
+            entry.position = i;
+        }
+        indexedTo = vector.size();
+    }
+
+    /** The elements removed from a vector by the removeAll method, in their original order, and their original positions.
+     * @param <T> The type of object stored.
+     */
+    public static final class Removal<T> {
+        private int[] positions = new int[4];
+        private final ArrayList<T> elements = new ArrayList<>();
+        private void add(int i, T t) {
+            int n = elements.size();
+            if (n==positions.length) { positions = Arrays.copyOf(positions,2*n); }
+            positions[n] = i;
+            elements.add(t);
+        }
+        /** Returns the number of elements removed.
+         * @return  */
+        public int size() { return elements.size(); }
+        /** Returns the ith element removed.
+         * @param i
+         * @return  */
+        public T get(int i) { return elements.get(i); }
+        /** Returns the original position of the ith element removed.
+         * @param i
+         * @return  */
+        public int getPosition(int i) { return positions[i]; }
+    }
+
+    /** An entry in the index: the position of the first occurrence of an object and the number of occurrences. */
+    private static class IndexEntry {
+        public int position;
+        public int count = 1;
+        public IndexEntry(int i) { position = i; }
+    }
+
+}
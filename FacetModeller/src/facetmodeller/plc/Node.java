@@ -6,6 +6,7 @@ import facetmodeller.sections.Section;
 import geometry.MyPoint2D;
 import geometry.MyPoint3D;
 import java.awt.Color;
+import java.util.Set;
 
 /** A node attached to facets, a section and group.
  * @author Peter Lelievre
@@ -19,6 +20,10 @@ public abstract class Node extends HasSection implements SessionIO {
 
     private boolean boundaryMarker = false;
     private final FacetVector facets = new FacetVector(); // list of facets associated with the vertex
+    private NodeCoordinates store = null; // the coordinate store the node is attached to (null if not in a PLC)
+    private int slot = -1; // the slot for the node in the coordinate store
+    private double[] coords = new double[3]; // local coordinates used while the node is not attached to a store
+    private int moveCount = 0; // incremented whenever the node is moved (see getGeometryVersion)
 
     // -------------------- Constructors -------------------
 
@@ -47,12 +52,162 @@ public abstract class Node extends HasSection implements SessionIO {
     public Facet getFacet(int i) { return facets.get(i); }
     public Color getColor() { return getGroup().getNodeColor(); }
     
+    /** Returns the coordinate store the node is attached to (null if the node is not in a PLC).
+     * @return  */
+    public NodeCoordinates getCoordinateStore() { return store; }
+    /** Returns the slot for the node in its coordinate store (-1 if the node is not in a PLC).
+     * @return  */
+    public int getSlot() { return slot; }
+    
+    /** Returns a stamp that increases whenever the spatial position of the node may have changed:
+     * when the node is moved, when an on-section node is moved to another section or when the calibration
+     * of the node's section changes. Used to check if geometry derived from the node position is out of date.
+     * @return  */
+    public long getGeometryVersion() {
+        long v = ((long)moveCount) << 32;
+        if (!isOff()) {
+            Section s = getSection();
+            if (s!=null) { v += s.getCalibrationVersion(); } // calibration versions are never negative
+        }
+        return v;
+    }
+    
     // -------------------- Setters -------------------
 
     public void setBoundaryMarker(boolean bm) { boundaryMarker = bm; }
     public abstract void setPoint2D(MyPoint2D p);
     public abstract void setPoint3D(MyPoint3D p);
     
+    // -------------------- Coordinate Storage -------------------
+    
+    /** Returns one of the defining coordinates for the node.
+     * @param k Coordinate index (0, 1 or 2).
+     * @return  */
+    protected final double getCoordinate(int k) {
+        if (store==null) { return coords[k]; }
+        switch (k) {
+            case 0: return store.getX(slot);
+            case 1: return store.getY(slot);
+            default: return store.getZ(slot);
+        }
+    }
+    
+    /** Sets the defining coordinates for the node.
+     * @param c0
+     * @param c1
+     * @param c2 */
+    protected final void setCoordinates(double c0, double c1, double c2) {
+        if (store==null) {
+            coords[0] = c0;
+            coords[1] = c1;
+            coords[2] = c2;
+        } else {
+            store.set(slot,c0,c1,c2);
+        }
+        moveCount++;
+    }
+    
+    /** Copies the defining coordinates for the node into an array
+     * (image pixel coordinates for on-section nodes, with a zero third coordinate, or spatial coordinates for off-section nodes).
+     * Used to record compact undo information for node moves (see the MoveNodesCommand class).
+     * @param a
+     * @param i Index in the array for the first of the three coordinates. */
+    public final void getCoordinates(double[] a, int i) {
+        a[i] = getCoordinate(0);
+        a[i+1] = getCoordinate(1);
+        a[i+2] = getCoordinate(2);
+    }
+    
+    /** Sets the defining coordinates for the node from an array (see the getCoordinates method).
+     * @param a
+     * @param i Index in the array for the first of the three coordinates. */
+    public final void setCoordinates(double[] a, int i) {
+        setCoordinates(a[i],a[i+1],a[i+2]);
+    }
+
+    /** Copies the spatial coordinates for the node into an array.
+     * No point objects are created for off-section nodes or for on-section nodes with cached spatial coordinates,
+     * so this is used when projecting all the nodes for painting.
+     * @param a
+     * @param i Index in the array for the first of the three coordinates.
+     * @return False if the node has no spatial position (the array is not changed). */
+    public final boolean getSpatialCoordinates(double[] a, int i) {
+        if (isOff()) {
+            getCoordinates(a,i);
+            return true;
+        }
+        Section s = getSection();
+        if ( s!=null && s.isCalibrated() && isSpatialCached(s.getCalibrationVersion()) ) {
+            a[i] = store.getSpatialX(slot);
+            a[i+1] = store.getSpatialY(slot);
+            a[i+2] = store.getSpatialZ(slot);
+            return true;
+        }
+        MyPoint3D p = getPoint3D(); // calculates and caches the spatial coordinates
+        if (p==null) { return false; }
+        a[i] = p.getX();
+        a[i+1] = p.getY();
+        a[i+2] = p.getZ();
+        return true;
+    }
+    
+    /** Moves the node coordinates into the supplied store.
+     * Called when the node is added to a PLC.
+     * @param s */
+    void attach(NodeCoordinates s) {
+        if (s==store) { return; }
+        double c0 = getCoordinate(0);
+        double c1 = getCoordinate(1);
+        double c2 = getCoordinate(2);
+        detach();
+        slot = s.allocate(c0,c1,c2);
+        store = s;
+        coords = null; // not needed while attached
+    }
+    
+    /** Moves the node coordinates out of its store.
+     * Called when the node is removed from a PLC (the node may still be referenced by undo commands).
+     */
+    void detach() {
+        if (store==null) { return; }
+        coords = new double[]{ store.getX(slot), store.getY(slot), store.getZ(slot) };
+        store.release(slot);
+        store = null;
+        slot = -1;
+    }
+    
+    /** Returns true if the spatial coordinates cached for the node were calculated for the supplied calibration version.
+     * Always false for a node that is not attached to a store.
+     * @param v
+     * @return  */
+    protected final boolean isSpatialCached(int v) {
+        if (store==null) { return false; }
+        return store.isSpatialCached(slot,v);
+    }
+    
+    /** Returns the cached spatial coordinates for the node.
+     * Only valid if isSpatialCached returns true.
+     * @return  */
+    protected final MyPoint3D getSpatialCached() {
+        return new MyPoint3D( store.getSpatialX(slot), store.getSpatialY(slot), store.getSpatialZ(slot) );
+    }
+    
+    /** Caches the spatial coordinates for the node (does nothing for a node not attached to a store).
+     * @param p
+     * @param v The calibration version used to calculate the spatial coordinates. */
+    protected final void setSpatialCached(MyPoint3D p, int v) {
+        if (store==null) { return; }
+        store.setSpatial(slot,p.getX(),p.getY(),p.getZ(),v);
+    }
+    
+    /** Discards any cached spatial coordinates for the node.
+     * Called when the spatial position of the node changes for reasons other than its coordinates changing. */
+    protected final void clearSpatialCached() {
+        moveCount++;
+        if (store==null) { return; }
+        store.clearSpatial(slot);
+    }
+    
     // -------------------- Public Methods -------------------
     
     public void toggleBoundaryMarker() { boundaryMarker = !boundaryMarker; }
@@ -73,7 +228,7 @@ public abstract class Node extends HasSection implements SessionIO {
             if (n!=3) { return null; } // non-triangular facet
             // Loop over each node in the ith facet:
             for (int j=0 ; j<n ; j++) {
-                Node facetNode = facetNodes.get(i);
+                Node facetNode = facetNodes.get(j);
                 // Check that the jth facet node isn't this node and isn't already in the list of neighbours:
                 if ( !facetNode.equals(this) ) { // && !neighbours.contains(facetNode) )
                     // Add the jth facet node to the list of neighbours:
@@ -96,6 +251,12 @@ public abstract class Node extends HasSection implements SessionIO {
     public void removeFacet(Facet f) {
         facets.remove(f);
     }
+    public IndexedVector.Removal<Facet> removeFacets(Set<Facet> set) {
+        return facets.removeAll(set);
+    }
+    public void restoreFacets(IndexedVector.Removal<Facet> removal) {
+        facets.restore(removal);
+    }
     public void clearFacets() {
         facets.clear();
     }
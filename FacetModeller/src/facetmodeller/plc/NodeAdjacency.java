@@ -0,0 +1,147 @@
+package facetmodeller.plc;
+
+import java.util.Arrays;
+
+/** The node neighbourhoods in a PLC held in compressed sparse row form.
+ * Two nodes are neighbours if they are joined by a facet edge (see the EdgeIndex class for the definition of an edge).
+ * The rows are indexed by the node slots in the PLC's coordinate store (see the NodeCoordinates class),
+ * so bulk operations can loop over the neighbour arrays and read the coordinate arrays directly with the same indices.
+ * The neighbours of the node in slot i are neighbours[offsets[i]] to neighbours[offsets[i+1]-1], sorted by slot.
+ * Slots not in use have no neighbours. An adjacency is not updated when the model changes:
+ * the PLC discards it whenever nodes or facets are added or removed and builds a new one when required.
+ * @author Peter Lelievre
+ */
+public class NodeAdjacency {
+
+    // -------------------- Properties -------------------
+
+    private final Node[] nodes; // the node in each slot (null for slots not in use)
+    private final int[] offsets; // start of each row in the neighbours array (one more entry than the number of slots)
+    private final int[] neighbours; // neighbour slots for each row
+
+    // ------------------- Constructor ------------------
+
+    /** Builds the adjacency for a set of nodes and the facets that join them.
+     * @param nodeVector The nodes, which must all be attached to the same coordinate store.
+     * @param facets The facets (edges to nodes not in nodeVector are ignored).
+     * @param numSlots One more than the highest slot in use.
+     */
+    public NodeAdjacency(NodeVector nodeVector, FacetVector facets, int numSlots) {
+
+        nodes = new Node[numSlots];
+        for (int i=0 ; i<nodeVector.size() ; i++ ) {
+            Node node = nodeVector.get(i);
+            nodes[node.getSlot()] = node;
+        }
+
+        // Collect the edges in a single pass over the facets, counting the edge ends at each slot
+        // (shared edges are counted once per facet at this point):
+        int[] count = new int[numSlots+1];
+        int[] ends = new int[64]; // pairs of slots
+        int numEnds = 0;
+        for (int i=0 ; i<facets.size() ; i++ ) {
+            NodeVector facetNodes = facets.get(i).getNodes();
+            int n = EdgeIndex.numberOfEdges(facetNodes);
+            if (n==0) { continue; }
+            int s0 = slotOf( facetNodes.get(0) );
+            int s1 = s0;
+            for (int j=0 ; j<n ; j++ ) {
+                int s2 = ( j+1 < facetNodes.size() ? slotOf( facetNodes.get(j+1) ) : s0 );
+                if ( s1>=0 && s2>=0 && s1!=s2 ) { // skip nodes not in the PLC and zero-length edges
+                    if (numEnds+2>ends.length) { ends = Arrays.copyOf(ends,2*ends.length); }
+                    ends[numEnds++] = s1;
+                    ends[numEnds++] = s2;
+                    count[s1]++;
+                    count[s2]++;
+                }
+                s1 = s2;
+            }
+        }
+
+        // Convert the counts to row offsets:
+        int[] start = new int[numSlots+1];
+        for (int i=0 ; i<numSlots ; i++ ) {
+            start[i+1] = start[i] + count[i];
+        }
+
+        // Fill the rows:
+        int[] fill = new int[start[numSlots]];
+        int[] pos = Arrays.copyOf(start,numSlots);
+        for (int i=0 ; i<numEnds ; i+=2 ) {
+            int s1 = ends[i];
+            int s2 = ends[i+1];
+            fill[pos[s1]++] = s2;
+            fill[pos[s2]++] = s1;
+        }
+        ends = null;
+
+        // Sort each row and remove the duplicates (edges shared by several facets), compacting as we go:
+        offsets = new int[numSlots+1];
+        int k = 0;
+        for (int i=0 ; i<numSlots ; i++ ) {
+            offsets[i] = k;
+            int a = start[i];
+            int b = start[i+1];
+            Arrays.sort(fill,a,b);
+            for (int j=a ; j<b ; j++ ) {
+                if ( j>a && fill[j]==fill[j-1] ) { continue; }
+                fill[k++] = fill[j];
+            }
+        }
+        offsets[numSlots] = k;
+        neighbours = Arrays.copyOf(fill,k);
+
+    }
+
+    // -------------------- Getters -------------------
+
+    /** Returns the number of rows (one more than the highest slot in use when the adjacency was built).
+     * @return  */
+    public int numberOfSlots() { return nodes.length; }
+
+    /** Returns the row offsets. The array is not copied so it should not be changed.
+     * @return  */
+    public int[] getOffsets() { return offsets; }
+
+    /** Returns the neighbour slots for all rows. The array is not copied so it should not be changed.
+     * @return  */
+    public int[] getNeighbours() { return neighbours; }
+
+    /** Returns the node in a slot (null if the slot was not in use).
+     * @param slot
+     * @return  */
+    public Node getNode(int slot) { return nodes[slot]; }
+
+    // -------------------- Public Methods -------------------
+
+    /** Returns the number of neighbours for the node in a slot.
+     * @param slot
+     * @return  */
+    public int degree(int slot) {
+        return offsets[slot+1] - offsets[slot];
+    }
+
+    /** Returns the neighbours of a node.
+     * @param node
+     * @return A new vector (empty if the node was not in the PLC when the adjacency was built).
+     */
+    public NodeVector getNodeNeighbours(Node node) {
+        NodeVector v = new NodeVector();
+        int slot = slotOf(node);
+        if (slot<0) { return v; }
+        for (int k=offsets[slot] ; k<offsets[slot+1] ; k++ ) {
+            v.addDup(nodes[neighbours[k]]); // the rows have no duplicates
+        }
+        return v;
+    }
+
+    /** Returns the slot for a node (or -1 if the node was not in the PLC when the adjacency was built).
+     * @param node
+     * @return  */
+    public int slotOf(Node node) {
+        int slot = node.getSlot();
+        if ( slot<0 || slot>=nodes.length || nodes[slot]!=node ) { return -1; }
+        return slot;
+    }
+
+}
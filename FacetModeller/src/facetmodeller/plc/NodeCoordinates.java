@@ -0,0 +1,156 @@
+package facetmodeller.plc;
+
+import java.util.Arrays;
+
+/** A primitive store of node coordinates held in parallel arrays (a structure of arrays).
+ * Each node attached to the store is assigned a slot and its defining coordinates are held there:
+ * pixel coordinates (i,j) for on-section nodes and spatial coordinates (x,y,z) for off-section nodes.
+ * The slots are not related to the node IDs, which are reset whenever the model is written or saved.
+ * Slots are recycled when nodes are released from the store.
+ * Code that needs to loop over many nodes (e.g. painting and exporting) can read the arrays directly
+ * through the node slots without creating any point objects.
+ * The spatial coordinates calculated for on-section nodes are also cached here, along with the calibration
+ * version of the section at the time of the calculation (see the NodeOnSection class).
+ * @author Peter Lelievre
+ */
+public class NodeCoordinates {
+
+    // -------------------- Properties -------------------
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NOT_CACHED = -1; // calibration versions are never negative
+
+    private double[] x = new double[INITIAL_CAPACITY]; // first coordinate (x or i)
+    private double[] y = new double[INITIAL_CAPACITY]; // second coordinate (y or j)
+    private double[] z = new double[INITIAL_CAPACITY]; // third coordinate (z, unused for on-section nodes)
+    private double[] sx = new double[INITIAL_CAPACITY]; // cached spatial x coordinate for on-section nodes
+    private double[] sy = new double[INITIAL_CAPACITY]; // cached spatial y coordinate for on-section nodes
+    private double[] sz = new double[INITIAL_CAPACITY]; // cached spatial z coordinate for on-section nodes
+    private int[] version = new int[INITIAL_CAPACITY]; // section calibration version for the cached spatial coordinates
+    private int[] free = new int[INITIAL_CAPACITY]; // stack of released slots
+    private int numFree = 0; // number of released slots on the stack
+    private int top = 0; // one more than the highest slot ever allocated
+    private NodeGrid grid = null; // spatial index to inform of coordinate changes (may be null)
+
+    // -------------------- Getters -------------------
+
+    public double getX(int slot) { return x[slot]; }
+    public double getY(int slot) { return y[slot]; }
+    public double getZ(int slot) { return z[slot]; }
+    
+    public double getSpatialX(int slot) { return sx[slot]; }
+    public double getSpatialY(int slot) { return sy[slot]; }
+    public double getSpatialZ(int slot) { return sz[slot]; }
+
+    /** Returns true if the cached spatial coordinates for a slot were calculated for the supplied calibration version.
+     * @param slot
+     * @param v The current calibration version of the node's section.
+     * @return  */
+    public boolean isSpatialCached(int slot, int v) { return ( version[slot] == v ); }
+
+    /** Sets the spatial index to inform of coordinate changes.
+     * @param g The spatial index (may be null). */
+    void setGrid(NodeGrid g) { grid = g; }
+
+    /** Returns the number of slots in use.
+     * @return  */
+    public int size() { return top - numFree; }
+
+    /** Returns one more than the highest slot ever allocated (since the store was last cleared).
+     * All slots in use are below this value.
+     * @return  */
+    public int slotLimit() { return top; }
+
+    // -------------------- Setters -------------------
+
+    public void set(int slot, double x1, double y1, double z1) {
+        x[slot] = x1;
+        y[slot] = y1;
+        z[slot] = z1;
+        version[slot] = NOT_CACHED; // the defining coordinates have changed
+        if (grid!=null) { grid.markDirty(slot); }
+    }
+    
+    /** Caches the spatial coordinates for a slot.
+     * @param slot
+     * @param x1
+     * @param y1
+     * @param z1
+     * @param v The calibration version of the node's section used to calculate the spatial coordinates.
+     */
+    public void setSpatial(int slot, double x1, double y1, double z1, int v) {
+        sx[slot] = x1;
+        sy[slot] = y1;
+        sz[slot] = z1;
+        version[slot] = v;
+    }
+    
+    /** Discards the cached spatial coordinates for a slot.
+     * @param slot
+     */
+    public void clearSpatial(int slot) {
+        version[slot] = NOT_CACHED;
+        if (grid!=null) { grid.markDirty(slot); } // the node has probably changed section
+    }
+
+    // -------------------- Public Methods -------------------
+
+    /** Allocates a slot in the store and sets its coordinates.
+     * @param x1
+     * @param y1
+     * @param z1
+     * @return The slot allocated.
+     */
+    public int allocate(double x1, double y1, double z1) {
+        int slot;
+        if (numFree>0) {
+            slot = free[--numFree]; // reuse a released slot
+        } else {
+            if (top==x.length) { grow(); }
+            slot = top++;
+        }
+        set(slot,x1,y1,z1);
+        return slot;
+    }
+
+    /** Makes room for a number of slots without further resizing (e.g. before attaching many nodes).
+     * @param n The total number of slots expected.
+     */
+    public void ensureCapacity(int n) {
+        if (n<=x.length) { return; }
+        resize(n);
+    }
+
+    /** Releases a slot so that it can be reused.
+     * @param slot
+     */
+    public void release(int slot) {
+        if (numFree==free.length) { free = Arrays.copyOf(free,2*free.length); }
+        free[numFree++] = slot;
+    }
+
+    /** Releases all slots. */
+    public void clear() {
+        numFree = 0;
+        top = 0;
+    }
+
+    // -------------------- Private Methods -------------------
+
+    /** Doubles the capacity of the coordinate arrays. */
+    private void grow() {
+        resize(2*x.length);
+    }
+
+    /** Changes the capacity of the coordinate arrays. */
+    private void resize(int n) {
+        x = Arrays.copyOf(x,n);
+        y = Arrays.copyOf(y,n);
+        z = Arrays.copyOf(z,n);
+        sx = Arrays.copyOf(sx,n);
+        sy = Arrays.copyOf(sy,n);
+        sz = Arrays.copyOf(sz,n);
+        version = Arrays.copyOf(version,n);
+    }
+
+}
@@ -0,0 +1,586 @@
+package facetmodeller.plc;
+
+import facetmodeller.sections.Section;
+import geometry.MyPoint3D;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/** A uniform grid spatial index over the 3D positions of the nodes in a PLC.
+ * Supports nearest, k-nearest and radius queries.
+ * Nodes are held in the grid by their slot in the PLC's coordinate store (see the NodeCoordinates class).
+ * The store tells the grid whenever a node's coordinates change and the moved nodes are re-placed before the next query.
+ * Changes to a section calibration move all of its on-section nodes, in which case the grid is rebuilt before the next query.
+ * Nodes without a 3D position (on uncalibrated sections) are held in the grid but are not placed in any cell.
+ * The grid also keeps running statistics for the placed nodes: their bounding box and their greatest distance from a point.
+ * These are updated as nodes are placed and are only recalculated from scratch when a node on the edge of
+ * the bounding box (or at the greatest distance) is removed or moved.
+ * @author Peter Lelievre
+ */
+public class NodeGrid {
+
+    // -------------------- Properties -------------------
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final double NODES_PER_CELL = 2.0; // HARDWIRE: target number of nodes per occupied cell
+    private static final int MAX_INDEX = 1<<29; // limit on cell indices to avoid integer overflow
+    private static final int HAS_POSITION = -2; // marker used while rebuilding
+
+    // Per-slot information:
+    private Node[] nodes = new Node[INITIAL_CAPACITY]; // the node in each slot (null if the slot is not in the grid)
+    private double[] px = new double[INITIAL_CAPACITY]; // position of each placed node
+    private double[] py = new double[INITIAL_CAPACITY];
+    private double[] pz = new double[INITIAL_CAPACITY];
+    private int[] cellOf = new int[INITIAL_CAPACITY]; // cell table entry holding each node (-1 if not placed, set when added)
+    private int[] next = new int[INITIAL_CAPACITY]; // next slot in the same cell (-1 at the end)
+    private int[] prev = new int[INITIAL_CAPACITY]; // previous slot in the same cell (-1 at the start)
+    private boolean[] dirty = new boolean[INITIAL_CAPACITY]; // true for slots waiting to be re-placed
+    private int[] dirtyStack = new int[INITIAL_CAPACITY];
+    private int numDirty = 0;
+
+    // The cell table (open addressing on the integer cell indices):
+    private int[] ci, cj, ck; // cell indices for each table entry
+    private int[] head; // first slot in each cell (-1 if empty)
+    private boolean[] used; // true if the table entry is in use
+    private int numCells = 0; // number of table entries in use
+
+    // Grid geometry:
+    private double cellSize = 1.0;
+    private double ox = 0.0, oy = 0.0, oz = 0.0; // grid origin
+    private int imin, imax, jmin, jmax, kmin, kmax; // range of cell indices in use
+    private int numPlaced = 0; // number of nodes placed in cells
+    private int numPlacedAtBuild = 0; // number of nodes placed when the cell size was last chosen
+
+    // Running statistics for the placed nodes:
+    private double bx1, by1, bz1, bx2, by2, bz2; // bounding box
+    private boolean boundsValid = false; // false if the bounding box needs recalculating
+    private double rx, ry, rz; // point for the greatest distance
+    private double rmax2 = 0.0; // greatest squared distance from that point
+    private boolean radiusValid = false; // false if the greatest distance needs recalculating
+
+    private final Map<Section,Integer> versions = new IdentityHashMap<>(); // calibration versions of the sections when their nodes were placed
+
+    // ------------------- Constructor ------------------
+
+    public NodeGrid() {
+        clearCells(INITIAL_CAPACITY);
+    }
+
+    /** Constructs a grid holding the supplied nodes, which must be attached to a coordinate store.
+     * @param v */
+    public NodeGrid(NodeVector v) {
+        for (int i=0 ; i<v.size() ; i++ ) {
+            Node n = v.get(i);
+            int slot = n.getSlot();
+            if (slot<0) { continue; }
+            ensureCapacity(slot+1);
+            nodes[slot] = n;
+        }
+        rebuild(); // places all the nodes at once with an appropriate cell size
+    }
+
+    // -------------------- Public Methods -------------------
+
+    /** Adds a node to the grid.
+     * The node must be attached to a coordinate store.
+     * @param n */
+    public void add(Node n) {
+        int slot = n.getSlot();
+        if (slot<0) { return; }
+        ensureCapacity(slot+1);
+        nodes[slot] = n;
+        cellOf[slot] = -1;
+        place(slot);
+    }
+
+    /** Removes a node from the grid.
+     * @param n */
+    public void remove(Node n) {
+        int slot = n.getSlot();
+        if ( slot<0 || slot>=nodes.length || nodes[slot]!=n ) { return; }
+        unplace(slot);
+        nodes[slot] = null;
+    }
+
+    /** Indicates that the coordinates in a slot have changed.
+     * @param slot */
+    public void markDirty(int slot) {
+        ensureCapacity(slot+1);
+        if (dirty[slot]) { return; }
+        dirty[slot] = true;
+        if (numDirty==dirtyStack.length) { dirtyStack = Arrays.copyOf(dirtyStack,2*numDirty); }
+        dirtyStack[numDirty++] = slot;
+    }
+
+    /** Finds the closest node to a point.
+     * @param p The point.
+     * @param exclude A node to skip (may be null).
+     * @return The closest node or null if no nodes have 3D positions.
+     */
+    public Node findClosest(MyPoint3D p, Node exclude) {
+        NodeVector found = findClosest(p,1,exclude);
+        if (found.isEmpty()) { return null; }
+        return found.get(0);
+    }
+
+    /** Finds the k closest nodes to a point.
+     * @param p The point.
+     * @param k The number of nodes to find.
+     * @param exclude A node to skip (may be null).
+     * @return The nodes found, ordered from closest to farthest (fewer than k if there are not enough nodes with 3D positions).
+     */
+    public NodeVector findClosest(MyPoint3D p, int k, Node exclude) {
+        update();
+        NodeVector found = new NodeVector();
+        if ( k<=0 || numPlaced==0 ) { return found; }
+        double x = p.getX();
+        double y = p.getY();
+        double z = p.getZ();
+        // Keep the best k candidates sorted by squared distance:
+        int[] bestSlot = new int[k];
+        double[] bestD = new double[k];
+        int nbest = 0;
+        int i0 = index(x,ox);
+        int j0 = index(y,oy);
+        int k0 = index(z,oz);
+        // The largest shell required to cover every cell in use:
+        int rmax = Math.max( Math.max( Math.max(i0-imin,imax-i0) , Math.max(j0-jmin,jmax-j0) ) , Math.max(k0-kmin,kmax-k0) );
+        rmax = Math.max(rmax,0);
+        // Search outwards in cubic shells of cells:
+        for (int r=0 ; r<=rmax ; r++ ) {
+            // If the shells are getting larger than the whole table then just scan the whole table:
+            long shellCells = (long)(2*r+1)*(2*r+1)*(2*r+1);
+            if ( r>1 && shellCells > 4L*numCells ) {
+                nbest = 0;
+                for (int c=0 ; c<used.length ; c++ ) {
+                    if (!used[c]) { continue; }
+                    nbest = scanCell(c,x,y,z,exclude,bestSlot,bestD,nbest,k);
+                }
+                break;
+            }
+            for (int i=i0-r ; i<=i0+r ; i++ ) {
+                for (int j=j0-r ; j<=j0+r ; j++ ) {
+                    boolean onFace = ( i==i0-r || i==i0+r || j==j0-r || j==j0+r );
+                    if (onFace) {
+                        for (int kk=k0-r ; kk<=k0+r ; kk++ ) {
+                            int c = findCell(i,j,kk);
+                            if (c>=0) { nbest = scanCell(c,x,y,z,exclude,bestSlot,bestD,nbest,k); }
+                        }
+                    } else { // only the two cells at the ends of the shell in the third dimension
+                        int c = findCell(i,j,k0-r);
+                        if (c>=0) { nbest = scanCell(c,x,y,z,exclude,bestSlot,bestD,nbest,k); }
+                        if (r>0) {
+                            c = findCell(i,j,k0+r);
+                            if (c>=0) { nbest = scanCell(c,x,y,z,exclude,bestSlot,bestD,nbest,k); }
+                        }
+                    }
+                }
+            }
+            // Any node outside the shells searched so far is at least r cell widths away:
+            if ( nbest==k ) {
+                double d = r*cellSize;
+                if ( bestD[k-1] <= d*d ) { break; }
+            }
+        }
+        for (int i=0 ; i<nbest ; i++ ) {
+            found.add(nodes[bestSlot[i]]);
+        }
+        return found;
+    }
+
+    /** Finds all nodes within a distance of a point.
+     * @param p The point.
+     * @param radius The distance.
+     * @return The nodes found (in no particular order).
+     */
+    public NodeVector findWithin(MyPoint3D p, double radius) {
+        update();
+        NodeVector found = new NodeVector();
+        if ( numPlaced==0 || radius<0.0 ) { return found; }
+        double x = p.getX();
+        double y = p.getY();
+        double z = p.getZ();
+        double r2 = radius*radius;
+        int i1 = Math.max( index(x-radius,ox) , imin );
+        int i2 = Math.min( index(x+radius,ox) , imax );
+        int j1 = Math.max( index(y-radius,oy) , jmin );
+        int j2 = Math.min( index(y+radius,oy) , jmax );
+        int k1 = Math.max( index(z-radius,oz) , kmin );
+        int k2 = Math.min( index(z+radius,oz) , kmax );
+        if ( i2<i1 || j2<j1 || k2<k1 ) { return found; } // outside the cells in use
+        long boxCells = (long)(i2-i1+1)*(j2-j1+1)*(k2-k1+1);
+        if ( boxCells > 4L*numCells ) {
+            // Scan the whole table instead:
+            for (int c=0 ; c<used.length ; c++ ) {
+                if (used[c]) { collectCell(c,x,y,z,r2,found); }
+            }
+            return found;
+        }
+        for (int i=i1 ; i<=i2 ; i++ ) {
+            for (int j=j1 ; j<=j2 ; j++ ) {
+                for (int k=k1 ; k<=k2 ; k++ ) {
+                    int c = findCell(i,j,k);
+                    if (c>=0) { collectCell(c,x,y,z,r2,found); }
+                }
+            }
+        }
+        return found;
+    }
+
+    /** Returns the bounding box of the nodes with 3D positions.
+     * @return The minimum and maximum coordinates {xmin,ymin,zmin,xmax,ymax,zmax}, or null if no nodes have 3D positions.
+     */
+    public double[] getBounds() {
+        update();
+        if (numPlaced==0) { return null; }
+        if (!boundsValid) {
+            boolean first = true;
+            for (int slot=0 ; slot<nodes.length ; slot++ ) {
+                if (cellOf[slot]<0) { continue; }
+                if (first) {
+                    bx1 = bx2 = px[slot];
+                    by1 = by2 = py[slot];
+                    bz1 = bz2 = pz[slot];
+                    first = false;
+                } else {
+                    addToBounds(slot);
+                }
+            }
+            boundsValid = true;
+        }
+        return new double[]{ bx1, by1, bz1, bx2, by2, bz2 };
+    }
+
+    /** Returns the greatest distance from a point to any node with a 3D position.
+     * The result is kept so that repeated calls for the same point are quick.
+     * @param p The point.
+     * @return The distance (zero if no nodes have 3D positions).
+     */
+    public double getMaxDistance(MyPoint3D p) {
+        update();
+        if (numPlaced==0) { return 0.0; }
+        double x = p.getX();
+        double y = p.getY();
+        double z = p.getZ();
+        if ( !radiusValid || x!=rx || y!=ry || z!=rz ) {
+            rx = x;
+            ry = y;
+            rz = z;
+            rmax2 = 0.0;
+            for (int slot=0 ; slot<nodes.length ; slot++ ) {
+                if (cellOf[slot]<0) { continue; }
+                rmax2 = Math.max( rmax2 , distance2(slot) );
+            }
+            radiusValid = true;
+        }
+        return Math.sqrt(rmax2);
+    }
+
+    // -------------------- Private Methods -------------------
+
+    /** Brings the grid up to date before a query. */
+    private void update() {
+        // Check for any section calibration changes or large changes in the number of nodes:
+        boolean rebuild = ( numPlaced > 4*numPlacedAtBuild + 1024 ); // the cell size is probably too large
+        if (!rebuild) {
+            for (Map.Entry<Section,Integer> entry : versions.entrySet()) {
+                if ( entry.getKey().getCalibrationVersion() != entry.getValue() ) {
+                    rebuild = true;
+                    break;
+                }
+            }
+        }
+        if (rebuild) {
+            rebuild();
+            return;
+        }
+        // Re-place any nodes whose coordinates have changed:
+        for (int i=0 ; i<numDirty ; i++ ) {
+            int slot = dirtyStack[i];
+            dirty[slot] = false;
+            if (nodes[slot]==null) { continue; }
+            unplace(slot);
+            place(slot);
+        }
+        numDirty = 0;
+    }
+
+    /** Chooses a new cell size and places all the nodes again. */
+    private void rebuild() {
+        // Clear the cells and dirty flags:
+        for (int i=0 ; i<numDirty ; i++ ) { dirty[dirtyStack[i]] = false; }
+        numDirty = 0;
+        versions.clear();
+        // Calculate the positions and their extents:
+        int n = 0;
+        double x1=0, x2=0, y1=0, y2=0, z1=0, z2=0;
+        for (int slot=0 ; slot<nodes.length ; slot++ ) {
+            cellOf[slot] = -1;
+            Node node = nodes[slot];
+            if (node==null) { continue; }
+            MyPoint3D p = position(node);
+            if (p==null) { continue; }
+            px[slot] = p.getX();
+            py[slot] = p.getY();
+            pz[slot] = p.getZ();
+            cellOf[slot] = HAS_POSITION; // temporary marker until the node is linked below
+            if (n==0) {
+                x1 = x2 = px[slot];
+                y1 = y2 = py[slot];
+                z1 = z2 = pz[slot];
+            } else {
+                x1 = Math.min(x1,px[slot]); x2 = Math.max(x2,px[slot]);
+                y1 = Math.min(y1,py[slot]); y2 = Math.max(y2,py[slot]);
+                z1 = Math.min(z1,pz[slot]); z2 = Math.max(z2,pz[slot]);
+            }
+            n++;
+        }
+        // Choose the cell size so that there are a few nodes per cell, using only the non-degenerate dimensions:
+        double volume = 1.0;
+        int ndim = 0;
+        double[] extents = {x2-x1,y2-y1,z2-z1};
+        for (int i=0 ; i<3 ; i++ ) {
+            if (extents[i]>0.0) {
+                volume *= extents[i];
+                ndim++;
+            }
+        }
+        cellSize = 1.0;
+        if ( n>0 && ndim>0 ) {
+            cellSize = Math.pow( volume*NODES_PER_CELL/n , 1.0/ndim );
+            if ( !(cellSize>0.0) || Double.isInfinite(cellSize) ) { cellSize = 1.0; }
+        }
+        ox = x1;
+        oy = y1;
+        oz = z1;
+        // Place the nodes:
+        clearCells( Math.max(INITIAL_CAPACITY,n) );
+        numPlaced = 0;
+        radiusValid = false; // the nodes may all have moved
+        for (int slot=0 ; slot<nodes.length ; slot++ ) {
+            Node node = nodes[slot];
+            if (node==null) { continue; }
+            recordVersion(node);
+            if (cellOf[slot]==HAS_POSITION) { link(slot); }
+        }
+        numPlacedAtBuild = numPlaced;
+    }
+
+    /** Calculates the position of a node and places it in a cell (if the position exists). */
+    private void place(int slot) {
+        Node node = nodes[slot];
+        recordVersion(node);
+        MyPoint3D p = position(node);
+        if (p==null) { return; }
+        px[slot] = p.getX();
+        py[slot] = p.getY();
+        pz[slot] = p.getZ();
+        link(slot);
+    }
+
+    /** Removes a node from its cell (if it is in one). */
+    private void unplace(int slot) {
+        int c = cellOf[slot];
+        if (c<0) { return; }
+        // Check if the running statistics need recalculating:
+        if ( boundsValid && ( px[slot]==bx1 || px[slot]==bx2 || py[slot]==by1 || py[slot]==by2 || pz[slot]==bz1 || pz[slot]==bz2 ) ) {
+            boundsValid = false; // the node is on the edge of the bounding box
+        }
+        if ( radiusValid && distance2(slot)>=rmax2 ) {
+            radiusValid = false; // the node is at the greatest distance
+        }
+        if (prev[slot]>=0) {
+            next[prev[slot]] = next[slot];
+        } else {
+            head[c] = next[slot];
+        }
+        if (next[slot]>=0) { prev[next[slot]] = prev[slot]; }
+        cellOf[slot] = -1;
+        numPlaced--;
+    }
+
+    /** Links a node into the cell containing its stored position. */
+    private void link(int slot) {
+        int i = index(px[slot],ox);
+        int j = index(py[slot],oy);
+        int k = index(pz[slot],oz);
+        int c = findOrAddCell(i,j,k);
+        prev[slot] = -1;
+        next[slot] = head[c];
+        if (head[c]>=0) { prev[head[c]] = slot; }
+        head[c] = slot;
+        cellOf[slot] = c;
+        if (numPlaced==0) {
+            imin = imax = i;
+            jmin = jmax = j;
+            kmin = kmax = k;
+            bx1 = bx2 = px[slot];
+            by1 = by2 = py[slot];
+            bz1 = bz2 = pz[slot];
+            boundsValid = true;
+        } else {
+            imin = Math.min(imin,i); imax = Math.max(imax,i);
+            jmin = Math.min(jmin,j); jmax = Math.max(jmax,j);
+            kmin = Math.min(kmin,k); kmax = Math.max(kmax,k);
+            if (boundsValid) { addToBounds(slot); }
+        }
+        if (radiusValid) { rmax2 = Math.max( rmax2 , distance2(slot) ); }
+        numPlaced++;
+    }
+
+    /** Expands the bounding box to include the stored position of a node. */
+    private void addToBounds(int slot) {
+        bx1 = Math.min(bx1,px[slot]); bx2 = Math.max(bx2,px[slot]);
+        by1 = Math.min(by1,py[slot]); by2 = Math.max(by2,py[slot]);
+        bz1 = Math.min(bz1,pz[slot]); bz2 = Math.max(bz2,pz[slot]);
+    }
+
+    /** Returns the squared distance from the stored position of a node to the point for the greatest distance. */
+    private double distance2(int slot) {
+        double dx = px[slot] - rx;
+        double dy = py[slot] - ry;
+        double dz = pz[slot] - rz;
+        return dx*dx + dy*dy + dz*dz;
+    }
+
+    /** Returns the 3D position of a node or null if it doesn't have one. */
+    private static MyPoint3D position(Node node) {
+        if ( !node.isOff() && node.getSection()==null ) { return null; } // still being read from a file
+        return node.getPoint3D();
+    }
+
+    /** Records the calibration version of the section for an on-section node. */
+    private void recordVersion(Node node) {
+        if (node.isOff()) { return; }
+        Section s = node.getSection();
+        if (s==null) { return; }
+        if (!versions.containsKey(s)) { versions.put(s,s.getCalibrationVersion()); }
+    }
+
+    /** Returns the cell index for a coordinate. */
+    private int index(double v, double o) {
+        double d = Math.floor( (v-o)/cellSize );
+        if (d>MAX_INDEX) { return MAX_INDEX; }
+        if (d<-MAX_INDEX) { return -MAX_INDEX; }
+        return (int)d;
+    }
+
+    /** Updates the k best candidates with the nodes in a cell and returns the new number of candidates. */
+    private int scanCell(int c, double x, double y, double z, Node exclude, int[] bestSlot, double[] bestD, int nbest, int k) {
+        for (int slot=head[c] ; slot>=0 ; slot=next[slot] ) {
+            if (nodes[slot]==exclude) { continue; }
+            double dx = px[slot] - x;
+            double dy = py[slot] - y;
+            double dz = pz[slot] - z;
+            double d = dx*dx + dy*dy + dz*dz;
+            if ( nbest==k && d>=bestD[k-1] ) { continue; }
+            // Insertion into the sorted candidate list:
+            int i = ( nbest<k ? nbest++ : k-1 );
+            while ( i>0 && bestD[i-1]>d ) {
+                bestD[i] = bestD[i-1];
+                bestSlot[i] = bestSlot[i-1];
+                i--;
+            }
+            bestD[i] = d;
+            bestSlot[i] = slot;
+        }
+        return nbest;
+    }
+
+    /** Adds the nodes in a cell within a squared distance of a point to the supplied vector. */
+    private void collectCell(int c, double x, double y, double z, double r2, NodeVector found) {
+        for (int slot=head[c] ; slot>=0 ; slot=next[slot] ) {
+            double dx = px[slot] - x;
+            double dy = py[slot] - y;
+            double dz = pz[slot] - z;
+            if ( dx*dx + dy*dy + dz*dz <= r2 ) { found.addDup(nodes[slot]); } // each node is only in one cell
+        }
+    }
+
+    /** Empties the cell table and sizes it for the supplied number of nodes. */
+    private void clearCells(int n) {
+        int size = Integer.highestOneBit( Math.max(INITIAL_CAPACITY,n) ) * 2; // a power of two at least twice the size required
+        ci = new int[size];
+        cj = new int[size];
+        ck = new int[size];
+        head = new int[size];
+        used = new boolean[size];
+        numCells = 0;
+    }
+
+    /** Returns the table entry for a cell or -1 if not in the table. */
+    private int findCell(int i, int j, int k) {
+        int mask = used.length - 1;
+        for (int c=hash(i,j,k)&mask ; used[c] ; c=(c+1)&mask ) {
+            if ( ci[c]==i && cj[c]==j && ck[c]==k ) { return c; }
+        }
+        return -1;
+    }
+
+    /** Returns the table entry for a cell, adding it if required. */
+    private int findOrAddCell(int i, int j, int k) {
+        int c = findCell(i,j,k);
+        if (c>=0) { return c; }
+        if ( 2*(numCells+1) > used.length ) {
+            growCells();
+        }
+        int mask = used.length - 1;
+        c = hash(i,j,k) & mask;
+        while (used[c]) { c = (c+1) & mask; }
+        used[c] = true;
+        ci[c] = i;
+        cj[c] = j;
+        ck[c] = k;
+        head[c] = -1;
+        numCells++;
+        return c;
+    }
+
+    /** Doubles the size of the cell table, moving the cells and the nodes they hold. */
+    private void growCells() {
+        int[] oldi = ci, oldj = cj, oldk = ck, oldHead = head;
+        boolean[] oldUsed = used;
+        int size = 2*oldUsed.length;
+        ci = new int[size];
+        cj = new int[size];
+        ck = new int[size];
+        head = new int[size];
+        used = new boolean[size];
+        numCells = 0;
+        int mask = size - 1;
+        for (int c=0 ; c<oldUsed.length ; c++ ) {
+            if (!oldUsed[c]) { continue; }
+            int cnew = hash(oldi[c],oldj[c],oldk[c]) & mask;
+            while (used[cnew]) { cnew = (cnew+1) & mask; }
+            used[cnew] = true;
+            ci[cnew] = oldi[c];
+            cj[cnew] = oldj[c];
+            ck[cnew] = oldk[c];
+            head[cnew] = oldHead[c];
+            numCells++;
+            for (int slot=oldHead[c] ; slot>=0 ; slot=next[slot] ) { cellOf[slot] = cnew; }
+        }
+    }
+
+    private static int hash(int i, int j, int k) {
+        int h = i*73856093 ^ j*19349663 ^ k*83492791;
+        return h ^ (h>>>16);
+    }
+
+    /** Makes sure the per-slot arrays can hold the supplied number of slots. */
+    private void ensureCapacity(int n) {
+        if (n<=nodes.length) { return; }
+        int size = Math.max(n,2*nodes.length);
+        int oldSize = nodes.length;
+        nodes = Arrays.copyOf(nodes,size);
+        px = Arrays.copyOf(px,size);
+        py = Arrays.copyOf(py,size);
+        pz = Arrays.copyOf(pz,size);
+        cellOf = Arrays.copyOf(cellOf,size);
+        Arrays.fill(cellOf,oldSize,size,-1);
+        next = Arrays.copyOf(next,size);
+        prev = Arrays.copyOf(prev,size);
+        dirty = Arrays.copyOf(dirty,size);
+    }
+
+}
@@ -9,33 +9,30 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 
 /** A node off of a section, specified by a 3D point.
+ * The spatial coordinates are held as the defining coordinates of the node (see the NodeCoordinates class).
  * @author Peter
  */
 public class NodeOffSection extends Node {
 
-    // -------------------- Properties -------------------
-
-    private MyPoint3D p3;
-
     // -------------------- Constructors -------------------
 
     public NodeOffSection() { super(); } // required by SessionLoader (should not be used elsewhere)
     
     public NodeOffSection(double x, double y, double z) { // required by when reading a topo file (should not be used elsewhere)
         super();
-        p3 = new MyPoint3D(x,y,z);
+        setCoordinates(x,y,z);
     }
 
     public NodeOffSection(MyPoint3D p, Section s, Group g) {
         super(s,g);
-        p3 = p;
+        setPoint3D(p);
     }
 
     // -------------------- Deep Copy -------------------
 
     @Override
     public NodeOffSection deepCopyPointAndGroup() {
-        NodeOffSection newNode = new NodeOffSection(this.p3.deepCopy(),null,this.getGroup());
+        NodeOffSection newNode = new NodeOffSection(getPoint3D(),null,this.getGroup());
         newNode.setBoundaryMarker( this.getBoundaryMarker() );
         return newNode;
     }
@@ -60,23 +57,26 @@ public class NodeOffSection extends Node {
     public MyPoint2D getPoint2D() {
         Section s = getSection();
         if (!s.isCalibrated()) { return null; }
-        return s.projectOnto(p3);
+        return s.projectOnto(getPoint3D());
     }
     @Override
-    public MyPoint3D getPoint3D() { return p3; }
+    public MyPoint3D getPoint3D() { return new MyPoint3D( getCoordinate(0), getCoordinate(1), getCoordinate(2) ); } // a new object is returned
     
     // -------------------- Setters -------------------
 
     @Override
     public void setPoint2D(MyPoint2D p) { }
     @Override
-    public void setPoint3D(MyPoint3D p) { p3 = p; }
+    public void setPoint3D(MyPoint3D p) {
+        if (p==null) { return; }
+        setCoordinates(p.getX(),p.getY(),p.getZ());
+    }
 
     // -------------------- SectionIO Methods --------------------
     
     @Override
     public boolean writeSessionInformation(BufferedWriter writer) {
-        String textLine = p3.toStringSpaces();
+        String textLine = getPoint3D().toStringSpaces();
         return FileUtils.writeLine(writer,textLine);
     }
     
@@ -94,7 +94,7 @@ public class NodeOffSection extends Node {
             y = Double.parseDouble(ss[1].trim());
             z = Double.parseDouble(ss[2].trim());
         } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) { return "Parsing node 3D coordinates."; }
-        p3 = new MyPoint3D(x,y,z);
+        setCoordinates(x,y,z);
         // Return successfully:
         return null;
     }
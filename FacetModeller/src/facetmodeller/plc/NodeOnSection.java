@@ -9,33 +9,30 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 
 /** A node on a section, specified by a 2D point.
+ * The image pixel coordinates are held as the defining coordinates of the node (see the NodeCoordinates class).
  * @author Peter
  */
 public class NodeOnSection extends Node {
 
-    // -------------------- Properties -------------------
-
-    private MyPoint2D p2;
-
     // -------------------- Constructors -------------------
 
     public NodeOnSection() { super(); } // required by SessionLoader (should not be used elsewhere)
 
     public NodeOnSection(double i, double j) { // required by the SessionLoader (should not be used elsewhere)
         super();
-        p2 = new MyPoint2D(i,j);
+        setCoordinates(i,j,0.0);
     }
 
     public NodeOnSection(MyPoint2D p, Section s, Group g) {
         super(s,g);
-        p2 = p;
+        setPoint2D(p);
     }
 
     // -------------------- Deep Copy -------------------
 
     @Override
     public NodeOnSection deepCopyPointAndGroup() {
-        NodeOnSection newNode = new NodeOnSection(this.p2.deepCopy(),null,this.getGroup());
+        NodeOnSection newNode = new NodeOnSection(getPoint2D(),null,this.getGroup());
         newNode.setBoundaryMarker( this.getBoundaryMarker() );
         return newNode;
     }
@@ -57,12 +54,16 @@ public class NodeOnSection extends Node {
     // -------------------- Getters -------------------
 
     @Override
-    public MyPoint2D getPoint2D() { return p2; }
+    public MyPoint2D getPoint2D() { return new MyPoint2D( getCoordinate(0), getCoordinate(1) ); } // a new object is returned
     @Override
     public MyPoint3D getPoint3D() {
         Section s = getSection();
         if (!s.isCalibrated()) { return null; }
-        MyPoint3D p3 = s.imageToSpace(p2);
+        // Use the cached spatial coordinates if the section calibration hasn't changed since they were calculated:
+        int version = s.getCalibrationVersion();
+        if (isSpatialCached(version)) { return getSpatialCached(); }
+        MyPoint3D p3 = s.imageToSpace(getPoint2D());
+        if (p3==null) { return null; }
         // Hardwire rounding to closest integer if very close to that integer:
         double x1 = p3.getX();
         double y1 = p3.getY();
@@ -73,13 +74,23 @@ public class NodeOnSection extends Node {
         if ( Math.abs(x1-x2) < 1.0E-12 ) { p3.setX(x2); }
         if ( Math.abs(y1-y2) < 1.0E-12 ) { p3.setY(y2); }
         if ( Math.abs(z1-z2) < 1.0E-12 ) { p3.setZ(z2); }
+        setSpatialCached(p3,version);
         return p3;
     }
     
     // -------------------- Setters -------------------
 
     @Override
-    public void setPoint2D(MyPoint2D p) { p2 = p; }
+    public void setSection(Section s) {
+        super.setSection(s);
+        clearSpatialCached(); // the cache was for the old section
+    }
+
+    @Override
+    public void setPoint2D(MyPoint2D p) {
+        if (p==null) { return; }
+        setCoordinates(p.getX(),p.getY(),0.0);
+    }
     @Override
     public void setPoint3D(MyPoint3D p) {
         // Make sure the section is calibrated:
@@ -89,14 +100,14 @@ public class NodeOnSection extends Node {
         MyPoint2D p2new = s.projectOnto(p);
         if (p2new==null) { return; }
         // Reset the 2D point:
-        p2 = p2new;
+        setPoint2D(p2new);
     }
 
     // -------------------- SectionIO Methods --------------------
     
     @Override
     public boolean writeSessionInformation(BufferedWriter writer) {
-        String textLine = p2.toStringSpaces();
+        String textLine = getPoint2D().toStringSpaces();
         return FileUtils.writeLine(writer,textLine);
     }
     
@@ -113,7 +124,7 @@ public class NodeOnSection extends Node {
             x = Double.parseDouble(ss[0].trim()); // converts to Double
             y = Double.parseDouble(ss[1].trim());
         } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) { return "Parsing node 2D coordinates."; }
-        p2 = new MyPoint2D(x,y);
+        setCoordinates(x,y,0.0);
         // Return successfully:
         return null;
     }
@@ -0,0 +1,263 @@
+package facetmodeller.plc;
+
+import facetmodeller.commands.MoveNodesCommand;
+import facetmodeller.groups.GroupVector;
+import facetmodeller.sections.Section;
+import facetmodeller.sections.SectionProjection;
+import geometry.MyPoint3D;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Applies a transform of spatial coordinates to many nodes at once (e.g. translation or snapping to a grid).
+ * The spatial coordinates of the nodes are gathered into primitive arrays, the transform is applied to the arrays
+ * (in parallel for large selections) and the results are converted back into defining coordinates:
+ * on-section nodes are projected onto their sections using the SectionProjection objects so no point objects are created.
+ * The nodes are then moved and a single MoveNodesCommand is returned holding the old and new coordinates of the nodes that moved.
+ * Nodes with no spatial position (on uncalibrated sections) are skipped.
+ * @author Peter Lelievre
+ */
+public final class NodeTransformer {
+
+    // -------------------- Properties -------------------
+
+    private static final int MIN_RANGE = 8192; // HARDWIRE: ranges of fewer nodes than this are not split further
+
+    // -------------------- Public Interfaces -------------------
+
+    /** A transform of spatial coordinates applied in place to a range of array entries. */
+    public interface Transform {
+        /** Transforms the spatial coordinates (x[k],y[k],z[k]) for k=start to end-1.
+         * Called concurrently for different ranges so it must not change any shared state.
+         * @param x
+         * @param y
+         * @param z
+         * @param start
+         * @param end */
+        public void apply(double[] x, double[] y, double[] z, int start, int end);
+    }
+
+    // -------------------- Transforms -------------------
+
+    /** Returns a translation.
+     * @param t The translation vector.
+     * @return  */
+    public static Transform translation(MyPoint3D t) {
+        final double tx = t.getX();
+        final double ty = t.getY();
+        final double tz = t.getZ();
+        return (x,y,z,start,end) -> {
+            for (int k=start ; k<end ; k++ ) {
+                x[k] += tx;
+                y[k] += ty;
+                z[k] += tz;
+            }
+        };
+    }
+
+    /** Returns a general affine transform p' = A*p + b.
+     * @param a The 3x3 matrix A (a[r][c]).
+     * @param b The translation vector b.
+     * @return  */
+    public static Transform affine(double[][] a, MyPoint3D b) {
+        final double a00=a[0][0], a01=a[0][1], a02=a[0][2];
+        final double a10=a[1][0], a11=a[1][1], a12=a[1][2];
+        final double a20=a[2][0], a21=a[2][1], a22=a[2][2];
+        final double bx = b.getX();
+        final double by = b.getY();
+        final double bz = b.getZ();
+        return (x,y,z,start,end) -> {
+            for (int k=start ; k<end ; k++ ) {
+                double x0 = x[k];
+                double y0 = y[k];
+                double z0 = z[k];
+                x[k] = a00*x0 + a01*y0 + a02*z0 + bx;
+                y[k] = a10*x0 + a11*y0 + a12*z0 + by;
+                z[k] = a20*x0 + a21*y0 + a22*z0 + bz;
+            }
+        };
+    }
+
+    /** Returns a transform that moves points to the closest grid points.
+     * @param m The grid spacing.
+     * @param doH Snap in the horizontal directions?
+     * @param doV Snap in the vertical direction?
+     * @return  */
+    public static Transform gridSnap(double m, boolean doH, boolean doV) {
+        return (x,y,z,start,end) -> {
+            for (int k=start ; k<end ; k++ ) {
+                if (doH) {
+                    x[k] = Math.round(x[k]/m)*m;
+                    y[k] = Math.round(y[k]/m)*m;
+                }
+                if (doV) {
+                    z[k] = Math.round(z[k]/m)*m;
+                }
+            }
+        };
+    }
+
+    /** Returns a transform that snaps points to the coordinates of either of two points if close enough
+     * (e.g. to the VOI limits or to section calibration points).
+     * @param p1 The point to snap to.
+     * @param p2 Another point to snap to.
+     * @param snappingDistance Snap distance.
+     * @param doH Snap in the horizontal directions?
+     * @param doV Snap in the vertical direction?
+     * @return  */
+    public static Transform pointSnap(MyPoint3D p1, MyPoint3D p2, double snappingDistance, boolean doH, boolean doV) {
+        final double x1 = p1.getX();
+        final double y1 = p1.getY();
+        final double z1 = p1.getZ();
+        final double x2 = p2.getX();
+        final double y2 = p2.getY();
+        final double z2 = p2.getZ();
+        return (x,y,z,start,end) -> {
+            for (int k=start ; k<end ; k++ ) {
+                if (doH) {
+                    if ( Math.abs(x[k]-x1) <= snappingDistance ) { x[k] = x1; }
+                    if ( Math.abs(x[k]-x2) <= snappingDistance ) { x[k] = x2; }
+                    if ( Math.abs(y[k]-y1) <= snappingDistance ) { y[k] = y1; }
+                    if ( Math.abs(y[k]-y2) <= snappingDistance ) { y[k] = y2; }
+                }
+                if (doV) {
+                    if ( Math.abs(z[k]-z1) <= snappingDistance ) { z[k] = z1; }
+                    if ( Math.abs(z[k]-z2) <= snappingDistance ) { z[k] = z2; }
+                }
+            }
+        };
+    }
+
+    // -------------------- Public Methods -------------------
+
+    /** Applies a transform to some nodes.
+     * @param nodes The nodes to consider.
+     * @param groups Only transform nodes in these groups (null for all groups).
+     * @param transform
+     * @param parallel Set to true to allow the calculations to be performed in parallel.
+     * @return The executed command holding the moves (empty if no nodes moved).
+     */
+    public static MoveNodesCommand apply(NodeVector nodes, GroupVector groups, Transform transform, boolean parallel) {
+
+        // Gather the nodes and their spatial coordinates:
+        int nn = nodes.size();
+        Node[] selected = new Node[nn];
+        SectionProjection[] projections = new SectionProjection[nn]; // null for off-section nodes
+        double[] x = new double[nn];
+        double[] y = new double[nn];
+        double[] z = new double[nn];
+        IdentityHashMap<Section,SectionProjection> sectionProjections = new IdentityHashMap<>();
+        int n = 0;
+        for (int i=0 ; i<nn ; i++ ) {
+            Node node = nodes.get(i);
+            // Skip nodes not in the supplied groups:
+            if ( groups!=null && !groups.contains(node.getGroup()) ) { continue; }
+            if (!node.isOff()) {
+                // Get the projection for the node's section (the section might not be calibrated):
+                Section s = node.getSection();
+                SectionProjection proj = sectionProjections.get(s);
+                if ( proj==null && !sectionProjections.containsKey(s) ) {
+                    proj = s.getProjection();
+                    sectionProjections.put(s,proj);
+                }
+                if ( proj==null && !s.isCalibrated() ) { continue; }
+                projections[n] = proj; // if null then the node is moved through its setPoint3D method below
+                // Get the spatial coordinates, calculating and caching them if required:
+                int version = s.getCalibrationVersion();
+                if (node.isSpatialCached(version)) {
+                    NodeCoordinates store = node.getCoordinateStore();
+                    int slot = node.getSlot();
+                    x[n] = store.getSpatialX(slot);
+                    y[n] = store.getSpatialY(slot);
+                    z[n] = store.getSpatialZ(slot);
+                } else {
+                    MyPoint3D p = node.getPoint3D();
+                    if (p==null) { continue; }
+                    x[n] = p.getX();
+                    y[n] = p.getY();
+                    z[n] = p.getZ();
+                }
+            } else {
+                x[n] = node.getCoordinate(0);
+                y[n] = node.getCoordinate(1);
+                z[n] = node.getCoordinate(2);
+            }
+            selected[n] = node;
+            n++;
+        }
+
+        // Transform the spatial coordinates and convert them to defining coordinates:
+        Task task = new Task(transform,projections,x,y,z,0,n);
+        if ( parallel && n>MIN_RANGE ) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+
+        // Move the nodes that changed:
+        double[] oldCoords = new double[3*n];
+        double[] newCoords = new double[3*n];
+        int m = 0;
+        for (int k=0 ; k<n ; k++ ) {
+            Node node = selected[k];
+            int i = 3*m;
+            node.getCoordinates(oldCoords,i);
+            if ( !node.isOff() && projections[k]==null ) {
+                node.setPoint3D(new MyPoint3D(x[k],y[k],z[k])); // no projection available so do it the slow way
+                node.getCoordinates(newCoords,i);
+            } else {
+                newCoords[i] = x[k];
+                newCoords[i+1] = y[k];
+                newCoords[i+2] = z[k];
+            }
+            if ( oldCoords[i]==newCoords[i] && oldCoords[i+1]==newCoords[i+1] && oldCoords[i+2]==newCoords[i+2] ) { continue; } // didn't move
+            node.setCoordinates(newCoords[i],newCoords[i+1],newCoords[i+2]);
+            selected[m] = node;
+            m++;
+        }
+        // Trim the arrays to the nodes that moved (the command is kept in the undo history):
+        return new MoveNodesCommand("",Arrays.copyOf(selected,m),Arrays.copyOf(oldCoords,3*m),Arrays.copyOf(newCoords,3*m),m);
+
+    }
+
+    // -------------------- Private Classes -------------------
+
+    /** Applies the transform over a range of nodes, splitting the range in two if it is large,
+     * and converts the results for on-section nodes to image pixel coordinates. */
+    private static class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final transient Transform transform; // transient because the tasks are never serialized
+        private final transient SectionProjection[] projections;
+        private final double[] x, y, z;
+        private final int start, end; // the range of nodes (end is exclusive)
+        public Task(Transform t, SectionProjection[] p, double[] x, double[] y, double[] z, int i1, int i2) {
+            transform = t;
+            projections = p;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            start = i1;
+            end = i2;
+        }
+        @Override
+        protected void compute() {
+            if ( end-start <= MIN_RANGE ) {
+                transform.apply(x,y,z,start,end);
+                for (int k=start ; k<end ; k++ ) {
+                    SectionProjection proj = projections[k];
+                    if (proj==null) { continue; } // off-section node (or no projection available)
+                    double i = proj.i(x[k],y[k],z[k]);
+                    double j = proj.j(x[k],y[k],z[k]);
+                    x[k] = i;
+                    y[k] = j;
+                    z[k] = 0.0;
+                }
+                return;
+            }
+            int mid = (start+end) >>> 1;
+            invokeAll( new Task(transform,projections,x,y,z,start,mid) , new Task(transform,projections,x,y,z,mid,end) );
+        }
+    }
+
+}
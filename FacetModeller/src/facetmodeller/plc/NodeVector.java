@@ -1,7 +1,6 @@
 package facetmodeller.plc;
 
 import facetmodeller.commands.CommandVector;
-import facetmodeller.commands.MoveNodeCommand;
 import facetmodeller.comparators.NodeIDComparator;
 import facetmodeller.comparators.NodeXYZComparator;
 import facetmodeller.groups.Group;
@@ -12,7 +11,7 @@ import fileio.FileUtils;
 import geometry.MyPoint3D;
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Set;
 
 /** A Vector of Node objects.
  * Many of the methods in this class are wrappers for methods of the same name in the Java Vector class.
@@ -25,11 +24,24 @@ public class NodeVector {
     public static final int MAX_UNIQUE_ATTRIBUTES = 10; // file reading hardwire
 
     // Favour composition over inheritence!
-    private final ArrayList<Node> vector = new ArrayList<>();
+    private final IndexedVector<Node> vector; // optionally indexed for large node lists (e.g. those in the PLC, sections and groups)
 
     // ------------------- Constructor ------------------
 
     public void NodeVector() {}
+    
+    public NodeVector() {
+        vector = new IndexedVector<>(false);
+    }
+    
+    /** Constructs a node vector with an optional index.
+     * An indexed vector has constant time membership checks, duplicate checks on adding and
+     * element location (indexOf), at the cost of some extra memory per element.
+     * @param indexed Set to true to maintain the index.
+     */
+    public NodeVector(boolean indexed) {
+        vector = new IndexedVector<>(indexed);
+    }
 
     // ------------------- Copy ------------------
 
@@ -52,7 +64,7 @@ public class NodeVector {
 //        return nodes;
 //    }
     public NodeVector shallowCopy() {
-        NodeVector nodes = new NodeVector();
+        NodeVector nodes = new NodeVector(isIndexed());
         nodes.addAll(this);
         return nodes;
     }
@@ -63,6 +75,12 @@ public class NodeVector {
     public void clear() {
         vector.clear();
     }
+    
+    /** Returns true if the vector maintains an index of its elements.
+     * @return  */
+    public boolean isIndexed() {
+        return vector.isIndexed();
+    }
 
     /** Returns the size of the vector.
      * @return The size of the vector.
@@ -119,6 +137,13 @@ public class NodeVector {
         vector.add(n);
     }
     
+    /** Makes room for a number of nodes without further resizing (e.g. before adding many nodes).
+     * @param n The total number of nodes expected.
+     */
+    public void ensureCapacity(int n) {
+        vector.ensureCapacity(n);
+    }
+    
     /** Combines node vectors.
      * @param v */
     public void addAll(NodeVector v) {
@@ -143,6 +168,21 @@ public class NodeVector {
         vector.remove(n);
     }
     
+    /** Removes all the nodes in a set in a single pass.
+     * @param set
+     * @return The nodes removed and their positions, for use with the restore method.
+     */
+    public IndexedVector.Removal<Node> removeAll(Set<Node> set) {
+        return vector.removeAll(set);
+    }
+    
+    /** Puts nodes removed by the removeAll method back into their original positions.
+     * @param removal
+     */
+    public void restore(IndexedVector.Removal<Node> removal) {
+        vector.restore(removal);
+    }
+    
     public void removeLast() {
         vector.remove( size() - 1 );
     }
@@ -175,10 +215,8 @@ public class NodeVector {
         int i1 = vector.indexOf(n1);
         // Check the first node is in the list:
         if (i1>=0) {
-            // Remove the first node from the list:
-            vector.remove(n1);
-            // Add the second node into the same place:
-            vector.add(i1,n2);
+            // Put the second node into the same place as the first:
+            vector.set(i1,n2);
         }
         return i1;
     }
@@ -250,12 +288,12 @@ public class NodeVector {
 
     /** Sorts the nodes based on their ID values. */
     public void sortByIDs() {
-        Collections.sort(vector,new NodeIDComparator());
+        vector.sort(new NodeIDComparator());
     }
 
     /** Sorts the nodes based on their coordinates. */
     public void sortByXYZ() {
-        Collections.sort(vector,new NodeXYZComparator());
+        vector.sort(new NodeXYZComparator());
     }
 
     /** Gets the section memberships for all nodes.
@@ -406,39 +444,7 @@ public class NodeVector {
      */
     public CommandVector snapToPoints(MyPoint3D p1, MyPoint3D p2, double snappingDistance, GroupVector groups, boolean doH, boolean doV) {
         CommandVector commands = new CommandVector("");
-        double x1 = p1.getX();
-        double y1 = p1.getY();
-        double z1 = p1.getZ();
-        double x2 = p2.getX();
-        double y2 = p2.getY();
-        double z2 = p2.getZ();
-        // Loop over each node:
-        for (int i=0 ; i<size() ; i++ ) {
-            Node node = get(i);
-            // Skip nodes not in the supplied groups:
-            if ( groups!=null && !groups.contains(node.getGroup()) ) { continue; }
-            // Get the 3D point for the node:
-            MyPoint3D p = node.getPoint3D();
-            if (p==null) { continue; } // section might not be calibrated
-            // Check if the node coordinates are close to the supplied coordinates:
-            double x = p.getX();
-            double y = p.getY();
-            double z = p.getZ();
-            if (doH) {
-                if ( Math.abs(x-x1) <= snappingDistance ) { x = x1; }
-                if ( Math.abs(x-x2) <= snappingDistance ) { x = x2; }
-                if ( Math.abs(y-y1) <= snappingDistance ) { y = y1; }
-                if ( Math.abs(y-y2) <= snappingDistance ) { y = y2; }
-            }
-            if (doV) {
-                if ( Math.abs(z-z1) <= snappingDistance ) { z = z1; }
-                if ( Math.abs(z-z2) <= snappingDistance ) { z = z2; }
-            }
-            // Change the node coordinates:
-            p = new MyPoint3D(x,y,z);
-            MoveNodeCommand com = new MoveNodeCommand(node,null,p); com.execute(); // node.setPoint3D(p);
-            commands.add(com);
-        }
+        commands.add( NodeTransformer.apply(this,groups,NodeTransformer.pointSnap(p1,p2,snappingDistance,doH,doV),true) );
         return commands;
     }
 
@@ -3,9 +3,6 @@ package facetmodeller.plc;
 import facetmodeller.VOI;
 import facetmodeller.commands.CommandVector;
 import facetmodeller.commands.DuplicateNodeInfo;
-import facetmodeller.commands.MoveNodeCommand;
-import facetmodeller.comparators.FacetNodeIDComparator;
-import facetmodeller.comparators.NodeXYZComparator;
 import facetmodeller.groups.GroupVector;
 import facetmodeller.gui.SceneInfo;
 import fileio.FileUtils;
@@ -14,6 +11,8 @@ import geometry.MyPoint2D;
 import geometry.MyPoint3D;
 import geometry.MyPoint3DVector;
 import java.io.*;
+import java.util.HashMap;
+import java.util.Set;
 
 /** A piecewise linear complex.
  * @author Peter Lelievre
@@ -24,9 +23,13 @@ public class PLC {
 
     private static final double TOLZERO = 1.0E-9; // if any node coordinates are closer than this to zero then they are written as zero
     
-    private final NodeVector nodes = new NodeVector(); // list of nodes
-    private final FacetVector facets = new FacetVector(); // list of facets
+    private final NodeVector nodes = new NodeVector(true); // list of nodes (indexed because it can be very large)
+    private final FacetVector facets = new FacetVector(true); // list of facets (indexed because it can be very large)
     private final RegionVector regions = new RegionVector(); // list of regions
+    private final NodeCoordinates coordinates = new NodeCoordinates(); // primitive store of the coordinates for the nodes in the PLC
+    private NodeGrid nodeGrid = null; // spatial index of the nodes, created when first required and then maintained as nodes are added, moved and removed
+    private EdgeIndex edgeIndex = null; // map from edges to facets, created when first required and then maintained as facets are added and removed
+    private NodeAdjacency adjacency = null; // node neighbourhoods, created when first required and discarded when nodes or facets are added or removed
     //private String header = "# Poly file written by FacetModeller (Java implementation)";
 
     // ------------------- Constructor ------------------
@@ -68,6 +71,60 @@ public class PLC {
     public NodeVector getNodes() { return nodes; }
     public FacetVector getFacets() { return facets; }
     public RegionVector getRegions() { return regions; }
+    
+    /** Returns the primitive store holding the coordinates of the nodes in the PLC.
+     * The coordinates for a node are found using the slot returned by Node.getSlot().
+     * @return  */
+    public NodeCoordinates getNodeCoordinates() { return coordinates; }
+    
+    /** Returns the index of the edges of the facets in the PLC, creating it if required.
+     * @return  */
+    public EdgeIndex getEdgeIndex() {
+        if (edgeIndex==null) { edgeIndex = new EdgeIndex(facets); }
+        return edgeIndex;
+    }
+    
+    /** Returns the node neighbourhoods in the PLC, creating them if required.
+     * The object returned is not updated if the PLC changes so it should not be kept.
+     * @return  */
+    public NodeAdjacency getNodeAdjacency() {
+        if (adjacency==null) { adjacency = new NodeAdjacency(nodes,facets,coordinates.slotLimit()); }
+        return adjacency;
+    }
+    
+    /** Returns an immutable, integer-indexed copy of the nodes and facets in the PLC.
+     * The copy can be read on other threads and by code that loops over the whole model.
+     * @return  */
+    public PLCSnapshot snapshot() {
+        return new PLCSnapshot(this);
+    }
+    
+    /** Returns the nodes joined to a node by facet edges.
+     * @param n
+     * @return A new vector (empty if the node is not in the PLC).
+     */
+    public NodeVector getNodeNeighbours(Node n) {
+        return getNodeAdjacency().getNodeNeighbours(n);
+    }
+    
+    /** Returns the spatial index of the nodes in the PLC, creating it if required.
+     * @return  */
+    public NodeGrid getNodeGrid() {
+        if (nodeGrid==null) {
+            nodeGrid = new NodeGrid(nodes);
+            coordinates.setGrid(nodeGrid);
+        }
+        return nodeGrid;
+    }
+    
+    /** Returns the facets in the PLC that contain the edge between two nodes.
+     * @param n1
+     * @param n2
+     * @return A new vector (empty if the nodes don't define an edge).
+     */
+    public FacetVector getEdgeFacets(Node n1, Node n2) {
+        return getEdgeIndex().getFacets(n1,n2);
+    }
 
     public Node getNode(int i) {
         return nodes.get(i);
@@ -101,43 +158,168 @@ public class PLC {
     public int numberOfControlPoints() { return regions.numberOfControlPoints(); }
 
     public void clear() {
+        // Move the node coordinates out of the store (the nodes may still be referenced elsewhere, e.g. by undo commands):
+        for (int i=0 ; i<nodes.size() ; i++ ) {
+            nodes.get(i).detach();
+        }
+        coordinates.clear();
+        coordinates.setGrid(null);
+        nodeGrid = null;
         nodes.clear();
         facets.clear();
+        edgeIndex = null;
+        adjacency = null;
         regions.clear();
     }
     
     /** Combines PLCs.
      * @param p */
     public void addAll(PLC p) {
-        nodes.addAll(p.getNodes());
-        facets.addAll(p.getFacets());
+        addNodes(p.getNodes());
+        addFacets(p.getFacets());
         regions.addAll(p.getRegions());
     }
 
     public void addNode(Node n) {
+        if (nodes.contains(n)) { return; }
         nodes.add(n);
+        n.attach(coordinates);
+        adjacency = null;
+        if (nodeGrid!=null) { nodeGrid.add(n); }
     }
     public void addNodes(NodeVector n) {
-        nodes.addAll(n);
+        for (int i=0 ; i<n.size() ; i++ ) {
+            addNode(n.get(i));
+        }
     }
 
     public void addFacet(Facet f) {
+        if (facets.contains(f)) { return; }
         facets.add(f);
+        if (edgeIndex!=null) { edgeIndex.add(f); }
+        adjacency = null;
     }
     public void addFacets(FacetVector f) {
-        facets.addAll(f);
+        for (int i=0 ; i<f.size() ; i++ ) {
+            addFacet(f.get(i));
+        }
     }
 
     public void addRegion(Region r) {
         regions.add(r);
     }
+    
+    // -------------------- Bulk Construction (see the PLCBuilder class) -------------------
+    
+    /** Makes room for a number of additional nodes and facets. */
+    void ensureCapacity(int numNewNodes, int numNewFacets) {
+        nodes.ensureCapacity( nodes.size() + numNewNodes );
+        facets.ensureCapacity( facets.size() + numNewFacets );
+        coordinates.ensureCapacity( coordinates.slotLimit() + numNewNodes );
+    }
+    
+    /** Adds a node without checking whether it is already in the PLC. */
+    void addNodeTrusted(Node n) {
+        nodes.addDup(n);
+        n.attach(coordinates);
+        adjacency = null;
+        if (nodeGrid!=null) { nodeGrid.add(n); }
+    }
+    
+    /** Adds a facet without checking whether it is already in the PLC. */
+    void addFacetTrusted(Facet f) {
+        facets.addDup(f);
+        if (edgeIndex!=null) { edgeIndex.add(f); }
+        adjacency = null;
+    }
 
     public void removeNode(Node n) {
+        if (!nodes.contains(n)) { return; }
         nodes.remove(n);
+        if (nodeGrid!=null) { nodeGrid.remove(n); }
+        adjacency = null;
+        if (n.getCoordinateStore()==coordinates) { n.detach(); }
     }
 
     public void removeFacet(Facet f) {
+        if (!facets.contains(f)) { return; }
         facets.remove(f);
+        if (edgeIndex!=null) { edgeIndex.remove(f); }
+        adjacency = null;
+    }
+    
+    /** Removes any of the supplied nodes, compacting the node list in a single pass.
+     * @param set
+     * @return The nodes removed and their positions, for use with the restoreNodes method.
+     */
+    public IndexedVector.Removal<Node> removeNodes(Set<Node> set) {
+        IndexedVector.Removal<Node> removal = nodes.removeAll(set);
+        if (removal.size()==0) { return removal; }
+        for (int i=0 ; i<removal.size() ; i++ ) {
+            Node n = removal.get(i);
+            if (nodeGrid!=null) { nodeGrid.remove(n); }
+            if (n.getCoordinateStore()==coordinates) { n.detach(); }
+        }
+        adjacency = null;
+        return removal;
+    }
+    
+    /** Puts nodes removed by the removeNodes method back into their original positions.
+     * @param removal
+     */
+    public void restoreNodes(IndexedVector.Removal<Node> removal) {
+        if (removal.size()==0) { return; }
+        nodes.restore(removal);
+        for (int i=0 ; i<removal.size() ; i++ ) {
+            Node n = removal.get(i);
+            n.attach(coordinates);
+            if (nodeGrid!=null) { nodeGrid.add(n); }
+        }
+        adjacency = null;
+    }
+    
+    /** Removes any of the supplied facets, compacting the facet list in a single pass.
+     * @param set
+     * @return The facets removed and their positions, for use with the restoreFacets method.
+     */
+    public IndexedVector.Removal<Facet> removeFacets(Set<Facet> set) {
+        IndexedVector.Removal<Facet> removal = facets.removeAll(set);
+        if (removal.size()==0) { return removal; }
+        if (edgeIndex!=null) {
+            for (int i=0 ; i<removal.size() ; i++ ) {
+                edgeIndex.remove(removal.get(i));
+            }
+        }
+        adjacency = null;
+        return removal;
+    }
+    
+    /** Puts facets removed by the removeFacets method back into their original positions.
+     * @param removal
+     */
+    public void restoreFacets(IndexedVector.Removal<Facet> removal) {
+        if (removal.size()==0) { return; }
+        facets.restore(removal);
+        if (edgeIndex!=null) {
+            for (int i=0 ; i<removal.size() ; i++ ) {
+                edgeIndex.add(removal.get(i));
+            }
+        }
+        adjacency = null;
+    }
+    
+    /** Removes a facet from the edge index before its nodes are changed in place.
+     * Must be followed by a call to facetEdgesChanged once the change is complete.
+     * @param f */
+    public void facetEdgesChanging(Facet f) {
+        if ( edgeIndex!=null && facets.contains(f) ) { edgeIndex.remove(f); }
+    }
+    
+    /** Adds a facet back into the edge index after its nodes were changed in place.
+     * @param f */
+    public void facetEdgesChanged(Facet f) {
+        if ( edgeIndex!=null && facets.contains(f) ) { edgeIndex.add(f); }
+        if (facets.contains(f)) { adjacency = null; }
     }
 
     public void removeRegion(Region r) {
@@ -150,55 +332,73 @@ public class PLC {
         regions.resetIDs();
     }
     
+    /** Finds the closest other node to the supplied node in full 3D coordinates.
+     * Uses the spatial index.
+     * @param node
+     * @return The closest node or null if none found.
+     */
     public Node findClosestNode(Node node) {
-        return nodes.findClosest(node);
+        MyPoint3D p = node.getPoint3D();
+        if (p==null) { return null; }
+        return getNodeGrid().findClosest(p,node);
+    }
+    
+    /** Finds the k closest nodes to a point in full 3D coordinates.
+     * Uses the spatial index.
+     * @param p
+     * @param k
+     * @return The nodes found, ordered from closest to farthest.
+     */
+    public NodeVector findClosestNodes(MyPoint3D p, int k) {
+        return getNodeGrid().findClosest(p,k,null);
+    }
+    
+    /** Finds all nodes within a distance of a point in full 3D coordinates.
+     * Uses the spatial index.
+     * @param p
+     * @param radius
+     * @return The nodes found (in no particular order).
+     */
+    public NodeVector findNodesWithin(MyPoint3D p, double radius) {
+        return getNodeGrid().findWithin(p,radius);
     }
     
+    /** Calculates the information required to paint the PLC in 3D.
+     * The node statistics are maintained by the spatial index so this doesn't need to loop over the nodes.
+     * @param origin The point to centre the scene on (if null then the centre of the model is used).
+     * @return The scene information or null if no nodes or regions have 3D positions.
+     */
     public SceneInfo getSceneInfo(MyPoint3D origin) {
     
         // Check for empty PLC:
         if (numberOfNodes()==0) { return null; }
         
         // Calculate x,y,z coordinate ranges for all node and region vertices in the plc:
-        boolean foundOne = false; // I'll set it to true as soon as I find a node that can be converted to a 3D point
-        MyPoint3D p0 = origin;
+        MyPoint3DVector points = extents();
         MyPoint3D p1 = null;
         MyPoint3D p2 = null;
-        double r = 0.0; // will hold largest node distance from origin
-        for (int i=0 ; i<numberOfNodes() ; i++ ) {
-            MyPoint3D p = getNode(i).getPoint3D();
-            if (p==null) { continue; } // if the node's section is not calibrated
-            if (foundOne) {
-                if (p1!=null) { p1.min(p); } // this check should not be necessary but it avoid a Java warning message
-                if (p2!=null) { p2.max(p); } // this check should not be necessary but it avoid a Java warning message
-                if (p0!=null) { r = Math.max( r , p0.distanceToPoint(p) ); }
-            } else {
-                p1 = p.deepCopy();
-                p2 = p.deepCopy();
-                if (p0!=null) { r = p0.distanceToPoint(p); }
-                foundOne = true;
-            }
+        if (points!=null) {
+            p1 = points.get(0);
+            p2 = points.get(1);
         }
         for (int i=0 ; i<numberOfRegions() ; i++ ) {
             MyPoint3D p = getRegion(i).getPoint3D();
             if (p==null) { continue; } // if the region's section is not calibrated
-            if (foundOne) {
-                if (p1!=null) { p1.min(p); } // this check should not be necessary but it avoids a Java warning message
-                if (p2!=null) { p2.max(p); } // this check should not be necessary but it avoids a Java warning message
-                if (p0!=null) { r = Math.max( r , p0.distanceToPoint(p) ); }
-            } else {
+            if (p1==null) {
                 p1 = p.deepCopy();
                 p2 = p.deepCopy();
-                if (p0!=null) { r = p0.distanceToPoint(p); }
-                foundOne = true;
+            } else {
+                p1.min(p);
+                p2.max(p);
             }
         }
         
         // Make sure there was at least a node or region that can be painted:
-        if (!foundOne) { return null; }
+        if ( p1==null || p2==null ) { return null; }
         
         // Calculate the centroid and width of the coordinate ranges found above:
         SceneInfo info = new SceneInfo();
+        MyPoint3D p0 = origin;
         if (p0==null) {
             // Set centroid to middle of node/region range:
             p0 = MyPoint3D.plus(p1,p2);
@@ -207,7 +407,17 @@ public class PLC {
         info.setOrigin(p0);
         MyPoint3D p = MyPoint3D.minus(p2,p1);
         info.setDimensions(p);
-        if ( origin==null || r==0.0 ) {
+        
+        // Calculate the largest node or region distance from the origin:
+        double r = getNodeGrid().getMaxDistance(p0);
+        for (int i=0 ; i<numberOfRegions() ; i++ ) {
+            MyPoint3D q = getRegion(i).getPoint3D();
+            if (q==null) { continue; }
+            r = Math.max( r , p0.distanceToPoint(q) );
+        }
+        
+        // Calculate the scaling:
+        if ( origin!=null && r==0.0 ) {
             r = p.max();
         } else {
             r *= 2.0;
@@ -218,60 +428,30 @@ public class PLC {
             info.setScaling(1.0d/r);
         }
         
-        // Recalculate the scaling if required:
-        if (origin!=null) { return info; }
-        r = 0.0;
-        for (int i=0 ; i<numberOfNodes() ; i++ ) {
-            p = getNode(i).getPoint3D();
-            if (p==null) { continue; }
-            r = Math.max( r , p0.distanceToPoint(p) );
-        }
-        for (int i=0 ; i<numberOfRegions() ; i++ ) {
-            p = getRegion(i).getPoint3D();
-            if (p==null) { continue; }
-            r = Math.max( r , p0.distanceToPoint(p) );
-        }
-        r *= 2.0;
-        if (r==0.0) {
-            info.setScaling(0.0);
-        } else {
-            info.setScaling(1.0d/r);
-        }
-        
         // Return:
         return info;
         
     }
     
+    /** Returns the x,y,z coordinate ranges for all nodes in the PLC.
+     * The ranges are maintained by the spatial index so this doesn't need to loop over the nodes.
+     * @return The minimum and maximum coordinates, or null if no nodes have 3D positions.
+     */
     public MyPoint3DVector extents() {
         
         // Check for empty PLC:
         if (numberOfNodes()==0) { return null; }
         
-        // Calculate x,y,z coordinate ranges for all node and region vertices in the plc:
-        boolean foundOne = false; // I'll set it to true as soon as I find a node that can be converted to a 3D point
-        MyPoint3D p1 = null;
-        MyPoint3D p2 = null;
-        for (int i=0 ; i<numberOfNodes() ; i++ ) {
-            MyPoint3D p = getNode(i).getPoint3D();
-            if (p==null) { continue; } // if the node's section is not calibrated
-            if (foundOne) {
-                if (p1!=null) { p1.min(p); } // this check should not be necessary but it avoids a Java warning message
-                if (p2!=null) { p2.max(p); } // this check should not be necessary but it avoids a Java warning message
-            } else {
-                p1 = p.deepCopy();
-                p2 = p.deepCopy();
-                foundOne = true;
-            }
-        }
+        // Get the coordinate ranges:
+        double[] b = getNodeGrid().getBounds();
         
         // Check for no appropriate nodes:
-        if (!foundOne) { return null; }
+        if (b==null) { return null; }
         
         // Return information in required object:
         MyPoint3DVector points = new MyPoint3DVector();
-        points.add(p1);
-        points.add(p2);
+        points.add(new MyPoint3D(b[0],b[1],b[2]));
+        points.add(new MyPoint3D(b[3],b[4],b[5]));
         return points;
     }
     
@@ -297,32 +477,7 @@ public class PLC {
      * @return Commands that were executed to change the node positions.
      */
     public CommandVector snapToGrid(double m, GroupVector groups, boolean doH, boolean doV) {
-        CommandVector commands = new CommandVector("");
-        // Loop over each node in the PLC:
-        for (int i=0 ; i<nodes.size() ; i++ ) {
-            Node node = nodes.get(i);
-            // Skip nodes not in the supplied groups:
-            if ( groups!=null && !groups.contains(node.getGroup()) ) { continue; }
-            // Get the 3D point for the node:
-            MyPoint3D p = node.getPoint3D();
-            if (p==null) { continue; } // section might not be calibrated
-            // Calculate the closest grid point:
-            double x = p.getX();
-            double y = p.getY();
-            double z = p.getZ();
-            if (doH) {
-                x = Math.round(x/m)*m;
-                y = Math.round(y/m)*m;
-            }
-            if (doV) {
-                z = Math.round(z/m)*m;
-            }
-            // Change the node coordinates:
-            p = new MyPoint3D(x,y,z);
-            MoveNodeCommand com = new MoveNodeCommand(node,null,p); com.execute(); // node.setPoint3D(p);
-            commands.add(com);
-        }
-        return commands;
+        return transform( NodeTransformer.gridSnap(m,doH,doV) , groups );
     }
     
     /** Translates all nodes.
@@ -331,19 +486,17 @@ public class PLC {
      * @return Commands that were executed to change the node positions.
      */
     public CommandVector translate(MyPoint3D t, GroupVector groups) {
+        return transform( NodeTransformer.translation(t) , groups );
+    }
+    
+    /** Applies a transform to the spatial coordinates of the nodes (see the NodeTransformer class).
+     * @param t The transform to apply.
+     * @param groups Only transform nodes in these groups.
+     * @return Commands that were executed to change the node positions.
+     */
+    public CommandVector transform(NodeTransformer.Transform t, GroupVector groups) {
         CommandVector commands = new CommandVector("");
-        // Loop over each node in the PLC:
-        for (int i=0 ; i<nodes.size() ; i++ ) {
-            Node node = nodes.get(i);
-            // Skip nodes not in the supplied groups:
-            if ( groups!=null && !groups.contains(node.getGroup()) ) { continue; }
-            // Get the 3D point for the node:
-            MyPoint3D p = node.getPoint3D();
-            if (p==null) { continue; } // section might not be calibrated
-            // Shift the node:
-            p.plus(t);
-            MoveNodeCommand com = new MoveNodeCommand(node,null,p); com.execute(); // node.setPoint3D(p);
-        }
+        commands.add( NodeTransformer.apply(nodes,groups,t,true) );
         return commands;
     }
     
@@ -355,179 +508,37 @@ public class PLC {
      * - duplicate facets
      * - linear polygonal (n>3) facets
      * - non-planar facets
-     * - intersecting facets NOT implemented yet
+     * Intersecting facets are found separately (see the findIntersectingFacets method).
      * @param nDimensions
      * @return 
      */
     public FacetVector findBadFacets(int nDimensions) {
         
-        // Hardwires:
-        double tol = 1.0E-6;
-        
         // Check facets are defined:
         if (numberOfFacets()==0) { return null; }
         
-        // Need a record of all the facets to delete:
-        FacetVector facetsToRemove = new FacetVector();
-        
-        // Need a comparator object for checking for duplicate facets:
-        FacetNodeIDComparator comparator = new FacetNodeIDComparator();
-        
-        // Sort the facets by their node ID values:
-        nodes.resetIDs(); // required for the sorting
-        facets.sortByNodeIDs(); // (this sorts the nodes in each facet and all other required pre-processing)
-        //facets.resetIDs(); // so ID's are as sorted and subsequent calls will therefore provide the same information in the dialog
-        
-        // ---------------- FIND FACETS TO REMOVE ----------------
+        // The checks are performed in parallel on a snapshot:
+        return new BadFacetFinder(snapshot(),nDimensions).find();
+
+    }
+
+    /** Finds any facets that intersect other facets (other than at shared nodes or along shared edges).
+     * Facets with more than three nodes are treated as fans of triangles.
+     * @return  */
+    public FacetVector findIntersectingFacets() {
         
-        // Loop over each facet:
-        for (int i=0 ; i<numberOfFacets() ; i++ ) {
-            
-            // Get the ith facet:
-            Facet facet = getFacet(i);
-            
-            // ---------------- DUPLICATE NODE INDICES; NOT ENOUGH UNIQUE NODES ----------------
-            
-            // Get the nodes for the ith facet:
-            NodeVector facetNodes = facet.getNodes();
-            
-            // Count the number of unique nodes:
-            NodeVector unique = new NodeVector();
-            int n = facetNodes.size(); // number of nodes (including possible duplicates)
-            for (int j=0 ; j<n ; j++ ) {
-                Node node = facetNodes.get(j);
-                if (!unique.contains(node)) { // if the jth node is not already in the list of unique nodes ...
-                    unique.add(node); // ... add it to the list of unique nodes
-                }
-            }
-            int u = unique.size(); // number of unique nodes
-            
-            // Check if the facet needs to be removed:
-            // - duplicate node indices
-            // - less than nDimensions unique nodes
-            if ( u!=n || u<nDimensions ) {
-                // Mark the facet for removal:
-                facetsToRemove.add(facet);
-                continue; // to next for i iteration (next facet)
-            }
-            
-            // ---------------- DUPLICATE FACETS ----------------
-            
-            // Only check for duplicate facets from facet number 1 because we are looking at pairs so need one less iteration:
-            if (i>0) {
-                // Get facet i-1:
-                Facet prevFacet = getFacet(i-1);
-                // Compare the node ID's in the two facets:
-                int df = comparator.compare(prevFacet,facet);
-                // Check for identical facets:
-                if (df==0) {
-                    // Mark the facet for removal: (it shouldn't matter which, but I'll keep facet i-1)
-                    facetsToRemove.add(facet);
-                    continue; // to next for i iteration (next facet)
-                }
-            }
-            
-            // ---------------- LINEAR OR NON-PLANAR POLYGONAL FACETS (n>3) ----------------
+        // Check facets are defined:
+        if (numberOfFacets()==0) { return null; }
         
-            // Check for trivial case (not enough nodes):
-            if (n<=3) { // non-planar facets can't exist unless n>3
-                continue; // to next for i iteration (next facet)
-            }
-            
-            // Check we can obtain the spatial location of all nodes in the facet:
-            boolean ok = true;
-            for (int j=0 ; j<n ; j++ ) {
-                Node node = facetNodes.get(j);
-                if (node.getPoint3D()==null) {
-                    ok = false;
-                    break;
-                }
-            }
-            
-            if (!ok) { // 3D point not available for all nodes
-                ok = true; // so that we don't remove the point after this if/else block
-            } else { // 3D point available for all nodes
-                // Calculate the vector between vertices 0 and 1:
-                MyPoint3D v2 = null; // initialization avoids compiler warning
-                MyPoint3D p0 = facetNodes.get(0).getPoint3D();
-                MyPoint3D p1 = facetNodes.get(1).getPoint3D();
-                MyPoint3D v1 = p0.vectorToPoint(p1);
-                // Find another vector that is not parallel to v1:
-                double d = 0.0d;
-                int j = 2;
-                while ( d<tol && j<n ) {
-                    // Calculate the vector between vertices 0 and j:
-                    MyPoint3D p2 = facetNodes.get(j).getPoint3D();
-                    v2 = p0.vectorToPoint(p2);
-                    // Calculate cross product of the two vectors:
-                    MyPoint3D c = v1.cross(v2);
-                    d = c.norm(); // the cross product of two parallel vectors is a zero vector
-                    // Increment counter:
-                    j++;
-                }
-                // Check for linear facet:
-                ok = ( d>=tol ); // false for linear facet (could not find another vector non-parallel to v1
-                // Check for non-planar facet:
-                if (ok) { // can't perform this check for a linear facet
-                    // Calculate the cross product of the two vectors found above:
-                    MyPoint3D c1 = v1.cross(v2); // c1 is a normal vector for the plane
-                    // Loop over every vertex from the next node onwards:
-                    for (int k=j+1 ; k<n ; k++ ) {
-                        // Calculate the vector between vertices 0 and k:
-                        MyPoint3D p2 = facetNodes.get(k).getPoint3D();
-                        v2 = p0.vectorToPoint(p2);
-                        // Calculate the cross product of the two vectors:
-                        MyPoint3D c2 = v1.cross(v2); // c2 is another normal vector for the plane
-                        // Calculate cross product of the two normal vectors:
-                        MyPoint3D c = c1.cross(c2);
-                        d = c.norm(); // the cross product of two parallel vectors is a zero vector
-                        // The two normal vectors should be parallel (or antiparallel):
-                        if (d>=tol) {
-                            ok = false;
-                        } // false for non-planar facet
-                        break; // from for k
-                    }
-                //} else { // (for debugging)
-                //    ok = false; // (for debugging)
-                } // for k
-            }
-            
-            // Check if we should remove the facet or not:
-            if (!ok) {
-                // Mark the facet for removal:
-                facetsToRemove.add(facet);
-                //continue; // to next for i iteration (next facet)
-            }
-            
-            /*
-            // ---------------- INTERSECTING FACETS ----------------
-            
-            // Loop over each other facet:
-            for (int j=i+1 ; j<plc.numberOfFacets() ; j++ ) {
-                // Skip facets marked for removal:
-                Facet otherFacet = plc.getFacet(j);
-                if (facetsToRemove.contains(otherFacet)) { continue; } // continue to next for j iteration (next other facet)
-                // Check if the two facets intersect:
-                if (facet.intersects(otherFacet)) {
-                   // Mark both facets for removal:
-                   facetsToRemove.add(facet);
-                   facetsToRemove.add(otherFacet);
-                   break; // from for j loop
-                }
-            } // for j
-            */
-            
-        } // for i
+        // The checks are performed in parallel on a snapshot:
+        return new FacetIntersectionFinder(snapshot()).find();
         
-        // Return the facets to remove:
-        return facetsToRemove;
-
     }
 
     /** Finds any edges that are not connected to two facets and returns their associated facets.
      * @return  */
     public FacetVector findHoles() {
-        return facets.findBoundaryFacets();
+        return facets.findBoundaryFacets(getEdgeIndex());
     }
     
     /** Finds any nodes that are not found in facet definitions.
@@ -538,7 +549,7 @@ public class PLC {
         if (numberOfNodes()==0) { return null; }
         
         // Need a record of all the nodes to delete:
-        NodeVector nodesToRemove = new NodeVector();
+        NodeVector nodesToRemove = new NodeVector(true);
         
         // Loop over each node:
         for (int i=0 ; i<numberOfNodes() ; i++ ) {
@@ -557,58 +568,107 @@ public class PLC {
         
     }
 
-//    /** Finds duplicate nodes with some distance tolerance.
-//     * @param tol The distance tolerance.
-//     * @return  */
-//    public DuplicateNodeInfo findDuplicateNodes(double tol) {
-//        // Check for tolerance of zero (simpler case):
-//        if (tol==0) {
-//            return findDuplicateNodes();
-//        }
-//        // Loop over each node:
-//        
-//    }
-
-    /** Finds duplicate nodes.
+    /** Finds duplicate nodes (nodes with identical coordinates).
      * @return  */
     public DuplicateNodeInfo findDuplicateNodes() {
+        return findDuplicateNodes(0.0);
+    }
+
+    /** Finds duplicate nodes with some distance tolerance.
+     * Each duplicate is paired with the first node in the PLC within the tolerance distance of it
+     * that isn't itself a duplicate.
+     * A spatial hash grid with cells the size of the tolerance is used so that only nearby nodes are compared.
+     * The order of the nodes in the PLC is not changed.
+     * Nodes without 3D coordinates (on uncalibrated sections) are ignored.
+     * @param tol The distance tolerance (zero for identical coordinates).
+     * @return  */
+    public DuplicateNodeInfo findDuplicateNodes(double tol) {
         
         // Check nodes are defined:
         if (numberOfNodes()==0) { return null; }
         
         // Need a record of all the nodes to delete:
-        //NodeVector nodesToRemove = new NodeVector();
         DuplicateNodeInfo dupInfo = new DuplicateNodeInfo();
         
-        // Need a comparator object for checking for duplicate nodes:
-        NodeXYZComparator comparator = new NodeXYZComparator();
-        
-        // Sort the nodes by their coordinates:
-        nodes.sortByXYZ();
+        // The grid cells hold linked lists of the nodes to keep (indices into the node list):
+        int n = numberOfNodes();
+        boolean exact = !(tol>0.0);
+        double tol2 = tol*tol;
+        HashMap<Long,Integer> cells = new HashMap<>(); // the first node in each cell
+        int[] next = new int[n]; // the next node in the same cell
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        double[] zs = new double[n];
         
         // Loop over each node:
-        Node node1 = getNode(0); // will keep track of the first of a set of duplicates
-        for (int i=1 ; i<numberOfNodes() ; i++ ) { // start from 1 because we are looking at pairs so need one less iteration
-            // Get a new second node:
-            Node node2 = getNode(i);
-            // Compare the node coordinates:
-            int d = comparator.compare(node1,node2);
-            // Check for identical node coordinates:
-            if (d==0) {
-                // Mark second node for removal:
-                //nodesToRemove.add(node2);
-                dupInfo.add(node1,node2);
+        for (int i=0 ; i<n ; i++ ) {
+            Node node = getNode(i);
+            MyPoint3D p = node.getPoint3D();
+            if (p==null) { continue; } // node on uncalibrated section
+            double x = p.getX() + 0.0; // adding zero changes -0.0 to 0.0
+            double y = p.getY() + 0.0;
+            double z = p.getZ() + 0.0;
+            // Look for a node to keep within the tolerance in the surrounding cells (or the same cell for exact matching):
+            int keep = -1;
+            long ci=0, cj=0, ck=0;
+            if (exact) {
+                keep = findDuplicateInCell(cells,next,xs,ys,zs,exactCellKey(x,y,z),x,y,z,0.0);
+            } else {
+                ci = (long)Math.floor(x/tol);
+                cj = (long)Math.floor(y/tol);
+                ck = (long)Math.floor(z/tol);
+                for (long di=-1 ; di<=1 ; di++ ) {
+                    for (long dj=-1 ; dj<=1 ; dj++ ) {
+                        for (long dk=-1 ; dk<=1 ; dk++ ) {
+                            int j = findDuplicateInCell(cells,next,xs,ys,zs,cellKey(ci+di,cj+dj,ck+dk),x,y,z,tol2);
+                            if ( j>=0 && ( keep<0 || j<keep ) ) { keep = j; }
+                        }
+                    }
+                }
+            }
+            if (keep>=0) {
+                // Mark the node for removal:
+                dupInfo.add(getNode(keep),node);
             } else {
-                // Reset node1 to point to the second node:
-                node1 = node2;
+                // Add the node to its cell as a node to keep:
+                xs[i] = x;
+                ys[i] = y;
+                zs[i] = z;
+                Long key = ( exact ? exactCellKey(x,y,z) : cellKey(ci,cj,ck) );
+                Integer first = cells.put(key,i);
+                next[i] = ( first==null ? -1 : first );
             }
         }
         
         // Return the nodes to remove:
-        //return nodesToRemove;
         return dupInfo;
 
     }
+    
+    /** Returns the index of the earliest node within the tolerance in a grid cell, or -1 if none. */
+    private static int findDuplicateInCell(HashMap<Long,Integer> cells, int[] next, double[] xs, double[] ys, double[] zs,
+            long key, double x, double y, double z, double tol2) {
+        Integer first = cells.get(key);
+        if (first==null) { return -1; }
+        int best = -1;
+        for (int j=first ; j>=0 ; j=next[j] ) { // (the list is in reverse order of addition)
+            double dx = xs[j] - x;
+            double dy = ys[j] - y;
+            double dz = zs[j] - z;
+            if ( dx*dx + dy*dy + dz*dz <= tol2 ) { best = j; }
+        }
+        return best;
+    }
+    
+    /** Hashes integer grid cell indices (different cells may share a key but the distances are always checked). */
+    private static long cellKey(long i, long j, long k) {
+        return i*73856093L ^ j*19349663L ^ k*83492791L;
+    }
+    
+    /** Hashes exact coordinates (different points may share a key but the distances are always checked). */
+    private static long exactCellKey(double x, double y, double z) {
+        return cellKey( Double.doubleToLongBits(x), Double.doubleToLongBits(y), Double.doubleToLongBits(z) );
+    }
 
     // -------------------- File I/O -------------------
 
@@ -638,8 +698,11 @@ public class PLC {
      */
     public boolean writePoly(File file, int startingIndex, int precision, int ndim, Dir3D dir, boolean byIndex) {
         
+        // Take a snapshot of the nodes and facets to write:
+        PLCSnapshot snap = snapshot();
+        
         // Check to see if any of the nodes or facets have been specified as boundary objects:
-        boolean dobm = this.anyMarked();
+        boolean dobm = snap.anyMarked();
         
         // Open the file for writing:
         BufferedWriter writer = FileUtils.openForWriting(file);
@@ -648,26 +711,26 @@ public class PLC {
         // Write the nodes information line:
         String textLine;
         if (dobm) {
-            textLine = nodes.size() + " " + ndim + " 0 1"; // no attributes but has boundary markers
+            textLine = snap.numberOfNodes() + " " + ndim + " 0 1"; // no attributes but has boundary markers
         } else {
-            textLine = nodes.size() + " " + ndim + " 0 0"; // no attributes or boundary markers
+            textLine = snap.numberOfNodes() + " " + ndim + " 0 0"; // no attributes or boundary markers
         }
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         
         // Write the node list:
-        boolean ok = writeNodeList(writer,startingIndex,precision,ndim,dir,false,dobm); // don't write node groups or indices, dobm
+        boolean ok = writeNodeList(snap,writer,startingIndex,precision,ndim,dir,false,dobm); // don't write node groups or indices, dobm
         if (!ok) { FileUtils.close(writer); return false; }
         
         // Write the facets information line:
         if (dobm) {
-            textLine = facets.size() + " 1"; // has boundary markers
+            textLine = snap.numberOfFacets() + " 1"; // has boundary markers
         } else {
-            textLine = facets.size() + " 0"; // no boundary markers
+            textLine = snap.numberOfFacets() + " 0"; // no boundary markers
         }
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         
         // Write the facet list:
-        ok = writeFacetList(writer,startingIndex,precision,ndim,true,false,dobm,false,false); // poly format, don't write facet attributes, dobm, 2 dummy values
+        ok = writeFacetList(snap,writer,startingIndex,precision,ndim,true,false,dobm,false,false); // poly format, don't write facet attributes, dobm, 2 dummy values
         if (!ok) { FileUtils.close(writer); return false; }
 
         // Write the hole information:
@@ -700,8 +763,11 @@ public class PLC {
      */
     public boolean writeNodes(File file, int startingIndex, int precision, int ndim, Dir3D dir) {
         
+        // Take a snapshot of the nodes and facets to write:
+        PLCSnapshot snap = snapshot();
+        
         // Check to see if any of the nodes or facets have been specified as boundary objects:
-        boolean dobm = this.anyMarked();
+        boolean dobm = snap.anyMarked();
 
         // Open the file for writing:
         BufferedWriter writer = FileUtils.openForWriting(file);
@@ -712,14 +778,14 @@ public class PLC {
         // Write the nodes information line:
         String textLine;
         if (dobm) {
-            textLine = nodes.size() + " " + ndim + " 2 1 \"nodeGroup\",\"nodeIndex\""; // has boundary markers
+            textLine = snap.numberOfNodes() + " " + ndim + " 2 1 \"nodeGroup\",\"nodeIndex\""; // has boundary markers
         } else {
-            textLine = nodes.size() + " " + ndim + " 2 0 \"nodeGroup\",\"nodeIndex\""; // no boundary markers
+            textLine = snap.numberOfNodes() + " " + ndim + " 2 0 \"nodeGroup\",\"nodeIndex\""; // no boundary markers
         }
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         
         // Write the node list:
-        boolean ok = writeNodeList(writer,startingIndex,precision,ndim,dir,true,dobm); // write node groups and indices, dobm
+        boolean ok = writeNodeList(snap,writer,startingIndex,precision,ndim,dir,true,dobm); // write node groups and indices, dobm
         if (!ok) { FileUtils.close(writer); return false; }
 
         // Close the file:
@@ -740,6 +806,9 @@ public class PLC {
      */
     public boolean writeFacets(File file, int startingIndex, int precision, int ndim, boolean writevar) {
 
+        // Take a snapshot of the nodes and facets to write:
+        PLCSnapshot snap = snapshot();
+
         // Open the file for writing:
         BufferedWriter writer = FileUtils.openForWriting(file);
         if (writer==null) {
@@ -747,11 +816,11 @@ public class PLC {
         }
         
         // Check for variable facet types:
-        int nf = facets.size();
-        int n0 = facets.get(0).getNodes().size(); // nodes-per-facet (npf) for the first facet
+        int nf = snap.numberOfFacets();
+        int n0 = snap.facetSize(0); // nodes-per-facet (npf) for the first facet
         boolean isvar = false; // set to true if any facets have npf different from the first facet
         for (int i=1 ; i<nf ; i++ ) {
-            int n = facets.get(i).getNodes().size(); // npf for the ith facet
+            int n = snap.facetSize(i); // npf for the ith facet
             if ( n != n0 ) {
                 isvar = true;
                 break;
@@ -768,7 +837,7 @@ public class PLC {
                 // Count the number of facets with ndim nodes:
                 int nw = 0;
                 for (int i=0 ; i<nf ; i++ ) {
-                   int n = facets.get(i).getNodes().size(); // npf for the ith facet
+                   int n = snap.facetSize(i); // npf for the ith facet
                     if (n==ndim) { nw++; }
                 }
                 textLine = nw + " " + ndim; // ndim nodes-per-facet
@@ -780,7 +849,7 @@ public class PLC {
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         
         // Write the facet list:
-        boolean ok = writeFacetList(writer,startingIndex,precision,ndim,false,true,false,dovar,isvar); // ele format (not poly format), write facet attributes, no boundary markers
+        boolean ok = writeFacetList(snap,writer,startingIndex,precision,ndim,false,true,false,dovar,isvar); // ele format (not poly format), write facet attributes, no boundary markers
         if (!ok) { FileUtils.close(writer); return false; }
 
         // Close the file:
@@ -831,14 +900,13 @@ public class PLC {
 
     }
 
-    private boolean writeNodeList(BufferedWriter writer, int startingIndex, int precision, int ndim, Dir3D dir, boolean writeAttributes, boolean writeMarkers) {
+    private boolean writeNodeList(PLCSnapshot snap, BufferedWriter writer, int startingIndex, int precision, int ndim, Dir3D dir, boolean writeAttributes, boolean writeMarkers) {
 
         // Write the node coordinates, group attributes and optional node indices:
-        for (int i=0; i<nodes.size() ; i++ ) {
+        for (int i=0; i<snap.numberOfNodes() ; i++ ) {
             int index = i + startingIndex;
-            Node node = nodes.get(i);
             String textLine = index + " "; // node index
-            MyPoint3D p3 = node.getPoint3D(); // 3D coordinates
+            MyPoint3D p3 = snap.getPoint3D(i); // 3D coordinates
             if (ndim==3) {
                 textLine += p3.toStringSpaces(TOLZERO,precision);
             } else {
@@ -853,11 +921,11 @@ public class PLC {
                 textLine += p2.toString(TOLZERO,precision);
             }
             if (writeAttributes) {
-                int gid = node.getGroup().getID() + startingIndex;
+                int gid = snap.getNodeGroupID(i) + startingIndex;
                 textLine += " " + gid + " " + index; // node group and node index
             }
             if (writeMarkers) {
-                if (node.getBoundaryMarker()) {
+                if (snap.getNodeMarker(i)) {
                     textLine += " 1";
                 } else {
                     textLine += " 0";
@@ -870,13 +938,12 @@ public class PLC {
 
     }
 
-    private boolean writeFacetList(BufferedWriter writer, int startingIndex, int precision, int ndim, boolean polyFormat, boolean writeAttributes, boolean writeMarkers, boolean dovar, boolean isvar) {
+    private boolean writeFacetList(PLCSnapshot snap, BufferedWriter writer, int startingIndex, int precision, int ndim, boolean polyFormat, boolean writeAttributes, boolean writeMarkers, boolean dovar, boolean isvar) {
 
         // Write the facet definitions:
-        for (int i=0; i<facets.size() ; i++ ) {
+        for (int i=0; i<snap.numberOfFacets() ; i++ ) {
             int index = i + startingIndex;
-            Facet facet = facets.get(i);
-            int n = facet.size();
+            int n = snap.facetSize(i);
             if ( ndim==2 && n!=2 ) { throw new IllegalArgumentException("Ancountered a facet in a 2D model that was not a line."); }
             if ( !polyFormat && !dovar && isvar && n!=ndim ) { continue; } // don't write the facet
             // (because in the header I write ndim as the number of nodes per cell for that situation)
@@ -892,15 +959,15 @@ public class PLC {
                 }
             }
             for (int j=0 ; j<n ; j++ ) {
-                int id = facet.getNode(j).getID() + startingIndex;
-                textLine += " " + id; // node IDs
+                int id = snap.getFacetNode(i,j) + startingIndex;
+                textLine += " " + id; // node indices
             }
             if (writeAttributes) {
-                int gid = facet.getGroup().getID() + startingIndex;
+                int gid = snap.getFacetGroupID(i) + startingIndex;
                 textLine += " " + gid + " " + index; // facet group and facet index
             }
             if (writeMarkers) {
-                if (facet.getBoundaryMarker()) {
+                if (snap.getFacetMarker(i)) {
                     textLine += " 1";
                 } else {
                     textLine += " 0";
@@ -959,6 +1026,11 @@ public class PLC {
      */
     public boolean writeVTU(File file, int precision, boolean flipz) {
 
+        // Take a snapshot of the nodes and facets to write:
+        PLCSnapshot snap = snapshot();
+        int nn = snap.numberOfNodes();
+        int nf = snap.numberOfFacets();
+
         // Open the file for writing:
         BufferedWriter writer = FileUtils.openForWriting(file);
         if (writer==null) {
@@ -967,9 +1039,9 @@ public class PLC {
         
         // Check for variable cells:
         boolean isvar=false;
-        int n0 = facets.get(0).getNodes().size();
-        for (int i=1; i<facets.size() ; i++ ) {
-            int ni = facets.get(i).getNodes().size();
+        int n0 = snap.facetSize(0);
+        for (int i=1; i<nf ; i++ ) {
+            int ni = snap.facetSize(i);
             if (ni!=n0) {
                 isvar = true;
                 break;
@@ -983,7 +1055,7 @@ public class PLC {
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
 
         // Write piece information:
-        textLine = "<Piece NumberOfPoints=\"" + nodes.size() + "\" NumberOfCells=\"" + facets.size() + "\">";
+        textLine = "<Piece NumberOfPoints=\"" + nn + "\" NumberOfCells=\"" + nf + "\">";
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
 
         // Write the node coordinates:
@@ -991,11 +1063,9 @@ public class PLC {
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         textLine = "<DataArray type=\"Float32\" NumberOfComponents=\"3\" Format=\"ascii\">";
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
-        for (int i=0; i<nodes.size() ; i++ ) {
-            Node node = nodes.get(i);
-            MyPoint3D p = node.getPoint3D();
+        for (int i=0; i<nn ; i++ ) {
+            MyPoint3D p = snap.getPoint3D(i); // a new object
             if (flipz) {
-                p = p.deepCopy();
                 p.flipZ();
             }
             textLine = p.toStringSpaces(TOLZERO,precision);
@@ -1011,15 +1081,14 @@ public class PLC {
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         textLine = "<DataArray type=\"Int32\" Name=\"connectivity\" Format=\"ascii\">";
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
-        for (int i=0; i<facets.size() ; i++ ) {
-            NodeVector facetNodes = facets.get(i).getNodes();
-            int ni = facetNodes.size();
+        for (int i=0; i<nf ; i++ ) {
+            int ni = snap.facetSize(i);
             textLine = "";
             for (int j=0 ; j<ni ; j++ ) {
-                textLine += " " + facetNodes.get(j).getID();
+                textLine += " " + snap.getFacetNode(i,j);
             }
             if (isvar) {
-                textLine += " " + facetNodes.get(0).getID(); // explicitly closes the polygon
+                textLine += " " + snap.getFacetNode(i,0); // explicitly closes the polygon
             }
             if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         }
@@ -1030,8 +1099,8 @@ public class PLC {
         textLine = "<DataArray type=\"Int32\" Name=\"offsets\" Format=\"ascii\">";
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         int n = 0;
-        for (int i=0; i<facets.size() ; i++ ) {
-            int ni = facets.get(i).getNodes().size();
+        for (int i=0; i<nf ; i++ ) {
+            int ni = snap.facetSize(i);
             n += ni;
             if (isvar) {
                 n += 1; // because we are explicitly closing the polygon
@@ -1045,11 +1114,11 @@ public class PLC {
         // Write the facet types:
         textLine = "<DataArray type=\"Int32\" Name=\"types\" Format=\"ascii\">";
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
-        for (int i=0; i<facets.size() ; i++ ) {
+        for (int i=0; i<nf ; i++ ) {
             if (isvar) {
                 textLine = "7";
             } else {
-                int ni = facets.get(i).getNodes().size();
+                int ni = snap.facetSize(i);
                 switch (ni) {
                     case 2:
                         // line element
@@ -1077,9 +1146,8 @@ public class PLC {
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         textLine = "<DataArray type=\"Float32\" Name=\"nodeGroup\" Format=\"ascii\">";
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
-        for (int i=0; i<nodes.size() ; i++ ) {
-            Node node = nodes.get(i);
-            int gid = node.getGroup().getID() + 1;
+        for (int i=0; i<nn ; i++ ) {
+            int gid = snap.getNodeGroupID(i) + 1;
             textLine = Integer.toString( gid );
             if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         }
@@ -1087,7 +1155,7 @@ public class PLC {
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         textLine = "<DataArray type=\"Float32\" Name=\"nodeIndex\" Format=\"ascii\">";
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
-        for (int i=0; i<nodes.size() ; i++ ) {
+        for (int i=0; i<nn ; i++ ) {
             textLine = Integer.toString( i+1 );
             if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         }
@@ -1101,9 +1169,8 @@ public class PLC {
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         textLine = "<DataArray type=\"Float32\" Name=\"facetGroup\" Format=\"ascii\">";
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
-        for (int i=0; i<facets.size() ; i++ ) {
-            Facet facet = facets.get(i);
-            int gid = facet.getGroup().getID() + 1;
+        for (int i=0; i<nf ; i++ ) {
+            int gid = snap.getFacetGroupID(i) + 1;
             textLine = Integer.toString( gid );
             if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         }
@@ -1111,7 +1178,7 @@ public class PLC {
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         textLine = "<DataArray type=\"Float32\" Name=\"facetIndex\" Format=\"ascii\">";
         if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
-        for (int i=0; i<facets.size() ; i++ ) {
+        for (int i=0; i<nf ; i++ ) {
             textLine = Integer.toString( i+1 );
             if (!FileUtils.writeLine(writer,textLine)) { FileUtils.close(writer); return false; }
         }
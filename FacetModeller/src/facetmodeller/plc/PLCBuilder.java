@@ -0,0 +1,99 @@
+package facetmodeller.plc;
+
+import facetmodeller.groups.Group;
+import facetmodeller.sections.Section;
+
+/** Adds many nodes and facets to a PLC at once, for trusted sources such as session files and imported .node and .ele files.
+ * The source must guarantee that none of the nodes and facets are already in the PLC, their section or their group
+ * and that none are added twice, so the duplicate checks made when adding them one at a time are skipped.
+ * The PLC and its coordinate store are sized up front. Each node or facet is added to the section and group
+ * it is in when it is added to the builder, so those should be set first.
+ * If requested, the nodes are linked to the facets that contain them in a single pass when the build is finished
+ * (this must be done before the PLC is used).
+ * @author Peter Lelievre
+ */
+public class PLCBuilder {
+
+    // -------------------- Properties -------------------
+
+    private final PLC plc;
+    private final int firstFacet; // index of the first facet added by the builder
+    private final boolean linkFacets;
+
+    // ------------------- Constructor ------------------
+
+    /**
+     * @param plc The PLC to add to (it may already hold nodes and facets).
+     * @param numNodes The number of nodes that will be added.
+     * @param numFacets The number of facets that will be added.
+     * @param linkFacets Set to true to link the nodes to the facets that contain them when the build is finished,
+     * false if the source has already done so.
+     */
+    public PLCBuilder(PLC plc, int numNodes, int numFacets, boolean linkFacets) {
+        this.plc = plc;
+        this.linkFacets = linkFacets;
+        firstFacet = plc.numberOfFacets();
+        plc.ensureCapacity(numNodes,numFacets);
+    }
+
+    // -------------------- Public Methods -------------------
+
+    /** Adds a node to the PLC and to its section and group (if set).
+     * @param n
+     */
+    public void addNode(Node n) {
+        plc.addNodeTrusted(n);
+        Section s = n.getSection();
+        if (s!=null) { s.getNodes().addDup(n); }
+        Group g = n.getGroup();
+        if (g!=null) { g.getNodes().addDup(n); }
+    }
+
+    /** Adds a facet to the PLC and to its group (if set).
+     * The nodes of the facet should all be added to the builder or already be in the PLC.
+     * @param f
+     */
+    public void addFacet(Facet f) {
+        plc.addFacetTrusted(f);
+        Group g = f.getGroup();
+        if (g!=null) { g.getFacets().addDup(f); }
+    }
+
+    /** Finishes the build by linking the nodes to the facets that contain them (if requested on construction). */
+    public void finish() {
+        if (!linkFacets) { return; }
+        FacetVector facets = plc.getFacets();
+        int nf = facets.size();
+        // Count the new facets for each node (the node slots are used as indices):
+        int[] count = new int[plc.getNodeCoordinates().slotLimit()];
+        for (int i=firstFacet ; i<nf ; i++ ) {
+            NodeVector facetNodes = facets.get(i).getNodes();
+            for (int j=0 ; j<facetNodes.size() ; j++ ) {
+                int slot = facetNodes.get(j).getSlot();
+                if ( slot>=0 && slot<count.length ) { count[slot]++; }
+            }
+        }
+        // Size the facet lists for each node:
+        NodeVector nodes = plc.getNodes();
+        for (int i=0 ; i<nodes.size() ; i++ ) {
+            Node node = nodes.get(i);
+            int slot = node.getSlot();
+            if (count[slot]==0) { continue; }
+            FacetVector nodeFacets = node.getFacets();
+            nodeFacets.ensureCapacity( nodeFacets.size() + count[slot] );
+        }
+        // Link the facets to their nodes (the facets are visited in order so a facet already linked
+        // to a node can only be the last one in the list for that node):
+        for (int i=firstFacet ; i<nf ; i++ ) {
+            Facet facet = facets.get(i);
+            NodeVector facetNodes = facet.getNodes();
+            for (int j=0 ; j<facetNodes.size() ; j++ ) {
+                FacetVector nodeFacets = facetNodes.get(j).getFacets();
+                int n = nodeFacets.size();
+                if ( n>0 && nodeFacets.get(n-1)==facet ) { continue; }
+                nodeFacets.addDup(facet);
+            }
+        }
+    }
+
+}
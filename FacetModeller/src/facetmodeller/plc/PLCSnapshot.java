@@ -0,0 +1,172 @@
+package facetmodeller.plc;
+
+import facetmodeller.groups.Group;
+import facetmodeller.sections.Section;
+import geometry.MyPoint3D;
+
+/** An immutable, integer-indexed copy of the nodes and facets in a PLC.
+ * Nodes and facets are indexed by their position in the PLC when the snapshot was taken
+ * (the same values that resetIDs would give them). The node coordinates are held as spatial coordinates
+ * (NaN for nodes with no 3D position), the facet connectivity is held in compressed form
+ * (the nodes of facet i are facetNodes[facetOffsets[i]] to facetNodes[facetOffsets[i+1]-1])
+ * and the group and section IDs and boundary markers are held in primitive arrays.
+ * A snapshot must be taken on the thread that edits the model (the event dispatch thread) but it can then be
+ * read on any thread while the model continues to change. The group and section IDs are those at the time
+ * the snapshot was taken, so they should be reset first if they are to be written to a file.
+ * @author Peter Lelievre
+ */
+public final class PLCSnapshot {
+
+    // -------------------- Properties -------------------
+
+    private final int numNodes, numFacets;
+    private final double[] x, y, z; // spatial node coordinates
+    private final int[] nodeGroupIDs, nodeSectionIDs; // -1 if no group or section
+    private final boolean[] nodeMarkers;
+    private final int[] facetOffsets; // one more entry than the number of facets
+    private final int[] facetNodes; // node indices (-1 for any node not in the PLC)
+    private final int[] facetGroupIDs; // -1 if no group
+    private final boolean[] facetMarkers;
+    private final Node[] nodeObjects; // the original objects, for mapping results back to the model
+    private final Facet[] facetObjects;
+
+    // ------------------- Constructor ------------------
+
+    /**
+     * @param plc The PLC to copy.
+     */
+    PLCSnapshot(PLC plc) {
+
+        NodeVector nodes = plc.getNodes();
+        FacetVector facets = plc.getFacets();
+        numNodes = nodes.size();
+        numFacets = facets.size();
+
+        // Copy the node information:
+        x = new double[numNodes];
+        y = new double[numNodes];
+        z = new double[numNodes];
+        nodeGroupIDs = new int[numNodes];
+        nodeSectionIDs = new int[numNodes];
+        nodeMarkers = new boolean[numNodes];
+        nodeObjects = new Node[numNodes];
+        int[] indexOfSlot = new int[plc.getNodeCoordinates().slotLimit()]; // node index for each coordinate store slot
+        for (int i=0 ; i<numNodes ; i++ ) {
+            Node node = nodes.get(i);
+            nodeObjects[i] = node;
+            indexOfSlot[node.getSlot()] = i;
+            MyPoint3D p = node.getPoint3D();
+            if (p==null) {
+                x[i] = y[i] = z[i] = Double.NaN;
+            } else {
+                x[i] = p.getX();
+                y[i] = p.getY();
+                z[i] = p.getZ();
+            }
+            nodeGroupIDs[i] = groupID(node.getGroup());
+            nodeSectionIDs[i] = sectionID(node.getSection());
+            nodeMarkers[i] = node.getBoundaryMarker();
+        }
+
+        // Copy the facet information:
+        facetOffsets = new int[numFacets+1];
+        for (int i=0 ; i<numFacets ; i++ ) {
+            facetOffsets[i+1] = facetOffsets[i] + facets.get(i).size();
+        }
+        facetNodes = new int[facetOffsets[numFacets]];
+        facetGroupIDs = new int[numFacets];
+        facetMarkers = new boolean[numFacets];
+        facetObjects = new Facet[numFacets];
+        for (int i=0 ; i<numFacets ; i++ ) {
+            Facet facet = facets.get(i);
+            facetObjects[i] = facet;
+            NodeVector fn = facet.getNodes();
+            int k = facetOffsets[i];
+            for (int j=0 ; j<fn.size() ; j++ ) {
+                Node node = fn.get(j);
+                int slot = node.getSlot();
+                int index = -1;
+                if ( slot>=0 && slot<indexOfSlot.length && nodeObjects[indexOfSlot[slot]]==node ) { index = indexOfSlot[slot]; }
+                facetNodes[k+j] = index;
+            }
+            facetGroupIDs[i] = groupID(facet.getGroup());
+            facetMarkers[i] = facet.getBoundaryMarker();
+        }
+
+    }
+
+    // -------------------- Getters -------------------
+
+    public int numberOfNodes() { return numNodes; }
+    public int numberOfFacets() { return numFacets; }
+
+    public double getX(int i) { return x[i]; }
+    public double getY(int i) { return y[i]; }
+    public double getZ(int i) { return z[i]; }
+
+    /** Returns true if the ith node has a 3D position (its section is calibrated).
+     * @param i
+     * @return  */
+    public boolean hasPoint(int i) { return !Double.isNaN(x[i]); }
+
+    /** Returns the 3D position of the ith node as a new object (or null if it has no 3D position).
+     * @param i
+     * @return  */
+    public MyPoint3D getPoint3D(int i) {
+        if (!hasPoint(i)) { return null; }
+        return new MyPoint3D(x[i],y[i],z[i]);
+    }
+
+    public int getNodeGroupID(int i) { return nodeGroupIDs[i]; }
+    public int getNodeSectionID(int i) { return nodeSectionIDs[i]; }
+    public boolean getNodeMarker(int i) { return nodeMarkers[i]; }
+
+    /** Returns the number of nodes in the ith facet.
+     * @param i
+     * @return  */
+    public int facetSize(int i) { return facetOffsets[i+1] - facetOffsets[i]; }
+
+    /** Returns the index of the jth node in the ith facet (-1 if that node was not in the PLC).
+     * @param i
+     * @param j
+     * @return  */
+    public int getFacetNode(int i, int j) { return facetNodes[ facetOffsets[i] + j ]; }
+
+    public int getFacetGroupID(int i) { return facetGroupIDs[i]; }
+    public boolean getFacetMarker(int i) { return facetMarkers[i]; }
+
+    /** Returns true if any node or facet has a boundary marker.
+     * @return  */
+    public boolean anyMarked() {
+        for (int i=0 ; i<numNodes ; i++ ) {
+            if (nodeMarkers[i]) { return true; }
+        }
+        for (int i=0 ; i<numFacets ; i++ ) {
+            if (facetMarkers[i]) { return true; }
+        }
+        return false;
+    }
+
+    /** Returns the original node object for the ith node (this can change after the snapshot was taken).
+     * @param i
+     * @return  */
+    public Node getNode(int i) { return nodeObjects[i]; }
+
+    /** Returns the original facet object for the ith facet (this can change after the snapshot was taken).
+     * @param i
+     * @return  */
+    public Facet getFacet(int i) { return facetObjects[i]; }
+
+    // -------------------- Private Methods -------------------
+
+    private static int groupID(Group g) {
+        if (g==null) { return -1; }
+        return g.getID();
+    }
+
+    private static int sectionID(Section s) {
+        if (s==null) { return -1; }
+        return s.getID();
+    }
+
+}
@@ -1,7 +1,5 @@
 package facetmodeller.plc;
 
-import java.util.ArrayList;
-
 /** A Vector of Region objects.
  * Many of the methods in this class are wrappers for methods of the same name in the Java Vector class.
  * @author Peter Lelievre
@@ -11,7 +9,7 @@ public class RegionVector {
     // -------------------- Properties -------------------
 
     // Favour composition over inheritence!
-    private final ArrayList<Region> vector = new ArrayList<>();
+    private final IndexedVector<Region> vector = new IndexedVector<>(true); // indexed for constant time membership checks
 
     // ------------------- Constructor ------------------
 
@@ -60,8 +58,8 @@ public class RegionVector {
      */
     public int numberOfControlPoints() {
         int n = 0;
-        for (Region vector1 : vector) {
-            if (vector1.getIsControl()) {
+        for (int i=0 ; i<size() ; i++ ) {
+            if (get(i).getIsControl()) {
                 n++;
             }
         }
@@ -87,4 +87,22 @@ public abstract class CrossSection extends Section {
         
     }
     
+    @Override
+    public SectionProjection getProjection() {
+        if (!isCalibrated()) { return null; }
+        // Same calculations as in the projectOnto method:
+        MyPoint2D v2 = getClicked1().vectorToPoint(getClicked2());
+        MyPoint3D v3 = getTyped1().vectorToPoint(getTyped2());
+        MyPoint2D vt = new MyPoint2D(v3.getX(),v3.getY());
+        double l2 = v2.getX();
+        double l3 = vt.norm();
+        double mi = l2/l3;
+        vt.normalize();
+        double mj = v2.getY() / v3.getZ();
+        MyPoint3D t = getTyped1();
+        MyPoint2D c = getClicked1();
+        return new SectionProjection(c.getX(),c.getY(),t.getX(),t.getY(),t.getZ(),
+                vt.getX(),vt.getY(),0.0,mi, 0.0,0.0,1.0,mj);
+    }
+    
 }
@@ -2,6 +2,7 @@ package facetmodeller.sections;
 
 //import facetmodeller.plc.Facet;
 //import facetmodeller.plc.FacetVector;
+import facetmodeller.plc.IndexedVector;
 import facetmodeller.plc.Node;
 import facetmodeller.plc.NodeVector;
 import facetmodeller.plc.Region;
@@ -12,6 +13,7 @@ import geometry.MyPoint3D;
 import java.awt.Color;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.util.Set;
 
 /** Holds information that all sections share.
  * @author Peter
@@ -25,7 +27,7 @@ public class DefaultSectionInfo {
 
     private Color color = Color.WHITE;
     
-    private final NodeVector nodes = new NodeVector(); // list of nodes associated with the section
+    private final NodeVector nodes = new NodeVector(true); // list of nodes associated with the section (indexed)
     //private final FacetVector facets = new FacetVector(); // list of facets associated with the section
     private final RegionVector regions = new RegionVector(); // list of region points associated with the section
 
@@ -144,6 +146,8 @@ public class DefaultSectionInfo {
     }
 
     public void removeNode(Node n) { nodes.remove(n); }
+    public IndexedVector.Removal<Node> removeNodes(Set<Node> set) { return nodes.removeAll(set); }
+    public void restoreNodes(IndexedVector.Removal<Node> removal) { nodes.restore(removal); }
 
     /*
     public void addFacet(Facet f) {
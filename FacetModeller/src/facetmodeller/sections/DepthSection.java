@@ -74,4 +74,18 @@ public abstract class DepthSection extends Section {
         
     }
     
+    @Override
+    public SectionProjection getProjection() {
+        if (!isCalibrated()) { return null; }
+        // Same calculations as in the projectOnto method:
+        MyPoint2D v2 = getClicked1().vectorToPoint(getClicked2());
+        MyPoint3D v3 = getTyped1().vectorToPoint(getTyped2());
+        double mi = v2.getX() / v3.getX();
+        double mj = v2.getY() / v3.getY();
+        MyPoint3D t = getTyped1();
+        MyPoint2D c = getClicked1();
+        return new SectionProjection(c.getX(),c.getY(),t.getX(),t.getY(),t.getZ(),
+                1.0,0.0,0.0,mi, 0.0,1.0,0.0,mj);
+    }
+    
 }
@@ -103,9 +103,9 @@ public class ImageCrossSection extends CrossSection {
     // -------------------- Setters --------------------
     
     @Override
-    public void setClicked1(MyPoint2D p) { imageSection.setClicked1(p); }
+    public void setClicked1(MyPoint2D p) { imageSection.setClicked1(p); calibrationChanged(); }
     @Override
-    public void setClicked2(MyPoint2D p) { imageSection.setClicked2(p); }
+    public void setClicked2(MyPoint2D p) { imageSection.setClicked2(p); calibrationChanged(); }
     
     @Override
     public void setName(String s) { imageSection.setName(s); }
@@ -138,6 +138,7 @@ public class ImageCrossSection extends CrossSection {
     @Override
     public void scalePixels(double f) {
         imageSection.scalePixels(f);
+        calibrationChanged();
     }
     
     @Override
@@ -149,6 +150,7 @@ public class ImageCrossSection extends CrossSection {
     @Override
     public boolean calibrate(JFrame con, MyPoint2D clickPoint) {
         ImageSection.CalibrateReturn out = imageSection.calibrate(con,clickPoint,getTyped1(),getTyped2());
+        calibrationChanged(); // the clicked points may have changed
         if (out==null) { return false; }
         if (out.p1!=null) { setTyped1(out.p1); }
         if (out.p2!=null) { setTyped2(out.p2); }
@@ -165,7 +167,7 @@ public class ImageCrossSection extends CrossSection {
     }
 
     @Override
-    public void clearCalibration() { imageSection.clearCalibration(); }
+    public void clearCalibration() { imageSection.clearCalibration(); calibrationChanged(); }
     
     @Override
     public NodeVector removeNodesRange(NodeVector nodesToRemove) {
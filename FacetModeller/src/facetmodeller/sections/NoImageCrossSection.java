@@ -100,9 +100,9 @@ public class NoImageCrossSection extends CrossSection {
     // -------------------- Setters --------------------
     
     @Override
-    public void setClicked1(MyPoint2D p) { noImageSection.setClicked1(p); }
+    public void setClicked1(MyPoint2D p) { noImageSection.setClicked1(p); calibrationChanged(); }
     @Override
-    public void setClicked2(MyPoint2D p) { noImageSection.setClicked2(p); }
+    public void setClicked2(MyPoint2D p) { noImageSection.setClicked2(p); calibrationChanged(); }
     @Override
     public MyPoint2DVector getCorners() { return noImageSection.getCorners(); }
     
@@ -159,6 +159,7 @@ public class NoImageCrossSection extends CrossSection {
     @Override
     public void scalePixels(double f) {
         noImageSection.scalePixels(f);
+        calibrationChanged();
     }
     
     @Override
@@ -291,7 +292,7 @@ public class NoImageCrossSection extends CrossSection {
     }
     
     @Override
-    public void clearCalibration() { noImageSection.clearCalibration(); }
+    public void clearCalibration() { noImageSection.clearCalibration(); calibrationChanged(); }
     
     @Override
     public NodeVector removeNodesRange(NodeVector nodesToRemove) {
@@ -144,9 +144,9 @@ public class NoImageDepthSection extends DepthSection {
     // -------------------- Setters --------------------
     
     @Override
-    public void setClicked1(MyPoint2D p) { noImageSection.setClicked1(p); }
+    public void setClicked1(MyPoint2D p) { noImageSection.setClicked1(p); calibrationChanged(); }
     @Override
-    public void setClicked2(MyPoint2D p) { noImageSection.setClicked2(p); }
+    public void setClicked2(MyPoint2D p) { noImageSection.setClicked2(p); calibrationChanged(); }
     
     @Override
     public void setName(String s) { noImageSection.setName(s); }
@@ -200,6 +200,7 @@ public class NoImageDepthSection extends DepthSection {
     @Override
     public void scalePixels(double f) {
         noImageSection.scalePixels(f);
+        calibrationChanged();
     }
     
     @Override
@@ -318,7 +319,7 @@ public class NoImageDepthSection extends DepthSection {
     }
 
     @Override
-    public void clearCalibration() { noImageSection.clearCalibration(); }
+    public void clearCalibration() { noImageSection.clearCalibration(); calibrationChanged(); }
     
     @Override
     public CommandVector snapToCalibration(double pickingRadius, GroupVector groups, boolean doH, boolean doV) {
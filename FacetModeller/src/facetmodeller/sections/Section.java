@@ -6,6 +6,7 @@ import facetmodeller.groups.GroupVector;
 //import facetmodeller.plc.Facet;
 //import facetmodeller.plc.FacetVector;
 import facetmodeller.plc.HasID;
+import facetmodeller.plc.IndexedVector;
 import facetmodeller.plc.Node;
 import facetmodeller.plc.NodeVector;
 import facetmodeller.plc.Region;
@@ -20,6 +21,7 @@ import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.util.Set;
 import javax.swing.JFrame;
 
 /** A section with nodes and facets.
@@ -39,6 +41,7 @@ public abstract class Section extends HasID implements SessionIO {
     public static final int SECTION_TOPO=3; // replaced with NoImageDepthSection
     
     private DefaultSectionInfo defaultInfo = new DefaultSectionInfo(); // favour composition over inheritence, and in this case it's the only way to do it
+    private int calibrationVersion = 0; // incremented whenever the transform between image and spatial coordinates may have changed
 
     // ------------------ Constructors -------------------
 
@@ -103,14 +106,24 @@ public abstract class Section extends HasID implements SessionIO {
     public Dir3D getDir3D() {
         return defaultInfo.getDir3D();
     }
+    
+    /** Returns the calibration version number.
+     * This changes whenever the transform between image and spatial coordinates may have changed,
+     * so that results of the imageToSpace method can be cached (see the NodeOnSection class).
+     * @return  */
+    public int getCalibrationVersion() {
+        return calibrationVersion;
+    }
 
     // -------------------- Setters --------------------
     
     public void setTyped1(MyPoint3D p) {
         defaultInfo.setTyped1(p);
+        calibrationChanged();
     }
     public void setTyped2(MyPoint3D p) {
         defaultInfo.setTyped2(p);
+        calibrationChanged();
     }
     public abstract void setClicked1(MyPoint2D p);
     public abstract void setClicked2(MyPoint2D p);
@@ -122,10 +135,18 @@ public abstract class Section extends HasID implements SessionIO {
     
     public void setUndoCopyDefaultInfo( DefaultSectionInfo d ) {
         defaultInfo = d;
+        calibrationChanged();
     }
 
     // -------------------- Public Methods --------------------
 
+    /** Indicates that the calibration information has changed.
+     * Must be called whenever the calibration points are changed other than through the setters.
+     */
+    public void calibrationChanged() {
+        calibrationVersion++;
+    }
+
     /** Returns the short name of the section (the file name minus path and extension).
      * @return  */
     public abstract String shortName();
@@ -141,6 +162,12 @@ public abstract class Section extends HasID implements SessionIO {
      * @return The 2D point in section pixel coordinates. */
     public abstract MyPoint2D projectOnto(MyPoint3D p3);
     
+    /** Returns the projection performed by the projectOnto method in a form that can be applied to many points
+     * without creating point objects, or null if that is not available (e.g. the section is not calibrated).
+     * The returned object is not updated if the calibration changes.
+     * @return  */
+    public SectionProjection getProjection() { return null; }
+    
     public int numberOfNodes() { return defaultInfo.numberOfNodes(); }
     //public int numberOfFacets() { return defaultInfo.numberOfFacets(); }
     public int numberOfRegions() { return defaultInfo.numberOfRegions(); }
@@ -154,6 +181,16 @@ public abstract class Section extends HasID implements SessionIO {
     public void removeNode(Node n) {
         defaultInfo.removeNode(n);
     }
+    /** Removes any of the supplied nodes in a single pass.
+     * @param set
+     * @return The nodes removed and their positions, for use with the restoreNodes method.
+     */
+    public IndexedVector.Removal<Node> removeNodes(Set<Node> set) {
+        return defaultInfo.removeNodes(set);
+    }
+    public void restoreNodes(IndexedVector.Removal<Node> removal) {
+        defaultInfo.restoreNodes(removal);
+    }
     
     //public void addFacet(Facet f) {
     //    defaultInfo.addFacet(f);
@@ -224,6 +261,7 @@ public abstract class Section extends HasID implements SessionIO {
     
     @Override
     public String readSessionInformation(BufferedReader reader, boolean merge) {
+        calibrationChanged();
         return defaultInfo.readSessionInformation(reader,merge);
     }
 
@@ -0,0 +1,60 @@
+package facetmodeller.sections;
+
+/** The projection of spatial coordinates onto a calibrated section, held as plain numbers so that
+ * it can be applied to many points without creating any point objects (see the Section.getProjection method).
+ * The pixel coordinates for spatial point (x,y,z) are
+ * i = ci + ( ai[0]*(x-tx) + ai[1]*(y-ty) + ai[2]*(z-tz) )*si and
+ * j = cj + ( aj[0]*(x-tx) + aj[1]*(y-ty) + aj[2]*(z-tz) )*sj.
+ * The terms are evaluated in the same order as in the projectOnto methods so the results are identical.
+ * @author Peter Lelievre
+ */
+public final class SectionProjection {
+
+    // -------------------- Properties -------------------
+
+    private final double ci, cj; // pixel coordinates of the reference point
+    private final double tx, ty, tz; // spatial coordinates of the reference point
+    private final double aix, aiy, aiz, si; // coefficients for the first pixel coordinate
+    private final double ajx, ajy, ajz, sj; // coefficients for the second pixel coordinate
+
+    // ------------------- Constructor ------------------
+
+    SectionProjection(double ci, double cj, double tx, double ty, double tz,
+            double aix, double aiy, double aiz, double si,
+            double ajx, double ajy, double ajz, double sj) {
+        this.ci = ci;
+        this.cj = cj;
+        this.tx = tx;
+        this.ty = ty;
+        this.tz = tz;
+        this.aix = aix;
+        this.aiy = aiy;
+        this.aiz = aiz;
+        this.si = si;
+        this.ajx = ajx;
+        this.ajy = ajy;
+        this.ajz = ajz;
+        this.sj = sj;
+    }
+
+    // -------------------- Public Methods -------------------
+
+    /** Returns the first pixel coordinate for a spatial point.
+     * @param x
+     * @param y
+     * @param z
+     * @return  */
+    public double i(double x, double y, double z) {
+        return ci + ( aix*(x-tx) + aiy*(y-ty) + aiz*(z-tz) )*si;
+    }
+
+    /** Returns the second pixel coordinate for a spatial point.
+     * @param x
+     * @param y
+     * @param z
+     * @return  */
+    public double j(double x, double y, double z) {
+        return cj + ( ajx*(x-tx) + ajy*(y-ty) + ajz*(z-tz) )*sj;
+    }
+
+}
@@ -3,12 +3,12 @@ package facetmodeller.sections;
 import facetmodeller.commands.CommandVector;
 import facetmodeller.groups.GroupVector;
 //import facetmodeller.plc.Facet;
+import facetmodeller.plc.IndexedVector;
 import facetmodeller.plc.NodeVector;
 import geometry.Dir3D;
 import geometry.MyPoint2D;
 import geometry.MyPoint3D;
 import java.io.File;
-import java.util.ArrayList;
 
 /** A Vector of Section objects.
  * Many of the methods in this class are wrappers for methods of the same name in the Java Vector class.
@@ -19,7 +19,7 @@ public class SectionVector {
     // -------------------- Properties -------------------
 
     // Favour composition over inheritence!
-    private final ArrayList<Section> vector = new ArrayList<>();
+    private final IndexedVector<Section> vector = new IndexedVector<>(true); // indexed because contains is called per node when painting
 
     // ------------------- Constructor ------------------
 
@@ -290,7 +290,7 @@ public class SectionVector {
     
     public NodeVector removeNodesRange() {
         // Loop over each section:
-        NodeVector nodesToRemove = new NodeVector();
+        NodeVector nodesToRemove = new NodeVector(true);
         for (int i=0 ; i<size() ; i++ ) {
             // Get the ith section:
             Section section = get(i);
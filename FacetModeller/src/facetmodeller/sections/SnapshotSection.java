@@ -103,9 +103,9 @@ public final class SnapshotSection extends Section {
     // -------------------- Setters --------------------
     
     @Override
-    public void setClicked1(MyPoint2D p) { noImageSection.setClicked1(p); }
+    public void setClicked1(MyPoint2D p) { noImageSection.setClicked1(p); calibrationChanged(); }
     @Override
-    public void setClicked2(MyPoint2D p) { noImageSection.setClicked2(p); }
+    public void setClicked2(MyPoint2D p) { noImageSection.setClicked2(p); calibrationChanged(); }
     
     @Override
     public void setName(String s) { noImageSection.setName(s); }
@@ -155,6 +155,7 @@ public final class SnapshotSection extends Section {
     @Override
     public void scalePixels(double f) {
         noImageSection.scalePixels(f);
+        calibrationChanged();
     }
 
     @Override
@@ -172,7 +173,7 @@ public final class SnapshotSection extends Section {
         return false;
     }
     @Override
-    public void clearCalibration() { noImageSection.clearCalibration(); } // does nothing
+    public void clearCalibration() { noImageSection.clearCalibration(); calibrationChanged(); } // does nothing
     @Override
     public CommandVector snapToCalibration(double pickingRadius, GroupVector groups, boolean doH, boolean doV) { return null; } // not allowed
     @Override